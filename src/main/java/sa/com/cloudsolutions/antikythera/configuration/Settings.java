@@ -43,6 +43,36 @@ public class Settings {
     public static final String CONTROLLERS = "controllers";
     public static final String DEPENDENCIES = "dependencies";
     public static final String SERVICES = "services";
+    /**
+     * The number of threads used to parse the source code of the application under test.
+     */
+    public static final String PARALLELISM = "parallelism";
+    /**
+     * Folder in which parsed compilation units are cached between runs. Caching is disabled
+     * when this is not set.
+     */
+    public static final String PARSE_CACHE = "parse_cache";
+    /**
+     * When true, the pre-processor only indexes the source files. Each file is parsed the first
+     * time one of its types is needed.
+     */
+    public static final String LAZY_COMPILATION = "lazy_compilation";
+    /**
+     * The number of compilation units that are always kept in memory. Others may be discarded
+     * when the heap runs low and parsed again when needed. Everything is kept when not set.
+     */
+    public static final String RETAINED_UNITS = "retained_compilation_units";
+    /**
+     * Selects how expressions are evaluated. The default is to interpret the syntax tree, set it
+     * to {@value #COMPILED_ENGINE} to compile each expression into executable nodes on first use.
+     */
+    public static final String EXECUTION_ENGINE = "execution_engine";
+    public static final String COMPILED_ENGINE = "compiled";
+    /**
+     * When true, the other path of a branch is explored by going back to the state that was saved
+     * when the branch was first reached, instead of executing the whole method again.
+     */
+    public static final String BRANCH_SNAPSHOTS = "branch_snapshots";
 
     /**
      * HashMap to store the configurations.
@@ -408,14 +408,14 @@ public class ClassProcessor extends AbstractCompiler {
      */
     private ImportDeclaration matchWildCard(String name, Name importedName) {
         String packageName = importedName.toString();
-        SymbolReference<ResolvedReferenceTypeDeclaration> ref = combinedTypeSolver.tryToSolveType(packageName + "." + name);
+        SymbolReference<ResolvedReferenceTypeDeclaration> ref = typeSolver.tryToSolveType(packageName + "." + name);
         if (ref.isSolved()) {
             ImportDeclaration solvedImport = new ImportDeclaration(ref.getCorrespondingDeclaration().getQualifiedName(), false, false);
             keepImports.add(solvedImport);
             return solvedImport;
         }
         else {
-            ref = combinedTypeSolver.tryToSolveType(packageName);
+            ref = typeSolver.tryToSolveType(packageName);
             if (ref.isSolved()) {
                 Optional<ResolvedReferenceTypeDeclaration> resolved = ref.getDeclaration();
                 if(resolved.isPresent()) {
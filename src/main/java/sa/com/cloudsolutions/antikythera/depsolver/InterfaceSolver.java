@@ -35,18 +35,31 @@ public class InterfaceSolver extends AbstractCompiler {
     @Override
     public boolean compile(String relativePath) throws FileNotFoundException {
         boolean b = super.compile(relativePath);
+        solve(cu);
+        return b;
+    }
 
+    /**
+     * Records the interfaces implemented and the classes extended by the types in the given
+     * compilation unit.
+     *
+     * The pre-processor calls this as a second pass after every source file has been parsed, so
+     * that the parent interfaces of an implemented interface can be found regardless of the
+     * order in which the files were visited.
+     *
+     * @param cu a compilation unit that has already been compiled.
+     */
+    public static void solve(CompilationUnit cu) {
         for (TypeDeclaration<?> t : cu.getTypes()) {
             if (t.isClassOrInterfaceDeclaration() && t.getFullyQualifiedName().isPresent()) {
                 ClassOrInterfaceDeclaration cdecl = t.asClassOrInterfaceDeclaration();
-                solveInterfaces(cdecl);
-                solveExtends(cdecl);
+                solveInterfaces(cu, cdecl);
+                solveExtends(cu, cdecl);
             }
         }
-        return b;
     }
 
-    private void solveExtends(ClassOrInterfaceDeclaration cdecl) {
+    private static void solveExtends(CompilationUnit cu, ClassOrInterfaceDeclaration cdecl) {
         for (ClassOrInterfaceType parent : cdecl.getExtendedTypes()) {
             String parentName = AbstractCompiler.findFullyQualifiedName(cu, parent.getNameAsString());
             if (parentName != null) {
@@ -55,7 +68,7 @@ public class InterfaceSolver extends AbstractCompiler {
         }
     }
 
-    private void solveInterfaces(ClassOrInterfaceDeclaration cdecl) {
+    private static void solveInterfaces(CompilationUnit cu, ClassOrInterfaceDeclaration cdecl) {
         for (ClassOrInterfaceType iface : cdecl.getImplementedTypes()) {
             String interfaceName = AbstractCompiler.findFullyQualifiedName(cu, iface.getNameAsString());
             if (interfaceName != null) {
@@ -77,7 +90,7 @@ public class InterfaceSolver extends AbstractCompiler {
                     for (TypeDeclaration<?> ifaceType : interfaceCu.getTypes()) {
                         if (ifaceType.isClassOrInterfaceDeclaration()) {
                             ClassOrInterfaceDeclaration ifaceDecl = ifaceType.asClassOrInterfaceDeclaration();
-                            solveInterfaces(ifaceDecl);
+                            solveInterfaces(cu, ifaceDecl);
                             for (ClassOrInterfaceType parent : ifaceDecl.getExtendedTypes()) {
                                 String parentName = AbstractCompiler.findFullyQualifiedName(interfaceCu, parent.getNameAsString());
                                 if (parentName != null) {
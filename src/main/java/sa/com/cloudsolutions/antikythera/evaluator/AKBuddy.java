@@ -17,6 +17,7 @@ import net.bytebuddy.implementation.MethodDelegation;
 import net.bytebuddy.matcher.ElementMatchers;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+import sa.com.cloudsolutions.antikythera.parser.ClassIndex;
 
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
@@ -115,6 +116,7 @@ public class AKBuddy {
             Class<?> clazz = unloaded.load(AbstractCompiler.getClassLoader(), ClassLoadingStrategy.Default.INJECTION)
                     .getLoaded();
             registry.put(eval.getClassName(), clazz);
+            ClassIndex.register(eval.getClassName());
             return clazz;
         } catch (IllegalStateException e) {
             Class<?> clazz = AbstractCompiler.loadClass(eval.getClassName());
@@ -3,6 +3,7 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+import sa.com.cloudsolutions.antikythera.parser.TypeIndex;
 
 import java.util.Deque;
 import java.util.HashMap;
@@ -12,6 +13,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * <p>A basic Runtime for Antikythera.</p>
@@ -21,11 +23,12 @@ import java.util.TreeMap;
  */
 public class AntikytheraRunTime {
     /**
-     * Keeps track of all the compilation units that we have compiled
+     * Keeps track of all the compilation units that we have compiled.
+     * Concurrent because the pre-processor populates it from several parser threads.
      */
-    private static final Map<String, CompilationUnit> resolved = new HashMap<>();
+    private static final Map<String, CompilationUnit> resolved = new ConcurrentHashMap<>();
 
-    private static final Map<String, TypeWrapper> resolvedTypes = new HashMap<>();
+    private static final Map<String, TypeWrapper> resolvedTypes = new ConcurrentHashMap<>();
     /**
      * <p>We are not using a stack data structure here, but a Deque. This is because Deque is a
      * double-ended queue, which can be used as a stack. It is more efficient than a Stack ADT.
@@ -39,12 +42,12 @@ public class AntikytheraRunTime {
     /**
      * Stores the interfaces and their implementations.
      */
-    protected static final Map<String, Set<String>> interfaces = new HashMap<>();
+    protected static final Map<String, Set<String>> interfaces = new ConcurrentHashMap<>();
 
     /**
      * Stores parent classes as keys and child classes as values.
      */
-    protected static final Map<String, Set<String>> extensions = new HashMap<>();
+    protected static final Map<String, Set<String>> extensions = new ConcurrentHashMap<>();
 
 
     /**
@@ -66,30 +69,126 @@ public class AntikytheraRunTime {
 
     private AntikytheraRunTime() {}
 
+    /**
+     * When a memory budget has been configured, compilation units that were compiled from source
+     * are kept here instead of in the resolved map.
+     */
+    private static CompilationUnitStore store;
+
+    /**
+     * Limit the number of compilation units that are strongly held.
+     * Compilation units that have already been compiled are not affected.
+     *
+     * @param retained the number of compilation units to keep in memory at all times or zero
+     *                 if every compilation unit should be kept.
+     */
+    public static void configureRetention(int retained) {
+        if (retained <= 0) {
+            store = null;
+        } else if (store == null || store.getCapacity() != retained) {
+            store = new CompilationUnitStore(retained);
+        }
+    }
+
+    /**
+     * @return the store that holds compilation units within the memory budget, if one has been
+     *      configured.
+     */
+    public static Optional<CompilationUnitStore> getCompilationUnitStore() {
+        return Optional.ofNullable(store);
+    }
+
     public static CompilationUnit getCompilationUnit(String cls) {
-        return resolved.get(cls);
+        CompilationUnit cu = findCompilationUnit(cls);
+        if (cu == null) {
+            TypeIndex.load(cls);
+            cu = findCompilationUnit(cls);
+        }
+        return cu;
+    }
+
+    private static CompilationUnit findCompilationUnit(String cls) {
+        CompilationUnit cu = resolved.get(cls);
+        if (cu == null && store != null) {
+            cu = store.get(cls);
+        }
+        return cu;
+    }
+
+    /**
+     * Finds the type wrapper for the class, compiling it first if it has only been indexed.
+     */
+    private static TypeWrapper getTypeWrapper(String className) {
+        TypeWrapper typeWrapper = findTypeWrapper(className, false);
+        if (typeWrapper == null) {
+            TypeIndex.load(className);
+            typeWrapper = findTypeWrapper(className, false);
+        }
+        return typeWrapper;
+    }
+
+    /**
+     * Finds a type wrapper that may not have the type declaration, which is sufficient to answer
+     * questions about the annotations on the type.
+     */
+    private static TypeWrapper getTypeFlags(String className) {
+        TypeWrapper typeWrapper = findTypeWrapper(className, true);
+        if (typeWrapper == null) {
+            TypeIndex.load(className);
+            typeWrapper = findTypeWrapper(className, true);
+        }
+        return typeWrapper;
+    }
+
+    private static TypeWrapper findTypeWrapper(String className, boolean flagsOnly) {
+        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        if (typeWrapper == null && store != null) {
+            typeWrapper = flagsOnly ? store.getTypeFlags(className) : store.getType(className);
+        }
+        return typeWrapper;
     }
 
     public static void addType(String className, TypeWrapper typeWrapper) {
-        resolvedTypes.put(className, typeWrapper);
+        if (store != null) {
+            store.putType(className, typeWrapper);
+        } else {
+            resolvedTypes.put(className, typeWrapper);
+        }
     }
 
     public static void addCompilationUnit(String className, CompilationUnit cu) {
         resolved.put(className, cu);
     }
 
+    /**
+     * Record a compilation unit that was compiled from a source file.
+     * Unlike the compilation units added without a path, these can be evicted when a memory
+     * budget is in place, because they can be parsed again.
+     *
+     * @param className the fully qualified name of a type declared in the compilation unit
+     * @param cu the compilation unit
+     * @param relativePath the path to the source file relative to the base path
+     */
+    public static void addCompilationUnit(String className, CompilationUnit cu, String relativePath) {
+        if (store != null) {
+            store.put(className, cu, relativePath);
+        } else {
+            resolved.put(className, cu);
+        }
+    }
+
     public static boolean isServiceClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getTypeFlags(className);
         return typeWrapper != null && typeWrapper.isService();
     }
 
     public static boolean isControllerClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getTypeFlags(className);
         return typeWrapper != null && typeWrapper.isController();
     }
 
     public static boolean isComponentClass(String className) {
-        TypeWrapper typeWrapper = resolvedTypes.get(className);
+        TypeWrapper typeWrapper = getTypeFlags(className);
         return typeWrapper != null && typeWrapper.isComponent();
     }
 
@@ -114,38 +213,44 @@ public class AntikytheraRunTime {
     }
 
     public static boolean isInterface(String name) {
-        TypeWrapper typeWrapper = resolvedTypes.get(name);
+        TypeWrapper typeWrapper = getTypeFlags(name);
         return typeWrapper != null && typeWrapper.isInterface();
     }
 
     @SuppressWarnings("java:S1452")
     public static Optional<TypeDeclaration<?>> getTypeDeclaration(String className) {
-        TypeWrapper type = resolvedTypes.get(className);
+        TypeWrapper type = getTypeWrapper(className);
         return Optional.ofNullable(type).map(TypeWrapper::getType);
     }
 
     public static void resetAll() {
         stack.clear();
         resolved.clear();
+        if (store != null) {
+            store.clear();
+        }
         interfaces.clear();
         extensions.clear();
+        TypeIndex.clear();
     }
 
     public static void addSubClass(String parent, String child) {
-        Set<String> s = extensions.computeIfAbsent(parent, k -> new HashSet<>());
+        Set<String> s = extensions.computeIfAbsent(parent, k -> ConcurrentHashMap.newKeySet());
         s.add(child);
     }
 
     public static Set<String> findSubClasses(String parent) {
+        TypeIndex.loadSubTypes(parent);
         return extensions.getOrDefault(parent, new HashSet<>());
     }
 
     public static void addImplementation(String iface, String impl) {
-        Set<String> s = interfaces.computeIfAbsent(iface, k -> new HashSet<>());
+        Set<String> s = interfaces.computeIfAbsent(iface, k -> ConcurrentHashMap.newKeySet());
         s.add(impl);
     }
 
     public static Set<String> findImplementations(String iface) {
+        TypeIndex.loadSubTypes(iface);
         return interfaces.getOrDefault(iface, new HashSet<>());
     }
 
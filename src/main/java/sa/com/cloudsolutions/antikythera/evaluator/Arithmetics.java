@@ -2,7 +2,30 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 
 import com.github.javaparser.ast.expr.BinaryExpr;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/**
+ * <p>Arithmetic and numeric comparisons.</p>
+ *
+ * <p>The operands are promoted the way that Java promotes them: if either is a double the
+ * operation is carried out on doubles, otherwise on floats, then longs and finally ints. Bytes,
+ * shorts and chars are always promoted to int. Each of those has a path of its own, so that no
+ * precision is lost on the way through, and integer division truncates and fails on a zero
+ * divisor just like it does in Java. The results are boxed with the valueOf methods which means
+ * small values are taken from the caches of the boxed types.</p>
+ *
+ * <p>Big decimals and big integers are not operands in Java, but they are treated exactly here
+ * when they turn up.</p>
+ */
 public class Arithmetics {
+    private static final int UNKNOWN = -1;
+    private static final int INT = 0;
+    private static final int LONG = 1;
+    private static final int FLOAT = 2;
+    private static final int DOUBLE = 3;
+    private static final int DECIMAL = 4;
 
     private Arithmetics() {
 
@@ -15,46 +38,198 @@ public class Arithmetics {
      * @return the result of the add operation which may be arithmetic or string concatenation
      */
     static Variable operate(Variable left, Variable right, BinaryExpr.Operator operator) {
-        if (left.getValue() instanceof String || right.getValue() instanceof String) {
-            if (right.getValue() == null) {
-                return new Variable(left.getValue().toString() + "null");
-            }
-            return new Variable(left.getValue().toString() + right.getValue().toString());
-        }
-        if (left.getValue() instanceof Number l && right.getValue() instanceof Number r) {
-            return createNumericVariable(operator, l, r);
-        }
-        return null;
-    }
-
-    private static Variable createNumericVariable(BinaryExpr.Operator operator, Number l, Number r) {
-        Number result = performOperation(l, r, operator);
-
-        if (l instanceof Double || r instanceof Double) {
-            return new Variable(result.doubleValue());
-        } else if (l instanceof Float || r instanceof Float) {
-            return new Variable(result.floatValue());
-        } else if (l instanceof Long || r instanceof Long) {
-            return new Variable(result.longValue());
-        } else if (l instanceof Integer || r instanceof Integer) {
-            return new Variable(result.intValue());
-        } else if (l instanceof Short || r instanceof Short) {
-            return new Variable(result.shortValue());
-        } else if (l instanceof Byte || r instanceof Byte) {
-            return new Variable(result.byteValue());
+        Object l = left.getValue();
+        Object r = right.getValue();
+        if (l instanceof String || r instanceof String) {
+            return new Variable(String.valueOf(l) + r);
         }
-        return null;
+
+        return switch (promote(l, r)) {
+            case INT -> new Variable(operate(intValue(l), intValue(r), operator));
+            case LONG -> new Variable(operate(longValue(l), longValue(r), operator));
+            case FLOAT -> new Variable(operate(((Number) l).floatValue(), ((Number) r).floatValue(), operator));
+            case DOUBLE -> new Variable(operate(((Number) l).doubleValue(), ((Number) r).doubleValue(), operator));
+            case DECIMAL -> new Variable(operate(decimalValue(l), decimalValue(r), operator));
+            default -> null;
+        };
+    }
+
+    /**
+     * Compare two numbers with one of the relational or equality operators.
+     * @param operator one of ==, !=, &lt;, &lt;=, &gt; or &gt;=
+     * @param left the left operand, which should be a number or a character
+     * @param right the right operand, which should be a number or a character
+     * @return the outcome of the comparison
+     */
+    static boolean compare(BinaryExpr.Operator operator, Object left, Object right) {
+        return switch (promote(left, right)) {
+            case INT -> compare(operator, Integer.compare(intValue(left), intValue(right)));
+            case LONG -> compare(operator, Long.compare(longValue(left), longValue(right)));
+            case FLOAT, DOUBLE -> compare(operator, ((Number) left).doubleValue(), ((Number) right).doubleValue());
+            case DECIMAL -> compare(operator, decimalValue(left).compareTo(decimalValue(right)));
+            default -> throw new IllegalArgumentException("Cannot compare " + left + " and " + right);
+        };
+    }
+
+    /**
+     * @param value a value
+     * @return true if the value can take part in arithmetic
+     */
+    static boolean isNumeric(Object value) {
+        return rank(value) != UNKNOWN;
+    }
+
+    /**
+     * Order two numbers, with the same promotion as the operators.
+     * @return a negative number, zero or a positive number as the left operand is less than,
+     *      equal to or greater than the right one.
+     */
+    static int order(Object left, Object right) {
+        return switch (promote(left, right)) {
+            case INT -> Integer.compare(intValue(left), intValue(right));
+            case LONG -> Long.compare(longValue(left), longValue(right));
+            case FLOAT -> Float.compare(((Number) left).floatValue(), ((Number) right).floatValue());
+            case DOUBLE -> Double.compare(((Number) left).doubleValue(), ((Number) right).doubleValue());
+            case DECIMAL -> decimalValue(left).compareTo(decimalValue(right));
+            default -> throw new IllegalArgumentException("Cannot compare " + left + " and " + right);
+        };
+    }
+
+    private static int rank(Object value) {
+        return switch (value) {
+            case Integer i -> INT;
+            case Short s -> INT;
+            case Byte b -> INT;
+            case Character c -> INT;
+            case Long l -> LONG;
+            case Float f -> FLOAT;
+            case Double d -> DOUBLE;
+            case BigDecimal d -> DECIMAL;
+            case BigInteger i -> DECIMAL;
+            case null, default -> UNKNOWN;
+        };
+    }
+
+    private static int promote(Object left, Object right) {
+        int l = rank(left);
+        int r = rank(right);
+        return l == UNKNOWN || r == UNKNOWN ? UNKNOWN : Math.max(l, r);
+    }
+
+    private static int intValue(Object value) {
+        return value instanceof Character c ? c : ((Number) value).intValue();
+    }
+
+    private static long longValue(Object value) {
+        return value instanceof Character c ? c : ((Number) value).longValue();
+    }
+
+    private static BigDecimal decimalValue(Object value) {
+        return switch (value) {
+            case BigDecimal d -> d;
+            case BigInteger i -> new BigDecimal(i);
+            case Double d -> BigDecimal.valueOf(d);
+            case Float f -> BigDecimal.valueOf(f);
+            case Character c -> BigDecimal.valueOf(c);
+            default -> BigDecimal.valueOf(((Number) value).longValue());
+        };
+    }
+
+    private static int operate(int l, int r, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> l + r;
+            case MINUS -> l - r;
+            case MULTIPLY -> l * r;
+            case DIVIDE -> l / r;
+            case REMAINDER -> l % r;
+            default -> throw unsupported(operator);
+        };
+    }
+
+    private static long operate(long l, long r, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> l + r;
+            case MINUS -> l - r;
+            case MULTIPLY -> l * r;
+            case DIVIDE -> l / r;
+            case REMAINDER -> l % r;
+            default -> throw unsupported(operator);
+        };
+    }
+
+    private static float operate(float l, float r, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> l + r;
+            case MINUS -> l - r;
+            case MULTIPLY -> l * r;
+            case DIVIDE -> l / r;
+            case REMAINDER -> l % r;
+            default -> throw unsupported(operator);
+        };
+    }
+
+    private static double operate(double l, double r, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> l + r;
+            case MINUS -> l - r;
+            case MULTIPLY -> l * r;
+            case DIVIDE -> l / r;
+            case REMAINDER -> l % r;
+            default -> throw unsupported(operator);
+        };
+    }
+
+    private static BigDecimal operate(BigDecimal l, BigDecimal r, BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case PLUS -> l.add(r);
+            case MINUS -> l.subtract(r);
+            case MULTIPLY -> l.multiply(r);
+            case DIVIDE -> {
+                try {
+                    yield l.divide(r);
+                } catch (ArithmeticException e) {
+                    /* a quotient that does not terminate, such as 1/3 */
+                    if (r.signum() == 0) {
+                        throw e;
+                    }
+                    yield l.divide(r, MathContext.DECIMAL128);
+                }
+            }
+            case REMAINDER -> l.remainder(r);
+            default -> throw unsupported(operator);
+        };
     }
 
-    static Number performOperation(Number left, Number right, BinaryExpr.Operator operator) {
+    private static boolean compare(BinaryExpr.Operator operator, int order) {
         return switch (operator) {
-            case PLUS -> left.doubleValue() + right.doubleValue();
-            case MINUS -> left.doubleValue() - right.doubleValue();
-            case DIVIDE -> left.doubleValue() / right.doubleValue();
-            case MULTIPLY -> left.doubleValue() * right.doubleValue();
-            case REMAINDER -> left.doubleValue() % right.doubleValue();
-            default ->
-                    throw new IllegalArgumentException("Unsupported operator: " + operator);
+            case EQUALS -> order == 0;
+            case NOT_EQUALS -> order != 0;
+            case LESS -> order < 0;
+            case LESS_EQUALS -> order <= 0;
+            case GREATER -> order > 0;
+            case GREATER_EQUALS -> order >= 0;
+            default -> throw unsupported(operator);
         };
     }
+
+    /*
+     * Floating point comparisons are written out rather than going through Double.compare(), so
+     * that NaN and negative zero behave the way they do in Java. Widening a float to a double
+     * does not change the outcome of a comparison.
+     */
+    private static boolean compare(BinaryExpr.Operator operator, double l, double r) {
+        return switch (operator) {
+            case EQUALS -> l == r;
+            case NOT_EQUALS -> l != r;
+            case LESS -> l < r;
+            case LESS_EQUALS -> l <= r;
+            case GREATER -> l > r;
+            case GREATER_EQUALS -> l >= r;
+            default -> throw unsupported(operator);
+        };
+    }
+
+    private static IllegalArgumentException unsupported(BinaryExpr.Operator operator) {
+        return new IllegalArgumentException("Unsupported operator: " + operator);
+    }
 }
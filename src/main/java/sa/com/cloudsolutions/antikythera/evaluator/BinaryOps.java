@@ -44,6 +44,9 @@ public class BinaryOps {
             return new Variable(Boolean.FALSE);
         }
 
+        if (Arithmetics.isNumeric(leftVal) && Arithmetics.isNumeric(rightVal)) {
+            return new Variable(Arithmetics.compare(BinaryExpr.Operator.EQUALS, leftVal, rightVal));
+        }
         if (leftVal instanceof Number && rightVal instanceof Number) {
             return new Variable(NumericComparator.compare(leftVal, rightVal) == 0);
         }
@@ -95,30 +98,18 @@ public class BinaryOps {
 
             case AND -> new Variable((boolean) left.getValue() && (boolean) right.getValue());
 
-            case GREATER -> {
-                if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    yield new Variable(NumericComparator.compare(left.getValue(), right.getValue()) > 0);
-                }
-                throw new EvaluatorException(leftExpression, rightExpression);
-            }
-
-            case GREATER_EQUALS -> {
-                if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    yield new Variable(NumericComparator.compare(left.getValue(), right.getValue()) >= 0);
+            case GREATER, GREATER_EQUALS, LESS, LESS_EQUALS -> {
+                if (Arithmetics.isNumeric(left.getValue()) && Arithmetics.isNumeric(right.getValue())) {
+                    yield new Variable(Arithmetics.compare(operator, left.getValue(), right.getValue()));
                 }
-                throw new EvaluatorException(leftExpression, rightExpression);
-            }
-
-            case LESS -> {
-                if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    yield new Variable(NumericComparator.compare(left.getValue(), right.getValue()) < 0);
-                }
-                throw new EvaluatorException(leftExpression, rightExpression);
-            }
-
-            case LESS_EQUALS -> {
                 if (left.getValue() instanceof Number && right.getValue() instanceof Number) {
-                    yield new Variable(NumericComparator.compare(left.getValue(), right.getValue()) <= 0);
+                    int order = NumericComparator.compare(left.getValue(), right.getValue());
+                    yield new Variable(switch (operator) {
+                        case GREATER -> order > 0;
+                        case GREATER_EQUALS -> order >= 0;
+                        case LESS -> order < 0;
+                        default -> order <= 0;
+                    });
                 }
                 throw new EvaluatorException(leftExpression, rightExpression);
             }
@@ -0,0 +1,212 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>The local variable layout of a single block statement.</p>
+ *
+ * <p>Each block is given a slot for every parameter and local variable that will be stored in
+ * it, along with the block in which the search for a name should continue when it is not found
+ * here. These are worked out for all the blocks of a method in one pass, the first time any of
+ * them is needed, and attached to the blocks as node data.</p>
+ *
+ * <p>A variable is stored in the nearest block that encloses its declaration, with the exception
+ * of method and constructor parameters which belong to the body. This mirrors the way that
+ * {@link Evaluator} places variables, and names that the pass did not foresee are still stored
+ * by the frame, just not in a slot.</p>
+ *
+ * <p>The same pass resolves every name and every variable declarator in the method to the block
+ * and slot that hold it, so that the evaluator can go straight to the variable. A name that is
+ * not declared in any of the enclosing blocks is marked as well, it can only be found among the
+ * variables that the pass did not foresee.</p>
+ */
+final class BlockScope {
+    private static final DataKey<BlockScope> KEY = new DataKey<>() {};
+    private static final DataKey<Resolved> RESOLVED = new DataKey<>() {};
+
+    private final BlockStmt block;
+    /**
+     * The parent of the block at the time the layout was worked out. The layout is discarded if
+     * the block has been moved since, or if the node data was copied into a clone.
+     */
+    private final Node owner;
+    private final BlockStmt parent;
+    private final boolean outermost;
+    private final Map<String, Integer> slots = new HashMap<>();
+
+    /**
+     * Where a name or a declarator was found by the pass.
+     *
+     * @param node the name or the declarator. The data is copied along with a node that is
+     *             cloned, hence the node itself.
+     * @param owner the parent of the node at the time
+     * @param name the name of the variable
+     * @param block the block that holds the variable or null if no enclosing block declares it
+     * @param scope the layout of that block
+     * @param slot the slot of the variable in that block
+     */
+    record Resolved(Node node, Node owner, String name, BlockStmt block, BlockScope scope, int slot) {}
+
+    private BlockScope(BlockStmt block) {
+        this.block = block;
+        this.owner = block.getParentNode().orElse(null);
+        /*
+         * The search for a local never goes past the body of a method, nor beyond a block that
+         * has been detached from the tree.
+         */
+        this.outermost = owner == null || owner instanceof MethodDeclaration;
+        this.parent = outermost ? null : AbstractCompiler.findBlockStatement(owner);
+    }
+
+    /**
+     * @param block a block statement
+     * @return the layout of the block, which will be worked out if it is not already known
+     */
+    static BlockScope of(BlockStmt block) {
+        if (block.containsData(KEY)) {
+            BlockScope scope = block.getData(KEY);
+            if (scope.block == block && scope.owner == block.getParentNode().orElse(null)) {
+                return scope;
+            }
+        }
+        resolve(root(block));
+        return block.getData(KEY);
+    }
+
+    /**
+     * The enclosing method or constructor, or failing that the outermost block.
+     */
+    private static Node root(BlockStmt block) {
+        Node root = block;
+        Node n = block;
+        while (n != null) {
+            if (n instanceof CallableDeclaration<?>) {
+                return n;
+            }
+            if (n instanceof BlockStmt) {
+                root = n;
+            }
+            n = n.getParentNode().orElse(null);
+        }
+        return root;
+    }
+
+    private static void resolve(Node root) {
+        Map<BlockStmt, BlockScope> scopes = new IdentityHashMap<>();
+        for (BlockStmt b : root.findAll(BlockStmt.class)) {
+            BlockScope scope = new BlockScope(b);
+            scopes.put(b, scope);
+            b.setData(KEY, scope);
+        }
+
+        for (Parameter p : root.findAll(Parameter.class)) {
+            BlockStmt target = p.getParentNode().orElse(null) instanceof CallableDeclaration<?> cd
+                    ? body(cd) : AbstractCompiler.findBlockStatement(p);
+            assign(scopes, target, p.getNameAsString());
+        }
+        for (VariableDeclarator decl : root.findAll(VariableDeclarator.class)) {
+            assign(scopes, AbstractCompiler.findBlockStatement(decl), decl.getNameAsString());
+        }
+
+        for (VariableDeclarator decl : root.findAll(VariableDeclarator.class)) {
+            locate(scopes, decl, decl.getNameAsString());
+        }
+        for (NameExpr name : root.findAll(NameExpr.class)) {
+            locate(scopes, name, name.getNameAsString());
+        }
+    }
+
+    /**
+     * Look for the name in the block of the node and the blocks around it, in the same order
+     * that the evaluator searches them.
+     */
+    private static void locate(Map<BlockStmt, BlockScope> scopes, Node node, String name) {
+        BlockStmt block = AbstractCompiler.findBlockStatement(node);
+        BlockScope scope = block == null ? null : scopes.get(block);
+        if (scope == null) {
+            return;
+        }
+        while (scope != null) {
+            Integer slot = scope.slots.get(name);
+            if (slot != null) {
+                node.setData(RESOLVED, new Resolved(node, node.getParentNode().orElse(null), name,
+                        scope.block, scope, slot));
+                return;
+            }
+            scope = scope.outermost ? null : scopes.get(scope.parent);
+        }
+        node.setData(RESOLVED, new Resolved(node, node.getParentNode().orElse(null), name, null, null, -1));
+    }
+
+    /**
+     * @param node a name or a variable declarator
+     * @param name the name of the variable that is wanted
+     * @return where the pass found the variable, or null if the pass has not seen this node or
+     *      it has been changed since.
+     */
+    static Resolved resolved(Node node, String name) {
+        if (!node.containsData(RESOLVED)) {
+            return null;
+        }
+        Resolved r = node.getData(RESOLVED);
+        if (r.node() != node || r.owner() != node.getParentNode().orElse(null) || !r.name().equals(name)
+                || (r.block() != null && of(r.block()) != r.scope())) {
+            return null;
+        }
+        return r;
+    }
+
+    private static BlockStmt body(CallableDeclaration<?> cd) {
+        if (cd instanceof ConstructorDeclaration c) {
+            return c.getBody();
+        }
+        return ((MethodDeclaration) cd).getBody().orElse(null);
+    }
+
+    private static void assign(Map<BlockStmt, BlockScope> scopes, BlockStmt target, String name) {
+        BlockScope scope = target == null ? null : scopes.get(target);
+        if (scope != null) {
+            scope.slots.putIfAbsent(name, scope.slots.size());
+        }
+    }
+
+    /**
+     * @param name the name of a variable
+     * @return the slot that holds the variable or -1 if it was not expected in this block
+     */
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * @return the block to search next or null if there isn't one
+     */
+    BlockStmt getParent() {
+        return parent;
+    }
+
+    /**
+     * @return true if a local that is not found in this block cannot be found anywhere else.
+     */
+    boolean isOutermost() {
+        return outermost;
+    }
+}
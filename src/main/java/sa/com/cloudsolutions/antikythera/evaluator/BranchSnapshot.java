@@ -0,0 +1,347 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingCall;
+import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
+import sa.com.cloudsolutions.antikythera.generator.TestGenerator;
+import sa.com.cloudsolutions.antikythera.parser.Callable;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * <p>The state of an evaluator at the moment that it reached a branch.</p>
+ *
+ * <p>{@link SpringEvaluator} explores the paths through a method by executing it repeatedly, each
+ * time with arguments that send one more branch the other way. Everything in front of that branch
+ * is executed again on every iteration. A snapshot lets the evaluator go back to the branch
+ * instead, and carry on from there.</p>
+ *
+ * <p>The snapshot is made of copies of the local variables, the arguments of the method, the
+ * call stack, the registered mocks, the stubs and imports waiting for the next generated test and
+ * the fields of the evaluator. Evaluators held in any of
+ * those are not copied, because other objects may refer to them, but their fields are saved and
+ * put back into them when the snapshot is restored. Variables are copied because assignments
+ * change them in place. The common lists, sets, maps and arrays are copied too, and so are
+ * optionals. Strings, boxed primitives, enums and the other values that cannot be changed are
+ * shared between the snapshot and the evaluator.</p>
+ *
+ * <p>Anything else, such as a DTO, a string builder or a mock, could be changed after the branch
+ * without the snapshot knowing. No snapshot is taken when such an object can be reached, and the
+ * method is executed again from the start instead.</p>
+ *
+ * <p>Restoring makes a fresh copy of the saved state, which leaves the snapshot as it was.</p>
+ */
+final class BranchSnapshot {
+    /**
+     * Collections that are copied, by their exact class. Each function makes an empty collection
+     * like the one that it is given. Subclasses cannot be copied.
+     */
+    @SuppressWarnings("unchecked")
+    private static final Map<Class<?>, Function<Object, Collection<Object>>> COLLECTIONS = Map.of(
+            ArrayList.class, c -> new ArrayList<>(),
+            LinkedList.class, c -> new LinkedList<>(),
+            ArrayDeque.class, c -> new ArrayDeque<>(),
+            HashSet.class, c -> new HashSet<>(),
+            LinkedHashSet.class, c -> new LinkedHashSet<>(),
+            TreeSet.class, c -> new TreeSet<>(((TreeSet<Object>) c).comparator()));
+    @SuppressWarnings("unchecked")
+    private static final Map<Class<?>, Function<Object, Map<Object, Object>>> MAPS = Map.of(
+            HashMap.class, m -> new HashMap<>(),
+            LinkedHashMap.class, m -> new LinkedHashMap<>(),
+            TreeMap.class, m -> new TreeMap<>(((TreeMap<Object, Object>) m).comparator()));
+    /**
+     * Values of these classes cannot be changed, so they are shared.
+     */
+    private static final Set<Class<?>> IMMUTABLE = Set.of(String.class, Integer.class, Long.class,
+            Short.class, Byte.class, Double.class, Float.class, Character.class, Boolean.class,
+            BigDecimal.class, BigInteger.class, UUID.class, Class.class);
+
+    private final IfStmt branch;
+    private final Evaluator evaluator;
+    private final Map<BlockStmt, LocalFrame> locals = new IdentityHashMap<>();
+    private final Map<Evaluator, Map<String, Variable>> fields = new IdentityHashMap<>();
+    private final Map<String, Variable> arguments = new HashMap<>();
+    private final List<Variable> stack = new ArrayList<>();
+    private final Variable returnValue;
+    private final List<Boolean> loops;
+    private final List<TryStmt> catching;
+    private final Map<String, Map<Callable, MockingCall>> mocks;
+    /**
+     * The Mockito stubs registered in front of the branch. They are cleared once a test has been
+     * written, so the tests for the other paths need them back.
+     */
+    private final List<Expression> whenThen = new ArrayList<>();
+    private final Set<ImportDeclaration> imports;
+    private final List<Precondition> preconditions;
+    /**
+     * False if an object that could not be copied was reached
+     */
+    private final boolean complete;
+
+    private BranchSnapshot(IfStmt branch, Evaluator evaluator, Map<String, Variable> arguments,
+                           List<Precondition> preconditions) {
+        this.branch = branch;
+        this.evaluator = evaluator;
+        this.preconditions = new ArrayList<>();
+        for (Precondition p : preconditions) {
+            if (this.preconditions.stream().noneMatch(q -> q.getExpression().equals(p.getExpression()))) {
+                this.preconditions.add(p);
+            }
+        }
+
+        Copier copier = new Copier(fields);
+        for (Map.Entry<BlockStmt, LocalFrame> e : evaluator.getLocals().entrySet()) {
+            locals.put(e.getKey(), e.getValue().copy(copier::variable));
+        }
+        for (Map.Entry<String, Variable> e : arguments.entrySet()) {
+            this.arguments.put(e.getKey(), copier.variable(e.getValue()));
+        }
+        for (Variable v : AntikytheraRunTime.stack) {
+            stack.add(copier.variable(v));
+        }
+        returnValue = copier.variable(evaluator.returnValue);
+        copier.saveFields(evaluator);
+        complete = copier.complete;
+
+        loops = new ArrayList<>(evaluator.loops);
+        catching = new ArrayList<>(evaluator.catching);
+        mocks = MockingRegistry.snapshot();
+        for (Expression expr : TestGenerator.getWhenThen()) {
+            whenThen.add(expr.clone());
+        }
+        imports = new HashSet<>(TestGenerator.getImports());
+    }
+
+    /**
+     * Save the state of the evaluator.
+     *
+     * @param branch the if statement that is about to be executed
+     * @param evaluator the evaluator that is executing it
+     * @param arguments the arguments that were generated for the method
+     * @param preconditions the preconditions that were applied to the arguments
+     * @return the snapshot, or null if the state holds objects that cannot be copied
+     */
+    static BranchSnapshot capture(IfStmt branch, Evaluator evaluator, Map<String, Variable> arguments,
+                                  List<Precondition> preconditions) {
+        BranchSnapshot snapshot = new BranchSnapshot(branch, evaluator, arguments, preconditions);
+        return snapshot.complete ? snapshot : null;
+    }
+
+    /**
+     * Put the evaluator back into the state that it was in when the snapshot was taken.
+     * @param arguments the arguments map of the argument generator, which will be refilled
+     */
+    void restore(Map<String, Variable> arguments) {
+        Copier copier = new Copier(null);
+
+        evaluator.getLocals().clear();
+        for (Map.Entry<BlockStmt, LocalFrame> e : locals.entrySet()) {
+            evaluator.getLocals().put(e.getKey(), e.getValue().copy(copier::variable));
+        }
+        arguments.clear();
+        for (Map.Entry<String, Variable> e : this.arguments.entrySet()) {
+            arguments.put(e.getKey(), copier.variable(e.getValue()));
+        }
+        AntikytheraRunTime.stack.clear();
+        for (Variable v : stack) {
+            AntikytheraRunTime.stack.addLast(copier.variable(v));
+        }
+        evaluator.returnValue = copier.variable(returnValue);
+        evaluator.returnFrom = null;
+
+        for (Map.Entry<Evaluator, Map<String, Variable>> e : fields.entrySet()) {
+            Map<String, Variable> live = e.getKey().fields;
+            live.clear();
+            for (Map.Entry<String, Variable> f : e.getValue().entrySet()) {
+                live.put(f.getKey(), copier.variable(f.getValue()));
+            }
+        }
+
+        evaluator.loops.clear();
+        evaluator.loops.addAll(loops);
+        evaluator.catching.clear();
+        evaluator.catching.addAll(catching);
+        MockingRegistry.restore(mocks);
+        TestGenerator.getWhenThen().clear();
+        for (Expression expr : whenThen) {
+            TestGenerator.getWhenThen().add(expr.clone());
+        }
+        TestGenerator.getImports().addAll(imports);
+    }
+
+    /**
+     * @return the if statement at which the snapshot was taken
+     */
+    IfStmt getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return the preconditions that had been applied to the arguments of the method when the
+     *      snapshot was taken, without duplicates.
+     */
+    List<Precondition> getPreconditions() {
+        return preconditions;
+    }
+
+    /**
+     * Copies variables and the values that they hold, making sure that a value that is shared
+     * by several variables is copied only once.
+     */
+    private static final class Copier {
+        private final Map<Object, Object> copies = new IdentityHashMap<>();
+        /**
+         * Where the fields of each evaluator that is encountered are saved. Null when restoring,
+         * because the evaluators are already known then.
+         */
+        private final Map<Evaluator, Map<String, Variable>> fields;
+        private final Set<Evaluator> reached = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Deque<Evaluator> pending = new ArrayDeque<>();
+        /**
+         * Becomes false when a value that can neither be copied nor shared is found
+         */
+        private boolean complete = true;
+
+        private Copier(Map<Evaluator, Map<String, Variable>> fields) {
+            this.fields = fields;
+        }
+
+        Variable variable(Variable v) {
+            if (v == null) {
+                return null;
+            }
+            Object copy = copies.get(v);
+            if (copy == null) {
+                copy = v.withValue(value(v.getValue()));
+                copies.put(v, copy);
+            }
+            return (Variable) copy;
+        }
+
+        /**
+         * Save the fields of the evaluator along with those of every evaluator reachable from it.
+         */
+        void saveFields(Evaluator root) {
+            reach(root);
+            while (!pending.isEmpty()) {
+                Evaluator eval = pending.pop();
+                Map<String, Variable> saved = new HashMap<>();
+                for (Map.Entry<String, Variable> e : eval.fields.entrySet()) {
+                    saved.put(e.getKey(), variable(e.getValue()));
+                }
+                fields.put(eval, saved);
+            }
+        }
+
+        private void reach(Evaluator eval) {
+            if (fields != null && reached.add(eval)) {
+                pending.push(eval);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object value(Object value) {
+            if (value == null) {
+                return null;
+            }
+            if (value instanceof Evaluator eval) {
+                reach(eval);
+                return eval;
+            }
+            if (isImmutable(value)) {
+                return value;
+            }
+            Object copy = copies.get(value);
+            if (copy != null) {
+                return copy;
+            }
+
+            if (value.getClass().isArray()) {
+                int length = Array.getLength(value);
+                copy = Array.newInstance(value.getClass().getComponentType(), length);
+                copies.put(value, copy);
+                for (int i = 0; i < length; i++) {
+                    Array.set(copy, i, value(Array.get(value, i)));
+                }
+                return copy;
+            }
+
+            if (value instanceof Optional<?> optional) {
+                copy = optional.map(this::value);
+                copies.put(value, copy);
+                return copy;
+            }
+
+            Function<Object, Collection<Object>> collection = COLLECTIONS.get(value.getClass());
+            if (collection != null) {
+                Collection<Object> c = collection.apply(value);
+                copies.put(value, c);
+                for (Object o : (Collection<Object>) value) {
+                    c.add(value(o));
+                }
+                return c;
+            }
+
+            Function<Object, Map<Object, Object>> map = MAPS.get(value.getClass());
+            if (map != null) {
+                Map<Object, Object> m = map.apply(value);
+                copies.put(value, m);
+                for (Map.Entry<Object, Object> e : ((Map<Object, Object>) value).entrySet()) {
+                    m.put(e.getKey(), value(e.getValue()));
+                }
+                return m;
+            }
+
+            if (value.getClass().getName().startsWith("java.util.ImmutableCollections")) {
+                /* List.of() and friends cannot be changed, but what they hold may */
+                copy = switch (value) {
+                    case List<?> l -> List.copyOf(l.stream().map(this::value).toList());
+                    case Set<?> set -> Set.copyOf(set.stream().map(this::value).toList());
+                    case Map<?, ?> m -> {
+                        Map<Object, Object> entries = new HashMap<>();
+                        m.forEach((k, v) -> entries.put(k, value(v)));
+                        yield Map.copyOf(entries);
+                    }
+                    default -> null;
+                };
+                if (copy != null) {
+                    copies.put(value, copy);
+                    return copy;
+                }
+            }
+
+            complete = false;
+            return value;
+        }
+
+        private static boolean isImmutable(Object value) {
+            Class<?> c = value.getClass();
+            return IMMUTABLE.contains(c) || value instanceof Enum<?> || c.getPackageName().equals("java.time");
+        }
+    }
+}
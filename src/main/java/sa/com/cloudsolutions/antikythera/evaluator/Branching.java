@@ -63,6 +63,16 @@ public class Branching {
         return queue != null ? queue.remove() : null;
     }
 
+    /**
+     * @param md the method declaration
+     * @return the line of code that {@link #getHighestPriority(MethodDeclaration)} would return,
+     *      without removing it from the queue. Null if there is none.
+     */
+    public static LineOfCode peekHighestPriority(MethodDeclaration md) {
+        PriorityQueue<LineOfCode> queue = conditionals.get(md);
+        return queue != null ? queue.peek() : null;
+    }
+
     static class LineOfCodeComparator implements Comparator<LineOfCode> {
         @Override
         public int compare(LineOfCode a, LineOfCode b) {
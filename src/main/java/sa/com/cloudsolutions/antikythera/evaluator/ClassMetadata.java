@@ -0,0 +1,189 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>What {@link Reflect} needs to know about a compiled class, worked out once per class.</p>
+ *
+ * <p>Class.getMethods() and Class.getDeclaredConstructors() hand out a fresh copy of their arrays
+ * on every call, and a method search used to call them for the class, for each of its interfaces
+ * and for each of its super classes every time a call was evaluated. The metadata holds the
+ * public methods grouped by name and then by the number of parameters, the declared constructors
+ * grouped by the number of parameters, the order in which the super types are searched, and which
+ * functional interface, if any, the class stands for.</p>
+ *
+ * <p>The metadata is kept in a {@link ClassValue} so that it goes away along with the class. The
+ * lists are in the order of the arrays that they were made from, so a search finds the same
+ * method that it would find by walking through the arrays.</p>
+ */
+final class ClassMetadata {
+    private static final ClassValue<ClassMetadata> METADATA = new ClassValue<>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    private final Map<String, MethodGroup> methods = new HashMap<>();
+    private final Map<Integer, List<Constructor<?>>> constructors = new HashMap<>();
+    private final List<Class<?>> searchOrder;
+    private final Class<?> functionalInterface;
+    private final boolean functional;
+    private final boolean implementsFunctional;
+
+    /**
+     * The public methods that share a name.
+     *
+     * @param all all of them
+     * @param byArity the methods that can be called with a given number of arguments
+     * @param spread the methods that take a single Object[], which are a candidate for any call
+     */
+    private record MethodGroup(List<Method> all, Map<Integer, List<Method>> byArity, List<Method> spread) {}
+
+    private ClassMetadata(Class<?> type) {
+        Map<String, List<Method>> byName = new LinkedHashMap<>();
+        for (Method m : type.getMethods()) {
+            byName.computeIfAbsent(m.getName(), k -> new ArrayList<>()).add(m);
+        }
+        byName.forEach((name, list) -> methods.put(name, group(list)));
+
+        for (Constructor<?> c : type.getDeclaredConstructors()) {
+            constructors.computeIfAbsent(c.getParameterCount(), k -> new ArrayList<>()).add(c);
+        }
+        constructors.replaceAll((k, v) -> List.copyOf(v));
+
+        Set<Class<?>> order = new LinkedHashSet<>();
+        linearize(type, order);
+        searchOrder = List.copyOf(order);
+
+        functional = type.isAnnotationPresent(FunctionalInterface.class);
+        Class<?> found = null;
+        for (Class<?> iface : type.getInterfaces()) {
+            if (iface.isAnnotationPresent(FunctionalInterface.class)) {
+                found = iface;
+                break;
+            }
+        }
+        implementsFunctional = found != null;
+        functionalInterface = found != null ? found : (functional ? type : null);
+    }
+
+    /**
+     * @param type a class
+     * @return the metadata of the class
+     */
+    static ClassMetadata of(Class<?> type) {
+        return METADATA.get(type);
+    }
+
+    /**
+     * @param name a method name
+     * @return the public methods of the class with that name, including the inherited ones.
+     *      The list cannot be modified.
+     */
+    List<Method> getMethods(String name) {
+        MethodGroup group = methods.get(name);
+        return group == null ? List.of() : group.all();
+    }
+
+    /**
+     * @param name a method name
+     * @param arity the number of arguments, or -1 if they are not known
+     * @return the public methods with that name that could take that many arguments
+     */
+    List<Method> getMethods(String name, int arity) {
+        MethodGroup group = methods.get(name);
+        if (group == null) {
+            return List.of();
+        }
+        return group.byArity().getOrDefault(arity, group.spread());
+    }
+
+    /**
+     * @param arity the number of arguments
+     * @return the declared constructors that take that many arguments
+     */
+    List<Constructor<?>> getConstructors(int arity) {
+        return constructors.getOrDefault(arity, List.of());
+    }
+
+    /**
+     * @return the class followed by its super types, in the order in which a method is looked
+     *      for: each interface along with the interfaces that it extends, before the super class.
+     */
+    List<Class<?>> getSearchOrder() {
+        return searchOrder;
+    }
+
+    /**
+     * @return the first functional interface that the class implements directly, or the class
+     *      itself if it is a functional interface, otherwise null.
+     */
+    Class<?> getFunctionalInterface() {
+        return functionalInterface;
+    }
+
+    /**
+     * @return true if the class is annotated as a functional interface
+     */
+    boolean isFunctional() {
+        return functional;
+    }
+
+    /**
+     * @return true if one of the interfaces that the class implements directly is a functional
+     *      interface
+     */
+    boolean implementsFunctional() {
+        return implementsFunctional;
+    }
+
+    private static MethodGroup group(List<Method> all) {
+        List<Method> spread = new ArrayList<>();
+        Map<Integer, List<Method>> byArity = new HashMap<>();
+        for (Method m : all) {
+            byArity.computeIfAbsent(m.getParameterCount(), k -> new ArrayList<>());
+            if (m.getParameterCount() == 1 && m.getParameterTypes()[0].equals(Object[].class)) {
+                spread.add(m);
+            }
+        }
+        for (Map.Entry<Integer, List<Method>> entry : byArity.entrySet()) {
+            for (Method m : all) {
+                if (m.getParameterCount() == entry.getKey() || spread.contains(m)) {
+                    entry.getValue().add(m);
+                }
+            }
+            entry.setValue(List.copyOf(entry.getValue()));
+        }
+        return new MethodGroup(Collections.unmodifiableList(all), byArity, List.copyOf(spread));
+    }
+
+    /**
+     * The order in which Reflect.findAccessibleMethod used to visit the super types. A type that
+     * is reached a second time has already been searched, so it is only listed once.
+     */
+    private static void linearize(Class<?> type, Set<Class<?>> order) {
+        if (!order.add(type)) {
+            return;
+        }
+        for (Class<?> iface : type.getInterfaces()) {
+            order.add(iface);
+            for (Class<?> superIface : iface.getInterfaces()) {
+                linearize(superIface, order);
+            }
+        }
+        Class<?> superclass = type.getSuperclass();
+        if (superclass != null) {
+            linearize(superclass, order);
+        }
+    }
+}
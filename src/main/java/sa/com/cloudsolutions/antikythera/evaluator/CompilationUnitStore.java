@@ -0,0 +1,274 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Holds compilation units within a memory budget.</p>
+ *
+ * <p>Only the most recently used compilation units are strongly reachable from here. The rest
+ * are held through soft references, so the garbage collector may reclaim them when the heap
+ * runs low. A compilation unit that is being used by an evaluator is strongly reachable from
+ * that evaluator and will not be reclaimed. One that has been reclaimed is parsed again, or
+ * read back from the parse cache, when it is needed next.</p>
+ *
+ * <p>Type wrappers are kept without their type declarations, since those would keep the whole
+ * compilation unit alive. The declaration is looked up again each time a wrapper is requested.</p>
+ *
+ * <p>What was worked out from a unit and cached elsewhere refers to its nodes, so the unit can
+ * not be reclaimed until those results are discarded, and discarding them while the unit is
+ * still in memory only means working them out again. Therefore a unit that drops out of the
+ * most recently used set leaves a softly reachable marker behind. The garbage collector clears
+ * the marker under the same pressure that it would clear the unit, and only then are the results
+ * discarded, see {@link AbstractCompiler#invalidate(CompilationUnit)}. A unit that is used again
+ * before that takes its marker back. Units that are parsed again are taken care of when they
+ * are compiled.</p>
+ */
+public class CompilationUnitStore {
+    private static final Logger logger = LoggerFactory.getLogger(CompilationUnitStore.class);
+
+    private final int capacity;
+    /**
+     * Fully qualified class names mapped to the path of the file that they are declared in.
+     */
+    private final Map<String, String> paths = new ConcurrentHashMap<>();
+    /**
+     * Every compilation unit that has been stored, keyed by the relative path.
+     */
+    private final Map<String, SoftReference<CompilationUnit>> units = new ConcurrentHashMap<>();
+    /**
+     * The most recently used compilation units, keyed by the relative path.
+     */
+    private final Map<String, CompilationUnit> recent;
+    /**
+     * The entry that was pushed out of the recently used set by the last call to put, if any.
+     */
+    private Map.Entry<String, CompilationUnit> evicted;
+    /**
+     * Markers for the units that have dropped out of the recently used set, keyed by the
+     * relative path.
+     */
+    private final Map<String, Marker> markers = new ConcurrentHashMap<>();
+    private final ReferenceQueue<Object> cleared = new ReferenceQueue<>();
+    /**
+     * Type wrappers without the type declaration.
+     */
+    private final Map<String, TypeWrapper> types = new ConcurrentHashMap<>();
+
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    /**
+     * @param capacity the number of compilation units that will always be kept in memory
+     */
+    public CompilationUnitStore(int capacity) {
+        this.capacity = capacity;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CompilationUnit> eldest) {
+                if (size() > CompilationUnitStore.this.capacity) {
+                    evictions.incrementAndGet();
+                    evicted = Map.entry(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    void put(String className, CompilationUnit cu, String relativePath) {
+        paths.put(className, relativePath);
+        units.put(relativePath, new SoftReference<>(cu));
+        touch(relativePath, cu);
+    }
+
+    private void touch(String relativePath, CompilationUnit cu) {
+        Map.Entry<String, CompilationUnit> dropped;
+        synchronized (recent) {
+            recent.put(relativePath, cu);
+            dropped = evicted;
+            evicted = null;
+        }
+        markers.remove(relativePath);
+        if (dropped != null && dropped.getValue() != cu) {
+            markers.put(dropped.getKey(), new Marker(dropped.getKey(), dropped.getValue(), cleared));
+        }
+        expunge();
+    }
+
+    /**
+     * Discard what was worked out from the units whose markers have been cleared.
+     */
+    private void expunge() {
+        Reference<?> ref;
+        while ((ref = cleared.poll()) != null) {
+            Marker marker = (Marker) ref;
+            if (markers.remove(marker.path, marker)) {
+                CompilationUnit cu = marker.unit.get();
+                if (cu != null) {
+                    AbstractCompiler.invalidate(cu);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param className the fully qualified name of a class
+     * @return the compilation unit that declares the class, which will be parsed again if it has
+     *      been reclaimed. Null if the class was never stored here.
+     */
+    CompilationUnit get(String className) {
+        String path = paths.get(className);
+        if (path == null) {
+            return null;
+        }
+        SoftReference<CompilationUnit> ref = units.get(path);
+        CompilationUnit cu = ref == null ? null : ref.get();
+        if (cu == null) {
+            cu = reload(path);
+        } else {
+            touch(path, cu);
+        }
+        return cu;
+    }
+
+    private CompilationUnit reload(String relativePath) {
+        try {
+            reloads.incrementAndGet();
+            logger.debug("Reloading {}", relativePath);
+            return AbstractCompiler.reload(relativePath);
+        } catch (IOException e) {
+            logger.warn("Could not reload {}", relativePath, e);
+            return null;
+        }
+    }
+
+    void putType(String className, TypeWrapper wrapper) {
+        TypeWrapper flags = new TypeWrapper();
+        flags.setService(wrapper.isService());
+        flags.setController(wrapper.isController());
+        flags.setComponent(wrapper.isComponent());
+        flags.setInterface(wrapper.isInterface());
+        types.put(className, flags);
+    }
+
+    /**
+     * @param className the fully qualified name of a class
+     * @return a type wrapper that only carries the annotations based flags
+     */
+    TypeWrapper getTypeFlags(String className) {
+        return types.get(className);
+    }
+
+    /**
+     * @param className the fully qualified name of a class
+     * @return a type wrapper that includes the type declaration
+     */
+    TypeWrapper getType(String className) {
+        TypeWrapper flags = types.get(className);
+        if (flags == null) {
+            return null;
+        }
+        CompilationUnit cu = get(className);
+        if (cu == null) {
+            return null;
+        }
+        TypeDeclaration<?> type = AbstractCompiler.getMatchingType(cu, className).orElse(null);
+        if (type == null) {
+            return null;
+        }
+        TypeWrapper wrapper = new TypeWrapper(type);
+        wrapper.setService(flags.isService());
+        wrapper.setController(flags.isController());
+        wrapper.setComponent(flags.isComponent());
+        wrapper.setInterface(flags.isInterface());
+        return wrapper;
+    }
+
+    /**
+     * Let go of the compilation unit for the class as the garbage collector would when the heap
+     * runs low.
+     * @param className the fully qualified name of a class
+     */
+    void release(String className) {
+        String path = paths.get(className);
+        if (path != null) {
+            SoftReference<CompilationUnit> ref = units.remove(path);
+            synchronized (recent) {
+                recent.remove(path);
+            }
+            markers.remove(path);
+            CompilationUnit cu = ref == null ? null : ref.get();
+            if (cu != null) {
+                AbstractCompiler.invalidate(cu);
+            }
+        }
+    }
+
+    void clear() {
+        paths.clear();
+        units.clear();
+        types.clear();
+        markers.clear();
+        synchronized (recent) {
+            recent.clear();
+        }
+    }
+
+    /**
+     * @return the number of compilation units that are held in memory regardless of the heap
+     */
+    public long getResident() {
+        synchronized (recent) {
+            return recent.size();
+        }
+    }
+
+    /**
+     * @return the number of times a compilation unit dropped out of the most recently used set
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of times a compilation unit had to be parsed again
+     */
+    public long getReloads() {
+        return reloads.get();
+    }
+
+    /**
+     * Stands in for a unit that has dropped out of the recently used set. The marker is only
+     * reachable through this soft reference, while the unit may still be reachable from the
+     * results that were worked out from it.
+     */
+    private static final class Marker extends SoftReference<Object> {
+        private final String path;
+        private final WeakReference<CompilationUnit> unit;
+
+        Marker(String path, CompilationUnit cu, ReferenceQueue<Object> queue) {
+            super(new Object(), queue);
+            this.path = path;
+            this.unit = new WeakReference<>(cu);
+        }
+    }
+}
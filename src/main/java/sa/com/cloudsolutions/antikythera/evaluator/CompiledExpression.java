@@ -0,0 +1,228 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+
+/**
+ * <p>An expression that has been compiled into a tree of executable nodes.</p>
+ *
+ * <p>{@link Evaluator#interpretExpression(Expression)} works out what kind of expression it is
+ * looking at through a long chain of tests, every time the expression is evaluated. Here that
+ * is done once. Each expression is turned into a node that knows exactly what to do, and which
+ * holds the compiled nodes of its sub expressions. The node is attached to the expression, so
+ * evaluating a method body a second time, or a loop body for the second iteration, executes the
+ * same nodes again.</p>
+ *
+ * <p>Nodes can specialize themselves. A literal parses its value the first time it is executed
+ * and after that only wraps the same value in a new variable. Kinds of expressions that do not
+ * have a dedicated node are handed back to the interpreter, so that the results are always the
+ * same as those of the interpreter. Like the interpreter, every sub expression is first looked
+ * up in the {@link ConstantFolder}.</p>
+ *
+ * <p>The syntax tree is sometimes rearranged during evaluation. A node remembers the expression
+ * it was compiled from, and each child is checked against the current child expression before
+ * it is executed. A node that no longer matches is compiled again.</p>
+ */
+abstract class CompiledExpression {
+    private static final DataKey<CompiledExpression> KEY = new DataKey<>() {};
+
+    protected final Expression source;
+
+    protected CompiledExpression(Expression source) {
+        this.source = source;
+    }
+
+    /**
+     * Evaluate the expression.
+     * @param eval the evaluator that provides the locals and fields
+     * @return the result, exactly as the interpreter would produce it
+     * @throws ReflectiveOperationException if a reflective operation fails
+     */
+    abstract Variable execute(Evaluator eval) throws ReflectiveOperationException;
+
+    /**
+     * Evaluate a sub expression, which may have been folded into a constant since it was compiled.
+     * @param eval the evaluator that provides the locals and fields
+     * @return the result, exactly as the interpreter would produce it
+     * @throws ReflectiveOperationException if a reflective operation fails
+     */
+    final Variable run(Evaluator eval) throws ReflectiveOperationException {
+        Variable constant = ConstantFolder.lookup(source);
+        return constant != null ? constant : execute(eval);
+    }
+
+    /**
+     * @param expr an expression
+     * @return the compiled form of the expression, which will be compiled if needed
+     */
+    static CompiledExpression of(Expression expr) {
+        if (expr.containsData(KEY)) {
+            CompiledExpression compiled = expr.getData(KEY);
+            if (compiled.source == expr) {
+                return compiled;
+            }
+        }
+        CompiledExpression compiled = compile(expr);
+        expr.setData(KEY, compiled);
+        return compiled;
+    }
+
+    private static CompiledExpression compile(Expression expr) {
+        return switch (expr) {
+            case LiteralExpr literal -> new Literal(literal);
+            case NameExpr name -> new Name(name);
+            case BinaryExpr binary -> new Binary(binary);
+            case EnclosedExpr enclosed -> new Inner(enclosed, enclosed.getInner());
+            case CastExpr cast -> new Inner(cast, cast.getExpression());
+            case ConditionalExpr conditional -> new Conditional(conditional);
+            case MethodCallExpr call -> new Call(call);
+            default -> new Interpreted(expr);
+        };
+    }
+
+    /**
+     * The compiled child, compiled again if the child expression has been replaced.
+     */
+    static CompiledExpression child(CompiledExpression compiled, Expression current) {
+        return compiled.source == current ? compiled : of(current);
+    }
+
+    private static final class Literal extends CompiledExpression {
+        private Variable template;
+
+        private Literal(LiteralExpr source) {
+            super(source);
+        }
+
+        @Override
+        Variable execute(Evaluator eval) {
+            if (template == null) {
+                template = Evaluator.evaluateLiteral(source);
+            }
+            return template.withValue(template.getValue());
+        }
+    }
+
+    private static final class Name extends CompiledExpression {
+        private final String name;
+
+        private Name(NameExpr source) {
+            super(source);
+            name = source.getNameAsString();
+        }
+
+        @Override
+        Variable execute(Evaluator eval) {
+            return eval.getValue(source, name);
+        }
+    }
+
+    private static final class Binary extends CompiledExpression {
+        private final BinaryExpr.Operator operator;
+        private CompiledExpression left;
+        private CompiledExpression right;
+
+        private Binary(BinaryExpr source) {
+            super(source);
+            operator = source.getOperator();
+            left = of(source.getLeft());
+            right = of(source.getRight());
+        }
+
+        @Override
+        Variable execute(Evaluator eval) throws ReflectiveOperationException {
+            BinaryExpr binary = (BinaryExpr) source;
+            if (binary.getOperator() != operator) {
+                return eval.interpretExpression(binary);
+            }
+            left = child(left, binary.getLeft());
+            Variable l = left.run(eval);
+            if (operator == BinaryExpr.Operator.OR && (boolean) l.getValue()) {
+                return new Variable(Boolean.TRUE);
+            }
+            if (operator == BinaryExpr.Operator.AND && !((boolean) l.getValue())) {
+                return new Variable(Boolean.FALSE);
+            }
+            right = child(right, binary.getRight());
+            Variable r = right.run(eval);
+            return BinaryOps.binaryOps(operator, binary.getLeft(), binary.getRight(), l, r);
+        }
+    }
+
+    /**
+     * Brackets and casts, both of which evaluate to whatever is inside them.
+     */
+    private static final class Inner extends CompiledExpression {
+        private CompiledExpression inner;
+
+        private Inner(Expression source, Expression inner) {
+            super(source);
+            this.inner = of(inner);
+        }
+
+        @Override
+        Variable execute(Evaluator eval) throws ReflectiveOperationException {
+            Expression current = source instanceof EnclosedExpr e ? e.getInner() : ((CastExpr) source).getExpression();
+            inner = child(inner, current);
+            return inner.run(eval);
+        }
+    }
+
+    private static final class Conditional extends CompiledExpression {
+        private CompiledExpression condition;
+        private CompiledExpression thenExpr;
+        private CompiledExpression elseExpr;
+
+        private Conditional(ConditionalExpr source) {
+            super(source);
+            condition = of(source.getCondition());
+            thenExpr = of(source.getThenExpr());
+            elseExpr = of(source.getElseExpr());
+        }
+
+        @Override
+        Variable execute(Evaluator eval) throws ReflectiveOperationException {
+            ConditionalExpr conditional = (ConditionalExpr) source;
+            condition = child(condition, conditional.getCondition());
+            Variable v = condition.run(eval);
+            if (v != null && v.getValue().equals(Boolean.TRUE)) {
+                thenExpr = child(thenExpr, conditional.getThenExpr());
+                return thenExpr.run(eval);
+            }
+            elseExpr = child(elseExpr, conditional.getElseExpr());
+            return elseExpr.run(eval);
+        }
+    }
+
+    /**
+     * A call site. Finding the target of the call is left to the inline caches.
+     */
+    private static final class Call extends CompiledExpression {
+        private Call(MethodCallExpr source) {
+            super(source);
+        }
+
+        @Override
+        Variable execute(Evaluator eval) throws ReflectiveOperationException {
+            return eval.evaluateMethodCall((MethodCallExpr) source);
+        }
+    }
+
+    private static final class Interpreted extends CompiledExpression {
+        private Interpreted(Expression source) {
+            super(source);
+        }
+
+        @Override
+        Variable execute(Evaluator eval) throws ReflectiveOperationException {
+            return eval.interpretExpression(source);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.ConditionalExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LiteralExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.PatternExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.observer.AstObserver;
+import com.github.javaparser.ast.observer.ObservableProperty;
+import com.github.javaparser.ast.observer.PropagatingAstObserver;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.type.Type;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * <p>Works out the values of the constant expressions in a compilation unit, once.</p>
+ *
+ * <p>Literals used to be parsed every time that they were evaluated, and a static final field
+ * was looked up in the fields of the evaluator on each use. The folder visits the whole unit
+ * when the first evaluator for it is created. Every literal gets its value attached to it, and
+ * so does every expression that is made up of constants alone: arithmetic, comparisons and
+ * string concatenation on literals, brackets, casts, conditionals with a constant condition, and
+ * the names of static final fields of a primitive or string type whose initializer is constant.
+ * {@link Evaluator#evaluateExpression(Expression)} hands out a new variable holding that value,
+ * which shares the type of the template, instead of evaluating the expression again. The kinds
+ * of expression that are never folded, such as method calls, are turned away without looking at
+ * the data of the node.</p>
+ *
+ * <p>Folding uses the same operations that the evaluator uses, so the results are identical.
+ * Anything that cannot be folded, because it would throw or because an operator is not
+ * supported, is left alone to be evaluated in the usual way.</p>
+ *
+ * <p>A name is only folded when it cannot refer to anything else: no parameter or local variable
+ * anywhere in the unit has that name, and the innermost type that declares a field of that name
+ * is the one that the name appears in, or encloses it without any inheritance in between.</p>
+ *
+ * <p>The syntax tree is sometimes rearranged during evaluation. A single observer is registered
+ * on the unit, and it follows the nodes that are added later. A change within a folded
+ * expression, or to the declaration of a field whose name was folded, drops the folded values of
+ * everything that was worked out from it. A folded value also remembers the direct parts of the
+ * expression, so that the values carried along into a clone of the unit are ignored.</p>
+ */
+final class ConstantFolder {
+    private static final DataKey<Constant> KEY = new DataKey<>() {};
+    private static final DataKey<CompilationUnit> FOLDED = new DataKey<>() {};
+    /**
+     * The names that were folded to the value of a field, attached to its declaration.
+     */
+    private static final DataKey<Users> USERS = new DataKey<>() {};
+    /**
+     * Drops the folded value of an expression that has been changed, along with those of
+     * everything that was worked out from it.
+     */
+    private static final AstObserver INVALIDATOR = new PropagatingAstObserver() {
+        @Override
+        public void concretePropertyChange(Node observedNode, ObservableProperty property, Object oldValue, Object newValue) {
+            invalidate(observedNode);
+        }
+
+        @Override
+        public void concreteListChange(NodeList<?> observedNode, ListChangeType type, int index, Node nodeAddedOrRemoved) {
+            observedNode.getParentNode().ifPresent(ConstantFolder::invalidate);
+        }
+
+        @Override
+        public void concreteListReplacement(NodeList<?> observedNode, int index, Node oldNode, Node newNode) {
+            observedNode.getParentNode().ifPresent(ConstantFolder::invalidate);
+        }
+    };
+
+    private final Map<Expression, Constant> visited = new IdentityHashMap<>();
+    private final Set<String> shadowed = new HashSet<>();
+
+    /**
+     * @param owner the declaration that the names refer to. The data is copied along with a
+     *              unit that is cloned, hence the owner.
+     * @param names the names that were folded
+     */
+    private record Users(VariableDeclarator owner, List<NameExpr> names) {}
+
+    /**
+     * The value of a constant expression.
+     *
+     * @param value the template that the values handed out are made from
+     * @param source for a name, the declaration of the field that it refers to
+     * @param parts the sub expressions that the value was worked out from. A sub expression that
+     *              was not needed, such as the branch of a conditional that is not taken, is null.
+     */
+    private record Constant(Variable value, VariableDeclarator source, Expression... parts) {
+        /**
+         * Changes within the expression are taken care of by the {@link #INVALIDATOR}, so only
+         * the direct parts are compared. For a name, the initializer of the field has to be the
+         * same and still folded.
+         */
+        boolean isCurrent(Expression expr) {
+            if (source != null) {
+                Expression init = source.getInitializer().orElse(null);
+                return init == parts[0] && init.containsData(KEY);
+            }
+            return switch (expr) {
+                case BinaryExpr b -> is(0, b.getLeft()) && is(1, b.getRight());
+                case EnclosedExpr e -> is(0, e.getInner());
+                case CastExpr c -> is(0, c.getExpression());
+                case UnaryExpr u -> is(0, u.getExpression());
+                case ConditionalExpr c -> is(0, c.getCondition()) && is(1, c.getThenExpr()) && is(2, c.getElseExpr());
+                default -> parts.length == 0;
+            };
+        }
+
+        private boolean is(int i, Expression current) {
+            return parts[i] == null || parts[i] == current;
+        }
+    }
+
+    /**
+     * Walk up from a node that has been changed, dropping the folded values on the way. The walk
+     * ends at the first expression that was not folded, since nothing above it can have been
+     * worked out from the change. Reaching the declaration of a field carries on from each of the
+     * names that refer to it.
+     */
+    private static void invalidate(Node node) {
+        for (Node n = node; n != null; n = n.getParentNode().orElse(null)) {
+            if (n instanceof Expression e) {
+                if (!e.containsData(KEY)) {
+                    return;
+                }
+                e.removeData(KEY);
+            } else if (n instanceof VariableDeclarator v) {
+                dropUsers(v);
+                return;
+            } else if (n instanceof FieldDeclaration fd) {
+                fd.getVariables().forEach(ConstantFolder::dropUsers);
+                return;
+            } else if (n instanceof Statement || n instanceof BodyDeclaration<?>) {
+                return;
+            }
+            /* names, types and modifiers belong to the node above them */
+        }
+    }
+
+    private static void dropUsers(VariableDeclarator v) {
+        if (v.containsData(USERS) && v.getData(USERS).owner() == v) {
+            Users users = v.getData(USERS);
+            v.removeData(USERS);
+            users.names().forEach(ConstantFolder::invalidate);
+        }
+    }
+
+    private ConstantFolder(CompilationUnit cu) {
+        for (Parameter p : cu.findAll(Parameter.class)) {
+            shadowed.add(p.getNameAsString());
+        }
+        for (VariableDeclarator v : cu.findAll(VariableDeclarator.class)) {
+            if (!(v.getParentNode().orElse(null) instanceof FieldDeclaration)) {
+                shadowed.add(v.getNameAsString());
+            }
+        }
+        for (PatternExpr p : cu.findAll(PatternExpr.class)) {
+            p.toTypePatternExpr().ifPresent(t -> shadowed.add(t.getNameAsString()));
+        }
+    }
+
+    /**
+     * Fold the constant expressions of a compilation unit, unless that has already been done.
+     * @param cu the compilation unit
+     */
+    static void fold(CompilationUnit cu) {
+        /* the data is copied along with a unit that is cloned, hence the identity check */
+        if (cu.containsData(FOLDED) && cu.getData(FOLDED) == cu) {
+            return;
+        }
+        cu.setData(FOLDED, cu);
+
+        ConstantFolder folder = new ConstantFolder(cu);
+        for (Expression expr : cu.findAll(Expression.class)) {
+            folder.fold(expr);
+        }
+        if (!cu.isRegistered(INVALIDATOR)) {
+            cu.register(INVALIDATOR, Node.ObserverRegistrationMode.SELF_PROPAGATING);
+        }
+    }
+
+    /**
+     * @param expr an expression
+     * @return a new variable with the value of the expression if it has been folded and the
+     *      expression has not been changed since, otherwise null. The type is shared with the
+     *      template.
+     */
+    static Variable lookup(Expression expr) {
+        if (!isFoldable(expr) || !expr.containsData(KEY)) {
+            return null;
+        }
+        Constant c = expr.getData(KEY);
+        if (!c.isCurrent(expr)) {
+            /* left behind by a clone, it will not become current again */
+            expr.removeData(KEY);
+            return null;
+        }
+        return c.value.withValue(c.value.getValue());
+    }
+
+    /**
+     * @return true if the expression is of a kind that may be folded
+     */
+    private static boolean isFoldable(Expression expr) {
+        return expr instanceof LiteralExpr || expr instanceof NameExpr || expr instanceof BinaryExpr
+                || expr instanceof EnclosedExpr || expr instanceof UnaryExpr || expr instanceof CastExpr
+                || expr instanceof ConditionalExpr;
+    }
+
+    private Variable fold(Expression expr) {
+        if (visited.containsKey(expr)) {
+            Constant c = visited.get(expr);
+            return c == null ? null : c.value;
+        }
+        /* guards against a field whose initializer refers to itself */
+        visited.put(expr, null);
+
+        Constant c = switch (expr) {
+            case LiteralExpr literal -> literal(literal);
+            case BinaryExpr binary -> binary(binary);
+            case EnclosedExpr enclosed -> inner(enclosed.getInner());
+            case CastExpr cast -> inner(cast.getExpression());
+            case UnaryExpr unary -> unary(unary);
+            case ConditionalExpr conditional -> conditional(conditional);
+            case NameExpr name -> name(name);
+            default -> null;
+        };
+        if (c != null) {
+            visited.put(expr, c);
+            expr.setData(KEY, c);
+            return c.value;
+        }
+        return null;
+    }
+
+    private static Constant literal(LiteralExpr literal) {
+        try {
+            return new Constant(Evaluator.evaluateLiteral(literal), null);
+        } catch (RuntimeException e) {
+            /* text blocks and malformed literals are left to the evaluator */
+            return null;
+        }
+    }
+
+    private Constant binary(BinaryExpr binary) {
+        Variable left = fold(binary.getLeft());
+        if (left == null) {
+            return null;
+        }
+        BinaryExpr.Operator operator = binary.getOperator();
+        if (operator == BinaryExpr.Operator.OR && Boolean.TRUE.equals(left.getValue())) {
+            return new Constant(new Variable(Boolean.TRUE), null, binary.getLeft(), null);
+        }
+        if (operator == BinaryExpr.Operator.AND && Boolean.FALSE.equals(left.getValue())) {
+            return new Constant(new Variable(Boolean.FALSE), null, binary.getLeft(), null);
+        }
+        Variable right = fold(binary.getRight());
+        if (right == null) {
+            return null;
+        }
+        try {
+            Variable v = BinaryOps.binaryOps(operator, binary.getLeft(), binary.getRight(),
+                    left.withValue(left.getValue()), right.withValue(right.getValue()));
+            return v == null ? null : new Constant(v, null, binary.getLeft(), binary.getRight());
+        } catch (RuntimeException e) {
+            /* division by zero for example, which has to happen when the code is executed */
+            return null;
+        }
+    }
+
+    private Constant inner(Expression inner) {
+        Variable v = fold(inner);
+        return v == null ? null : new Constant(v, null, inner);
+    }
+
+    private Constant unary(UnaryExpr unary) {
+        Variable v = fold(unary.getExpression());
+        if (v == null) {
+            return null;
+        }
+        Object value = switch (unary.getOperator()) {
+            case LOGICAL_COMPLEMENT -> v.getValue() instanceof Boolean b ? !b : null;
+            case MINUS -> switch (v.getValue()) {
+                case Integer n -> -n;
+                case Double d -> -d;
+                case Long l -> -l;
+                case null, default -> null;
+            };
+            default -> null;
+        };
+        if (value == null) {
+            return null;
+        }
+        Variable result = v.withValue(value);
+        return new Constant(result, null, unary.getExpression());
+    }
+
+    private Constant conditional(ConditionalExpr conditional) {
+        Variable condition = fold(conditional.getCondition());
+        if (condition == null || condition.getValue() == null) {
+            return null;
+        }
+        boolean then = condition.getValue().equals(Boolean.TRUE);
+        Variable v = fold(then ? conditional.getThenExpr() : conditional.getElseExpr());
+        if (v == null) {
+            return null;
+        }
+        return then
+                ? new Constant(v, null, conditional.getCondition(), conditional.getThenExpr(), null)
+                : new Constant(v, null, conditional.getCondition(), null, conditional.getElseExpr());
+    }
+
+    private Constant name(NameExpr name) {
+        String n = name.getNameAsString();
+        if (shadowed.contains(n)) {
+            return null;
+        }
+        Optional<VariableDeclarator> field = findField(name, n);
+        if (field.isEmpty()) {
+            return null;
+        }
+        VariableDeclarator declarator = field.get();
+        FieldDeclaration fd = (FieldDeclaration) declarator.getParentNode().orElseThrow();
+        Optional<Expression> init = declarator.getInitializer();
+        if (!fd.isStatic() || !fd.isFinal() || init.isEmpty()) {
+            return null;
+        }
+        Variable v = fold(init.get());
+        if (v == null || !matches(declarator.getType(), v.getValue())) {
+            return null;
+        }
+        if (!declarator.containsData(USERS) || declarator.getData(USERS).owner() != declarator) {
+            declarator.setData(USERS, new Users(declarator, new ArrayList<>()));
+        }
+        declarator.getData(USERS).names().add(name);
+        return new Constant(v, declarator, init.get());
+    }
+
+    /**
+     * Find the field that a name refers to by looking through the enclosing types, innermost
+     * first. Gives up on reaching a type that may inherit fields from elsewhere.
+     */
+    private static Optional<VariableDeclarator> findField(Node node, String name) {
+        for (Node n = node.getParentNode().orElse(null); n != null; n = n.getParentNode().orElse(null)) {
+            if (n instanceof ObjectCreationExpr oce && oce.getAnonymousClassBody().isPresent()) {
+                return Optional.empty();
+            }
+            if (n instanceof TypeDeclaration<?> t) {
+                Optional<FieldDeclaration> fd = t.getFieldByName(name);
+                if (fd.isPresent()) {
+                    return fd.get().getVariables().stream()
+                            .filter(v -> v.getNameAsString().equals(name)).findFirst();
+                }
+                if (!(t instanceof ClassOrInterfaceDeclaration cid)
+                        || cid.getExtendedTypes().isNonEmpty() || cid.getImplementedTypes().isNonEmpty()) {
+                    return Optional.empty();
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Java would convert the value to the type of the field, the evaluator does not, so only the
+     * fields whose initializer already has the right type are folded.
+     */
+    private static boolean matches(Type type, Object value) {
+        return switch (type.asString()) {
+            case "int", "Integer" -> value instanceof Integer;
+            case "long", "Long" -> value instanceof Long;
+            case "double", "Double" -> value instanceof Double;
+            case "boolean", "Boolean" -> value instanceof Boolean;
+            case "char", "Character" -> value instanceof Character;
+            case "String", "java.lang.String" -> value instanceof String;
+            default -> false;
+        };
+    }
+}
@@ -386,11 +386,10 @@ public class ControlFlowEvaluator extends Evaluator {
         }
 
         TruthTable tt = new TruthTable(emptyCondition);
-        tt.generateTruthTable();
-        List<Map<Expression, Object>> emptyValues = tt.findValuesForCondition(state);
+        Optional<Map<Expression, Object>> emptyValues = tt.solve(state);
 
-        if (!emptyValues.isEmpty()) {
-            Map<Expression, Object> value = emptyValues.getFirst();
+        if (emptyValues.isPresent()) {
+            Map<Expression, Object> value = emptyValues.get();
             for (Parameter param : method.getParameters()) {
                 Type type = param.getType();
                 for (Map.Entry<Expression, Object> entry : value.entrySet()) {
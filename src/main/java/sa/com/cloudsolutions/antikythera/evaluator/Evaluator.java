@@ -47,12 +47,12 @@ import com.github.javaparser.ast.stmt.TryStmt;
 import com.github.javaparser.ast.stmt.WhileStmt;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.Type;
-import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 import net.bytebuddy.ByteBuddy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.depsolver.ClassProcessor;
 import sa.com.cloudsolutions.antikythera.evaluator.functional.FPEvaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionEvaluator;
@@ -73,13 +73,13 @@ import sa.com.cloudsolutions.antikythera.parser.MCEWrapper;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InaccessibleObjectException;
 import java.lang.reflect.Method;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -100,9 +100,10 @@ public class Evaluator {
      * <p>Local variables.</p>
      *
      * <p>These are specific to a block statement. A block statement may also be an
-     * entire method. The primary key will be the hashcode of the block statement.</p>
+     * entire method. The key is the block statement itself, compared by identity, so that two
+     * blocks with identical code do not share their variables.</p>
      */
-    private final Map<Integer, Map<String, Variable>> locals;
+    private final Map<BlockStmt, LocalFrame> locals;
     /**
      * The fully qualified name of the class for which we created this evaluator.
      */
@@ -133,9 +134,16 @@ public class Evaluator {
 
     private static long sequence = 0;
 
+    /**
+     * True if expressions should be evaluated through {@link CompiledExpression}
+     */
+    private final boolean compiled;
+
     protected Evaluator() {
-        locals = new HashMap<>();
+        locals = new IdentityHashMap<>();
         fields = new HashMap<>();
+        compiled = Settings.COMPILED_ENGINE.equals(
+                Settings.getProperty(Settings.EXECUTION_ENGINE, String.class).orElse(null));
     }
 
     protected Evaluator(EvaluatorFactory.Context context) {
@@ -144,6 +152,7 @@ public class Evaluator {
         cu = AntikytheraRunTime.getCompilationUnit(className);
         if (cu != null) {
             typeDeclaration = AbstractCompiler.getMatchingType(cu, className).orElseThrow();
+            ConstantFolder.fold(cu);
         }
         Finch.loadFinches();
     }
@@ -252,8 +261,28 @@ public class Evaluator {
      * @param expr the expression to evaluate
      * @return the result as a Variable instance which can be null if the expression is supposed to return null
      */
-    @SuppressWarnings("java:S3776")
     public Variable evaluateExpression(Expression expr) throws ReflectiveOperationException {
+        Variable constant = ConstantFolder.lookup(expr);
+        if (constant != null) {
+            return constant;
+        }
+        if (compiled) {
+            return CompiledExpression.of(expr).execute(this);
+        }
+        return interpretExpression(expr);
+    }
+
+    /**
+     * Evaluate an expression by walking the syntax tree.
+     * This is the default execution engine, and the one that the compiled engine falls back to
+     * for the expressions that it does not have a specialized node for.
+     *
+     * @param expr the expression to evaluate
+     * @return the result as a Variable instance which can be null if the expression is supposed to return null
+     * @throws ReflectiveOperationException if a reflective operation fails
+     */
+    @SuppressWarnings("java:S3776")
+    Variable interpretExpression(Expression expr) throws ReflectiveOperationException {
         if (expr.isNameExpr()) {
             String name = expr.asNameExpr().getNameAsString();
             return getValue(expr, name);
@@ -545,7 +574,7 @@ public class Evaluator {
             }
         } else if (target.isNameExpr()) {
             String name = target.asNameExpr().getNameAsString();
-            setLocal(expr, name, v);
+            setLocal(target, name, v);
         }
 
         return v;
@@ -653,7 +682,7 @@ public class Evaluator {
             }
             MCEWrapper mce = wrapCallExpression(oce);
 
-            Optional<Callable> matchingConstructor = AbstractCompiler.findConstructorDeclaration(mce, match);
+            Optional<Callable> matchingConstructor = findCallable(mce, match);
 
             if (matchingConstructor.isPresent()) {
                 eval.executeConstructor(matchingConstructor.get().getCallableDeclaration());
@@ -716,7 +745,7 @@ public class Evaluator {
             Constructor<?> cons = Reflect.findConstructor(clazz, reflectionArguments.getArgumentTypes(),
                     reflectionArguments.getArguments());
             if (cons != null) {
-                Object instance = cons.newInstance(reflectionArguments.getArguments());
+                Object instance = ReflectiveInvoker.of(cons).invoke(null, reflectionArguments.getArguments());
                 Variable v = new Variable(instance);
                 v.setClazz(clazz);
                 return v;
@@ -741,37 +770,44 @@ public class Evaluator {
      * @param name the name of the variable to look up
      * @return the Variable if it's found or null.
      */
-    @SuppressWarnings("java:S3776")
     public Variable getLocal(Node node, String name) {
-        Node n = node;
-
-        while (n != null) {
-            BlockStmt block = AbstractCompiler.findBlockStatement(n);
-            int hash = (block != null) ? block.hashCode() : 0;
-            if (hash == 0) {
-                for (Map<String, Variable> entry : locals.values()) {
-                    Variable v = entry.get(name);
-                    if (v != null) {
-                        return v;
-                    }
-                }
-                break;
+        BlockScope.Resolved resolved = BlockScope.resolved(node, name);
+        if (resolved != null && resolved.block() != null) {
+            LocalFrame frame = locals.get(resolved.block());
+            Variable v = frame == null || !frame.hasScope(resolved.scope()) ? null : frame.get(resolved.slot());
+            if (v != null) {
+                return v;
             }
+            /* not assigned yet, it may have been stored elsewhere in the meantime */
+            resolved = null;
+        }
+        /* with no declaration in sight, only the variables stored without a slot can match */
+        boolean unforeseen = resolved != null;
+        BlockStmt block = AbstractCompiler.findBlockStatement(node);
 
-            Map<String, Variable> localsVars = this.locals.get(hash);
-
-            if (localsVars != null) {
-                Variable v = localsVars.get(name);
-                if (v != null)
+        while (block != null) {
+            LocalFrame frame = locals.get(block);
+            if (frame != null) {
+                Variable v = unforeseen ? frame.getUnforeseen(name) : frame.get(name);
+                if (v != null) {
                     return v;
+                }
             }
-            if (n instanceof MethodDeclaration) {
-                localsVars = this.locals.get(hash);
-                return localsVars == null ? null : localsVars.get(name);
+            BlockScope scope = BlockScope.of(block);
+            if (scope.isOutermost()) {
+                return null;
             }
+            block = scope.getParent();
+        }
 
-            n = block.getParentNode().orElse(null);
-
+        /*
+         * Not inside any block, which happens with lambdas in field initializers for example.
+         */
+        for (LocalFrame frame : locals.values()) {
+            Variable v = frame.get(name);
+            if (v != null) {
+                return v;
+            }
         }
         return null;
     }
@@ -795,11 +831,18 @@ public class Evaluator {
             }
         }
 
-        BlockStmt block = AbstractCompiler.findBlockStatement(node);
-        int hash = (block != null) ? block.hashCode() : 0;
+        BlockScope.Resolved resolved = BlockScope.resolved(node, nameAsString);
+        if (resolved != null && resolved.block() != null && node instanceof VariableDeclarator) {
+            LocalFrame frame = locals.computeIfAbsent(resolved.block(), k -> new LocalFrame(resolved.scope()));
+            if (frame.hasScope(resolved.scope())) {
+                frame.set(resolved.slot(), v);
+                return;
+            }
+        }
 
-        Map<String, Variable> localVars = this.locals.computeIfAbsent(hash, k -> new HashMap<>());
-        localVars.put(nameAsString, v);
+        BlockStmt block = AbstractCompiler.findBlockStatement(node);
+        LocalFrame frame = locals.computeIfAbsent(block, k -> new LocalFrame(k == null ? null : BlockScope.of(k)));
+        frame.put(nameAsString, v);
     }
 
     /**
@@ -1020,8 +1063,24 @@ public class Evaluator {
         }
     }
 
+    /**
+     * Finds the method or constructor that a call refers to, reusing the outcome of an earlier
+     * search at the same call site when possible.
+     *
+     * @param wrapper the call with its argument types
+     * @param decl the type declaration in which the method or constructor should be found
+     * @return the matching callable if there is one
+     */
+    protected Optional<Callable> findCallable(MCEWrapper wrapper, TypeDeclaration<?> decl) {
+        NodeList<Type> types = wrapper.getArgumentTypes();
+        Optional<Callable> callable = InlineCache.forSourceCalls().get((Node) wrapper.getMethodCallExpr(), decl,
+                types == null ? null : new ArrayList<>(types),
+                () -> AbstractCompiler.findCallableDeclaration(wrapper, decl));
+        return callable.map(c -> c.copyFor(wrapper));
+    }
+
     Variable reflectiveMethodCall(Variable v, ReflectionArguments reflectionArguments) throws ReflectiveOperationException {
-        Method method = Reflect.findAccessibleMethod(v.getClazz(), reflectionArguments);
+        Method method = Reflect.findAccessibleMethod(v.getClazz(), reflectionArguments, reflectionArguments.getMethodCallExpression());
         validateReflectiveMethod(v, reflectionArguments, method);
         reflectionArguments.setMethod(method);
         reflectionArguments.finalizeArguments();
@@ -1031,38 +1090,28 @@ public class Evaluator {
 
     void invokeReflectively(Variable v, ReflectionArguments reflectionArguments) throws ReflectiveOperationException {
         Method method = reflectionArguments.getMethod();
+        ReflectiveInvoker invoker = ReflectiveInvoker.of(method);
+        if (invoker.isAccessible()) {
+            setReflectiveResult(invoker.invoke(v.getValue(), reflectionArguments.getFinalArgs()), method);
+        } else {
+            invokeinAccessibleMethod(v, reflectionArguments, invoker);
+        }
+    }
 
-        Object[] finalArgs = reflectionArguments.getFinalArgs();
-        try {
-            returnValue = new Variable(method.invoke(v.getValue(), finalArgs));
-            if (returnValue.getValue() == null && returnValue.getClazz() == null) {
-                returnValue.setClazz(method.getReturnType());
-            }
-        } catch (IllegalAccessException e) {
-            invokeinAccessibleMethod(v, reflectionArguments);
+    private void invokeinAccessibleMethod(Variable v, ReflectionArguments reflectionArguments, ReflectiveInvoker invoker)
+            throws ReflectiveOperationException {
+        // If module access fails, try to find a public interface or superclass method
+        Method publicMethod = invoker.publicSubstitute(v.getClazz(), reflectionArguments.getArgumentTypes());
+        if (publicMethod != null) {
+            setReflectiveResult(ReflectiveInvoker.of(publicMethod).invoke(v.getValue(), reflectionArguments.getFinalArgs()),
+                    publicMethod);
         }
     }
 
-    @SuppressWarnings("java:S3011")
-    private void invokeinAccessibleMethod(Variable v, ReflectionArguments reflectionArguments) throws ReflectiveOperationException {
-        Method method = reflectionArguments.getMethod();
-        Object[] finalArgs = reflectionArguments.getFinalArgs();
-        try {
-            method.setAccessible(true);
-
-            returnValue = new Variable(method.invoke(v.getValue(), finalArgs));
-            if (returnValue.getValue() == null && returnValue.getClazz() == null) {
-                returnValue.setClazz(method.getReturnType());
-            }
-        } catch (InaccessibleObjectException ioe) {
-            // If module access fails, try to find a public interface or superclass method
-            Method publicMethod = Reflect.findPublicMethod(v.getClazz(), reflectionArguments.getMethodName(), reflectionArguments.getArgumentTypes());
-            if (publicMethod != null) {
-                returnValue = new Variable(publicMethod.invoke(v.getValue(), finalArgs));
-                if (returnValue.getValue() == null && returnValue.getClazz() == null) {
-                    returnValue.setClazz(publicMethod.getReturnType());
-                }
-            }
+    private void setReflectiveResult(Object result, Method method) {
+        returnValue = new Variable(result);
+        if (result == null && returnValue.getClazz() == null) {
+            returnValue.setClazz(method.getReturnType());
         }
     }
 
@@ -1079,7 +1128,7 @@ public class Evaluator {
         Optional<TypeDeclaration<?>> cdecl = AbstractCompiler.getMatchingType(cu, getClassName());
         MCEWrapper mceWrapper = sc.getMCEWrapper();
         ClassOrInterfaceDeclaration classOrInterfaceDeclaration = cdecl.orElseThrow().asClassOrInterfaceDeclaration();
-        Optional<Callable> n = AbstractCompiler.findCallableDeclaration(mceWrapper, classOrInterfaceDeclaration);
+        Optional<Callable> n = findCallable(mceWrapper, classOrInterfaceDeclaration);
 
         if (n.isPresent()) {
             mceWrapper.setMatchingCallable(n.get());
@@ -1206,7 +1255,7 @@ public class Evaluator {
                 ClassProcessor.instanceToClassName(AbstractCompiler.fullyQualifiedToShortName(className))).orElse(null);
         if (decl != null) {
             MCEWrapper wrapper = wrapCallExpression(methodCall);
-            Optional<Callable> md = AbstractCompiler.findMethodDeclaration(wrapper, decl);
+            Optional<Callable> md = findCallable(wrapper, decl);
             if (md.isPresent() && md.get().isMethodDeclaration()) {
                 return executeMethod(md.get().asMethodDeclaration());
             }
@@ -1248,7 +1297,7 @@ public class Evaluator {
     }
 
 
-    public Map<Integer, Map<String, Variable>> getLocals() {
+    public Map<BlockStmt, LocalFrame> getLocals() {
         return locals;
     }
 
@@ -1773,58 +1822,51 @@ public class Evaluator {
         return returnValue;
     }
 
+    /**
+     * Set up the fields of the class, and those inherited from its parents, by replaying the
+     * {@link FieldPlan} of the class.
+     */
     public void setupFields() {
-        cu.accept(new LazyFieldVisitor(className), null);
-        processParentClasses(typeDeclaration, "LazyFieldVisitor");
-
+        for (FieldPlan.PlannedField field : fieldPlan().getFields()) {
+            setupField(field);
+        }
     }
 
+    /**
+     * Execute the initializer blocks of the class and its parents.
+     */
     public void initializeFields() {
-        cu.accept(new FieldVisitor(className), null);
-        processParentClasses(typeDeclaration, "FieldVisitor");
+        for (InitializerDeclaration init : fieldPlan().getInitializers()) {
+            try {
+                executeBlock(init.getBody().getStatements());
+            } catch (ReflectiveOperationException e) {
+                throw new AntikytheraException(e);
+            }
+        }
     }
 
-    public String getClassName() {
-        return className;
+    FieldPlan fieldPlan() {
+        return FieldPlan.of(cu, className, typeDeclaration);
     }
 
-    private void processParentClasses(TypeDeclaration<?> type, String visitorName) {
-        if (type instanceof ClassOrInterfaceDeclaration cid) {
-            for (ClassOrInterfaceType parentType : cid.getExtendedTypes()) {
-                String parentClass = AbstractCompiler.findFullyQualifiedName(cu, parentType.getNameAsString());
-                if (parentClass != null) {
-                    CompilationUnit parentCu = AntikytheraRunTime.getCompilationUnit(parentClass);
-                    if (parentCu != null) {
-                        VoidVisitorAdapter<?> v = visitorName.equals("LazyFieldVisitor")
-                                ? new LazyFieldVisitor(parentClass) : new FieldVisitor(parentClass);
-
-                        parentCu.accept(v, null);
-
-                        AbstractCompiler.getMatchingType(parentCu, parentType.getNameAsString())
-                                .ifPresent(t -> processParentClasses(t, visitorName));
-                    }
-                }
-            }
-        }
+    public String getClassName() {
+        return className;
     }
 
-    void setupField(FieldDeclaration field, VariableDeclarator variableDeclarator) {
+    void setupField(FieldPlan.PlannedField planned) {
+        VariableDeclarator variableDeclarator = planned.variable();
         try {
-            if (field.getAnnotationByName("OneToOne").isPresent()) {
+            if (planned.oneToOne()) {
                 return;
             }
-            if (field.isStatic()) {
+            if (planned.isStatic()) {
                 Variable s = AntikytheraRunTime.getStaticVariable(getClassName(), variableDeclarator.getNameAsString());
                 if (s != null) {
                     fields.put(variableDeclarator.getNameAsString(), s);
                     return;
                 }
             }
-            if (variableDeclarator.getInitializer().isEmpty()
-                        && field.getAnnotationByName("Mock").isEmpty()
-                        && field.getAnnotationByName("Autowired").isEmpty()
-                        && !isSequenceField(field, variableDeclarator)
-            ) {
+            if (!planned.hasInitializer() && !planned.injected() && !isSequenceField(planned)) {
                 Variable nullVariable = new Variable(null);
                 if (variableDeclarator.getType().isPrimitiveType()) {
                     nullVariable.setValue(Reflect.getDefault(variableDeclarator.getType().asString()));
@@ -1835,10 +1877,10 @@ public class Evaluator {
             }
             Variable v = resolveVariableDeclaration(variableDeclarator);
             if (v != null) {
-                checkSequences(field, variableDeclarator, v);
+                checkSequences(planned, v);
 
                 fields.put(variableDeclarator.getNameAsString(), v);
-                if (field.isStatic()) {
+                if (planned.isStatic()) {
                     AntikytheraRunTime.setStaticVariable(getClassName(), variableDeclarator.getNameAsString(), v);
                 }
             }
@@ -1850,8 +1892,9 @@ public class Evaluator {
         }
     }
 
-    private void checkSequences(FieldDeclaration field, VariableDeclarator variableDeclarator, Variable v) {
-        if (isSequenceField(field, variableDeclarator)) {
+    private void checkSequences(FieldPlan.PlannedField planned, Variable v) {
+        if (isSequenceField(planned)) {
+            VariableDeclarator variableDeclarator = planned.variable();
             incrementSequence();
             v.setValue(sequence);
             MethodCallExpr mce = new MethodCallExpr(
@@ -1894,73 +1937,11 @@ public class Evaluator {
         this.cu = compilationUnit;
     }
 
-    private boolean isSequenceField(FieldDeclaration field,  VariableDeclarator variableDeclarator) {
-
-        String typeName = variableDeclarator.getTypeAsString();
-        return (field.getAnnotationByName("Id").isPresent()
-                && typeDeclaration.getAnnotationByName("Entity").isPresent()
-                && variableDeclarator.getInitializer().isEmpty()
-                && ( typeName.equals("int") || typeName.equals("long") || typeName.equals("Integer") || typeName.equals("Long")));
+    private boolean isSequenceField(FieldPlan.PlannedField planned) {
+        return planned.sequence() && typeDeclaration.getAnnotationByName("Entity").isPresent();
     }
 
     private static void incrementSequence() {
         sequence++;
     }
-
-    /**
-     * <p>Java parser visitor used to set up the fields in the class.</p>
-     * <p>
-     * When we initialize a class the fields also need to be initialized, so here we are
-     */
-    private class LazyFieldVisitor extends VoidVisitorAdapter<Void> {
-        String matchingClass;
-
-        LazyFieldVisitor(String matchingClass) {
-            this.matchingClass = matchingClass;
-        }
-
-        /**
-         * The field visitor will be used to identify the fields that are being used in the class
-         *
-         * @param field the field to inspect
-         * @param arg   not used
-         */
-        @SuppressWarnings("unchecked")
-        @Override
-        public void visit(FieldDeclaration field, Void arg) {
-            super.visit(field, arg);
-            for (var variable : field.getVariables()) {
-                field.findAncestor(ClassOrInterfaceDeclaration.class).ifPresent(cdecl -> {
-                    if (cdecl.getFullyQualifiedName().isPresent() && cdecl.getFullyQualifiedName().get().equals(matchingClass)) {
-                        setupField(field, variable);
-                    }
-                });
-            }
-        }
-    }
-
-    private class FieldVisitor extends VoidVisitorAdapter<Void> {
-        String matchingClass;
-
-        FieldVisitor(String matchinClass) {
-            this.matchingClass = matchinClass;
-        }
-
-        @SuppressWarnings("unchecked")
-        @Override
-        public void visit(InitializerDeclaration init, Void arg) {
-            super.visit(init, arg);
-            init.findAncestor(ClassOrInterfaceDeclaration.class)
-                    .flatMap(ClassOrInterfaceDeclaration::getFullyQualifiedName)
-                    .ifPresent(name -> {
-                        if (name.equals(matchingClass)) {
-                            try {
-                                executeBlock(init.getBody().getStatements());
-                            } catch (ReflectiveOperationException e) {
-                                throw new AntikytheraException(e);
-                            }
-                        }
-                    });
-        }
-    }
 }
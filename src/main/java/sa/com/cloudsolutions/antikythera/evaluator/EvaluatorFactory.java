@@ -3,10 +3,19 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.CompilationUnit;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class EvaluatorFactory {
+    /**
+     * The constructor that takes a {@link Context} for each type of evaluator.
+     */
+    private static final Map<Class<?>, MethodHandle> constructors = new ConcurrentHashMap<>();
 
     private EvaluatorFactory() {}
 
@@ -94,10 +103,21 @@ public class EvaluatorFactory {
             return evaluatorType.cast(autoWired);
         }
 
+        MethodHandle constructor = constructors.computeIfAbsent(evaluatorType, EvaluatorFactory::findConstructor);
+        try {
+            return evaluatorType.cast((Evaluator) constructor.invokeExact(c));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AntikytheraException(e);
+        }
+    }
+
+    private static MethodHandle findConstructor(Class<?> evaluatorType) {
         try {
-            Constructor<T> constructor = evaluatorType.getDeclaredConstructor(Context.class);
-            Evaluator eval = constructor.newInstance(c);
-            return evaluatorType.cast(eval);
+            Constructor<?> constructor = evaluatorType.getDeclaredConstructor(Context.class);
+            return MethodHandles.lookup().unreflectConstructor(constructor)
+                    .asType(MethodType.methodType(Evaluator.class, Context.class));
         } catch (ReflectiveOperationException e) {
             throw new AntikytheraException(e);
         }
@@ -0,0 +1,211 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.InitializerDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>The fields of a class, worked out once so that they can be set up again and again.</p>
+ *
+ * <p>Every evaluator sets up the fields of its class when it is created, and {@link SpringEvaluator}
+ * does it again before each path through a method. Finding those fields meant visiting the whole
+ * compilation unit, and the compilation units of all the parent classes, looking for declarations
+ * that belong to the class. The plan holds the result of that search for a single class: the
+ * fields in the order in which they are declared, along with the annotations that the evaluator
+ * looks at, the initializer blocks and the names of the parent classes.</p>
+ *
+ * <p>Plans are attached to the compilation unit of their own class, so a unit that is parsed
+ * again, or replaced in the {@link AntikytheraRunTime}, gets a new plan. A plan does not hold on
+ * to anything from the units of the parents. Their plans are looked up each time that the
+ * {@link #lineage()} is asked for, so a parent that has been parsed again is picked up by its
+ * children.</p>
+ */
+final class FieldPlan {
+    private static final DataKey<Plans> KEY = new DataKey<>() {};
+    private static final Set<String> SEQUENCE_TYPES = Set.of("int", "long", "Integer", "Long");
+
+    private final String className;
+    private final List<PlannedField> fields = new ArrayList<>();
+    private final List<InitializerDeclaration> initializers = new ArrayList<>();
+    /**
+     * The fully qualified names of the classes that this one extends
+     */
+    private final List<String> parents = new ArrayList<>();
+
+    /**
+     * A field along with the facts about it that decide how it is set up.
+     *
+     * @param declaration the field declaration
+     * @param variable one of the variables declared by it
+     * @param isStatic true if the field is static
+     * @param hasInitializer true if the variable is given a value where it is declared
+     * @param injected true if the field is annotated with either Mock or Autowired
+     * @param oneToOne true if the field is annotated with OneToOne, such fields are left alone
+     * @param sequence true if the field may hold a generated id. It has to be an int or long that
+     *                 is annotated with Id and has no initializer. Whether the class is an entity
+     *                 is left to the evaluator.
+     */
+    record PlannedField(FieldDeclaration declaration, VariableDeclarator variable, boolean isStatic,
+                        boolean hasInitializer, boolean injected, boolean oneToOne, boolean sequence) {
+
+        private static PlannedField of(FieldDeclaration field, VariableDeclarator variable) {
+            boolean hasInitializer = variable.getInitializer().isPresent();
+            return new PlannedField(field, variable, field.isStatic(), hasInitializer,
+                    field.getAnnotationByName("Mock").isPresent() || field.getAnnotationByName("Autowired").isPresent(),
+                    field.getAnnotationByName("OneToOne").isPresent(),
+                    !hasInitializer && field.getAnnotationByName("Id").isPresent()
+                            && SEQUENCE_TYPES.contains(variable.getTypeAsString()));
+        }
+    }
+
+    private FieldPlan(CompilationUnit cu, String className, TypeDeclaration<?> type) {
+        this.className = className;
+        collect(cu, className);
+        if (type instanceof ClassOrInterfaceDeclaration cid) {
+            for (ClassOrInterfaceType parentType : cid.getExtendedTypes()) {
+                String parentClass = AbstractCompiler.findFullyQualifiedName(cu, parentType.getNameAsString());
+                if (parentClass != null) {
+                    parents.add(parentClass);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the plan for a class, making it the first time that it is asked for.
+     *
+     * @param cu the compilation unit of the class
+     * @param className the fully qualified name of the class
+     * @param type the declaration of the class
+     * @return the field plan
+     */
+    static FieldPlan of(CompilationUnit cu, String className, TypeDeclaration<?> type) {
+        Plans plans = cu.containsData(KEY) ? cu.getData(KEY) : null;
+        if (plans == null || plans.owner != cu) {
+            /* cloned units carry the data of the original along, which is no good to them */
+            plans = new Plans(cu);
+            cu.setData(KEY, plans);
+        }
+        FieldPlan plan = plans.byClass.get(className);
+        if (plan == null) {
+            plan = new FieldPlan(cu, className, type);
+            plans.byClass.put(className, plan);
+        }
+        return plan;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * @return the plan of this class followed by the plans of its ancestors, as they are now
+     */
+    List<FieldPlan> lineage() {
+        List<FieldPlan> lineage = new ArrayList<>();
+        addLineage(lineage);
+        return lineage;
+    }
+
+    private void addLineage(List<FieldPlan> lineage) {
+        lineage.add(this);
+        for (String parentClass : parents) {
+            CompilationUnit parentCu = AntikytheraRunTime.getCompilationUnit(parentClass);
+            if (parentCu != null) {
+                TypeDeclaration<?> parentType = AbstractCompiler.getMatchingType(parentCu, parentClass).orElse(null);
+                of(parentCu, parentClass, parentType).addLineage(lineage);
+            }
+        }
+    }
+
+    /**
+     * @return the fields of the class followed by those of its parents, in the order in which
+     *      they should be set up.
+     */
+    List<PlannedField> getFields() {
+        return getFields(lineage());
+    }
+
+    /**
+     * @param lineage the plans of a class and its ancestors
+     * @return the fields declared in those plans, in order
+     */
+    static List<PlannedField> getFields(List<FieldPlan> lineage) {
+        if (lineage.size() == 1) {
+            return lineage.getFirst().fields;
+        }
+        List<PlannedField> all = new ArrayList<>();
+        for (FieldPlan plan : lineage) {
+            all.addAll(plan.fields);
+        }
+        return all;
+    }
+
+    /**
+     * @return the instance and static initializer blocks of the class and its parents
+     */
+    List<InitializerDeclaration> getInitializers() {
+        List<FieldPlan> lineage = lineage();
+        if (lineage.size() == 1) {
+            return initializers;
+        }
+        List<InitializerDeclaration> all = new ArrayList<>();
+        for (FieldPlan plan : lineage) {
+            all.addAll(plan.initializers);
+        }
+        return all;
+    }
+
+    private void collect(CompilationUnit unit, String matchingClass) {
+        unit.accept(new VoidVisitorAdapter<Void>() {
+            @Override
+            public void visit(FieldDeclaration field, Void arg) {
+                super.visit(field, arg);
+                if (belongsTo(field, matchingClass)) {
+                    for (VariableDeclarator variable : field.getVariables()) {
+                        fields.add(PlannedField.of(field, variable));
+                    }
+                }
+            }
+
+            @Override
+            public void visit(InitializerDeclaration init, Void arg) {
+                super.visit(init, arg);
+                if (belongsTo(init, matchingClass)) {
+                    initializers.add(init);
+                }
+            }
+        }, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean belongsTo(Node node, String matchingClass) {
+        return node.findAncestor(ClassOrInterfaceDeclaration.class)
+                .flatMap(ClassOrInterfaceDeclaration::getFullyQualifiedName)
+                .map(matchingClass::equals)
+                .orElse(false);
+    }
+
+    private static final class Plans {
+        private final CompilationUnit owner;
+        private final Map<String, FieldPlan> byClass = new HashMap<>();
+
+        private Plans(CompilationUnit owner) {
+            this.owner = owner;
+        }
+    }
+}
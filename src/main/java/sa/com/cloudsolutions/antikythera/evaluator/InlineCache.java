@@ -0,0 +1,197 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import sa.com.cloudsolutions.antikythera.parser.Callable;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * <p>Remembers how each call site was dispatched.</p>
+ *
+ * <p>Finding the method that a call refers to means matching the argument types against the
+ * parameters of every method with the same name, in the class and in its ancestors. A call
+ * inside a loop, or in a method that is evaluated once per branch, would repeat that search
+ * every time it is reached.</p>
+ *
+ * <p>The outcome of the search is attached to the call expression itself, together with the
+ * receiver type and the argument signature that it was found for. The next evaluation of the
+ * same call reuses it when the receiver is the very same type declaration or class and the
+ * signature is equal. Most call sites only ever see one receiver, but up to
+ * {@value #POLYMORPHIC_LIMIT} are remembered before the site gives up on caching.</p>
+ *
+ * @param <V> the result of the search
+ */
+public class InlineCache<V> {
+    static final int POLYMORPHIC_LIMIT = 4;
+
+    private static final InlineCache<Optional<Callable>> SOURCE = new InlineCache<>(new DataKey<>() {});
+    private static final InlineCache<Dispatch> REFLECTIVE = new InlineCache<>(new DataKey<>() {});
+
+    /**
+     * Incremented whenever the outcome of a search may have changed, which makes every entry stale.
+     */
+    private static final AtomicInteger generation = new AtomicInteger();
+    /**
+     * Every call site that has something cached, so that the entries that lead into a compilation
+     * unit can be found. Weakly held, a site goes away with the call expression it is attached to.
+     */
+    private static final Set<Site> sites = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+    private final DataKey<Site> key;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private InlineCache(DataKey<Site> key) {
+        this.key = key;
+    }
+
+    /**
+     * @return the cache for calls to methods that are available in source code
+     */
+    public static InlineCache<Optional<Callable>> forSourceCalls() {
+        return SOURCE;
+    }
+
+    /**
+     * @return the cache for calls that are made with reflection
+     */
+    public static InlineCache<Dispatch> forReflectiveCalls() {
+        return REFLECTIVE;
+    }
+
+    /**
+     * Discard everything that has been cached at every call site.
+     */
+    public static void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Discard the entries whose receiver, signature or result belongs to the compilation unit.
+     * @param cu a compilation unit that has been compiled again or evicted from memory
+     */
+    public static void invalidate(CompilationUnit cu) {
+        synchronized (sites) {
+            for (Site site : sites) {
+                site.removeIf(e -> belongsTo(e.receiver, cu) || belongsTo(e.signature, cu) || belongsTo(e.value, cu));
+            }
+        }
+    }
+
+    private static boolean belongsTo(Object o, CompilationUnit cu) {
+        return switch (o) {
+            case Node n -> n.findCompilationUnit().orElse(null) == cu;
+            case Callable c -> c.isCallableDeclaration() && belongsTo(c.getCallableDeclaration(), cu);
+            case Optional<?> opt -> opt.isPresent() && belongsTo(opt.get(), cu);
+            case Collection<?> c -> c.stream().anyMatch(element -> belongsTo(element, cu));
+            case null, default -> false;
+        };
+    }
+
+    /**
+     * Find the cached result for a call site or search for it.
+     *
+     * @param callSite the call expression. Null disables caching.
+     * @param receiver the type declaration or class that the method is being looked up in,
+     *                 compared by identity
+     * @param signature describes the arguments, compared with equals
+     * @param search finds the result when it is not in the cache
+     * @return the cached result or the result of the search
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Node callSite, Object receiver, Object signature, Supplier<V> search) {
+        if (callSite == null) {
+            return search.get();
+        }
+        Site site = callSite.containsData(key) ? callSite.getData(key) : null;
+        int current = generation.get();
+        if (site == null || site.generation != current) {
+            site = new Site(current);
+            callSite.setData(key, site);
+            sites.add(site);
+        }
+
+        for (int i = 0; i < site.size; i++) {
+            Entry e = site.entries[i];
+            if (e.receiver == receiver && Objects.equals(e.signature, signature)) {
+                hits.incrementAndGet();
+                return (V) e.value;
+            }
+        }
+
+        misses.incrementAndGet();
+        V value = search.get();
+        if (site.size < POLYMORPHIC_LIMIT) {
+            site.entries[site.size++] = new Entry(receiver, signature, value);
+        }
+        return value;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups that were answered from the cache
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    public void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    private static final class Site {
+        private final int generation;
+        private final Entry[] entries = new Entry[POLYMORPHIC_LIMIT];
+        private int size;
+
+        private Site(int generation) {
+            this.generation = generation;
+        }
+
+        private void removeIf(Predicate<Entry> stale) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (!stale.test(entries[i])) {
+                    entries[kept++] = entries[i];
+                }
+            }
+            for (int i = kept; i < size; i++) {
+                entries[i] = null;
+            }
+            size = kept;
+        }
+    }
+
+    private record Entry(Object receiver, Object signature, Object value) {}
+
+    /**
+     * The outcome of a reflective method search.
+     *
+     * @param method the method that was found, or null if there was none
+     * @param argumentTypes the argument types as they were left by the search, which converts
+     *                      between primitives and wrappers to match the parameters.
+     */
+    public record Dispatch(Method method, Class<?>[] argumentTypes) {}
+}
@@ -8,7 +8,6 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import sa.com.cloudsolutions.antikythera.parser.Callable;
 import sa.com.cloudsolutions.antikythera.parser.MCEWrapper;
 
-import java.util.Map;
 import java.util.Optional;
 
 public class InnerClassEvaluator extends Evaluator {
@@ -23,7 +22,7 @@ public class InnerClassEvaluator extends Evaluator {
     public Variable getValue(Node n, String name) {
         Variable v = super.getValue(n, name);
         if (v == null) {
-            for (Map<String, Variable> local : enclosure.getLocals().values()) {
+            for (LocalFrame local : enclosure.getLocals().values()) {
                 v = local.get(name);
                 if (v != null) {
                     return v;
@@ -0,0 +1,102 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>The local variables of one block statement during evaluation.</p>
+ *
+ * <p>Variables that the {@link BlockScope} expected to find in the block are held in an array
+ * at the slot that it assigned to them. Anything else falls back to a map. Names that have been
+ * resolved by the scope go straight to the slot.</p>
+ */
+public class LocalFrame {
+    private final BlockScope scope;
+    private final Variable[] slots;
+    private Map<String, Variable> others;
+
+    /**
+     * @param scope the layout of the block or null if the variables do not belong to any block.
+     */
+    LocalFrame(BlockScope scope) {
+        this.scope = scope;
+        this.slots = new Variable[scope == null ? 0 : scope.size()];
+    }
+
+    private LocalFrame(BlockScope scope, Variable[] slots) {
+        this.scope = scope;
+        this.slots = slots;
+    }
+
+    /**
+     * @param name the name of a local variable
+     * @return the variable or null if it has not been set in this block
+     */
+    public Variable get(String name) {
+        int slot = scope == null ? -1 : scope.slot(name);
+        if (slot >= 0) {
+            return slots[slot];
+        }
+        return others == null ? null : others.get(name);
+    }
+
+    /**
+     * @param scope the layout of a block
+     * @return true if the slots of this frame were laid out by that scope
+     */
+    boolean hasScope(BlockScope scope) {
+        return this.scope == scope;
+    }
+
+    /**
+     * @param slot a slot assigned by the scope of this frame
+     * @return the variable in the slot, null if it has not been set
+     */
+    Variable get(int slot) {
+        return slots[slot];
+    }
+
+    void set(int slot, Variable v) {
+        slots[slot] = v;
+    }
+
+    /**
+     * @param name the name of a local variable
+     * @return the variable if it was stored without a slot, otherwise null
+     */
+    Variable getUnforeseen(String name) {
+        return others == null ? null : others.get(name);
+    }
+
+    void put(String name, Variable v) {
+        int slot = scope == null ? -1 : scope.slot(name);
+        if (slot >= 0) {
+            slots[slot] = v;
+        } else {
+            if (others == null) {
+                others = new HashMap<>();
+            }
+            others.put(name, v);
+        }
+    }
+
+    /**
+     * @param copier makes the copy of each variable
+     * @return a frame with the same layout as this one, holding copies of its variables
+     */
+    LocalFrame copy(UnaryOperator<Variable> copier) {
+        Variable[] copies = new Variable[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            copies[i] = slots[i] == null ? null : copier.apply(slots[i]);
+        }
+        LocalFrame frame = new LocalFrame(scope, copies);
+        if (others != null) {
+            frame.others = new HashMap<>();
+            for (Map.Entry<String, Variable> e : others.entrySet()) {
+                frame.others.put(e.getKey(), e.getValue() == null ? null : copier.apply(e.getValue()));
+            }
+        }
+        return frame;
+    }
+}
@@ -6,7 +6,9 @@ public class NumericComparator {
     }
 
     public static int compare(Object left, Object right) {
-        if (left instanceof Number leftNumber && right instanceof Number rightNumber) {
+        if (Arithmetics.isNumeric(left) && Arithmetics.isNumeric(right)) {
+            return Arithmetics.order(left, right);
+        } else if (left instanceof Number leftNumber && right instanceof Number rightNumber) {
             if (leftNumber instanceof Double || rightNumber instanceof Double) {
                 return Double.compare(leftNumber.doubleValue(), rightNumber.doubleValue());
             } else if (leftNumber instanceof Float || rightNumber instanceof Float) {
@@ -1,6 +1,7 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
 import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.expr.ArrayCreationExpr;
 import com.github.javaparser.ast.expr.ArrayInitializerExpr;
@@ -22,7 +23,7 @@ import com.github.javaparser.ast.type.Type;
 import com.github.javaparser.resolution.UnsolvedSymbolException;
 import sa.com.cloudsolutions.antikythera.evaluator.functional.FPEvaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalConverter;
-import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalInvocationHandler;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalAdapters;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import sa.com.cloudsolutions.antikythera.generator.TestGenerator;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
@@ -30,8 +31,8 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.Proxy;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -228,25 +229,11 @@ public class Reflect {
 
     private static void dynamicProxy(Class<?>[] argumentTypes, int i, Object[] args) {
 
-        Class<?> functional = getFunctionalInterface(argumentTypes[i]);
+        Class<?> functional = ClassMetadata.of(argumentTypes[i]).getFunctionalInterface();
         if (functional != null) {
-            FPEvaluator<?> evaluator = null;
-
-            // Check if the argument is already a proxy
-            if (Proxy.isProxyClass(args[i].getClass())) {
-                FunctionalInvocationHandler handler = (FunctionalInvocationHandler) Proxy.getInvocationHandler(args[i]);
-                evaluator = handler.getEvaluator();
-            } else if (args[i] instanceof FPEvaluator<?>) {
-                evaluator = (FPEvaluator<?>) args[i];
-            }
-
+            FPEvaluator<?> evaluator = FunctionalAdapters.evaluatorOf(args[i]);
             if (evaluator != null) {
-                Object proxy = Proxy.newProxyInstance(
-                        argumentTypes[i].getClassLoader(),
-                        new Class<?>[]{functional},
-                        new FunctionalInvocationHandler(evaluator)
-                );
-                args[i] = proxy;
+                args[i] = FunctionalAdapters.create(functional, evaluator);
                 argumentTypes[i] = functional;
             }
         } else if (args[i] instanceof Evaluator eval){
@@ -504,51 +491,51 @@ public class Reflect {
      * @param clazz the class on which we need to match the method name
      * @return a Method instance or null.
      */
-    @SuppressWarnings("java:S1872")
     public static Method findMethod(Class<?> clazz, ReflectionArguments reflectionArguments) {
         String methodName = reflectionArguments.getMethodName();
         Class<?>[] argumentTypes = reflectionArguments.getArgumentTypes();
 
-        for (Method m : getMethodsByName(clazz, methodName)) {
-            Class<?>[] parameterTypes = m.getParameterTypes();
-            if (parameterTypes.length == 1 && parameterTypes[0].equals(Object[].class)) {
+        int arity = argumentTypes == null ? -1 : argumentTypes.length;
+        for (Method m : ClassMetadata.of(clazz).getMethods(methodName, arity)) {
+            if (matches(m, argumentTypes, reflectionArguments.getArguments())) {
                 return m;
             }
-            if (argumentTypes == null || parameterTypes.length != argumentTypes.length) {
+        }
+        return null;
+    }
+
+    /**
+     * Compares the arguments against the parameters of a single method.
+     * Like findMethod this may convert the argument types and the arguments to suit the method.
+     */
+    @SuppressWarnings("java:S1872")
+    private static boolean matches(Method m, Class<?>[] argumentTypes, Object[] arguments) {
+        Class<?>[] parameterTypes = m.getParameterTypes();
+        if (parameterTypes.length == 1 && parameterTypes[0].equals(Object[].class)) {
+            return true;
+        }
+        if (argumentTypes == null || parameterTypes.length != argumentTypes.length) {
+            return false;
+        }
+        boolean found = true;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            if (matchArgumentVsParameter(argumentTypes, parameterTypes, arguments, i) ||
+                    parameterTypes[i].getName().equals("java.lang.Object")) {
                 continue;
             }
-            boolean found = true;
-            for (int i = 0; i < argumentTypes.length; i++) {
-                if (matchArgumentVsParameter(argumentTypes, parameterTypes, reflectionArguments.getArguments(), i) ||
-                        parameterTypes[i].getName().equals("java.lang.Object")) {
-                    continue;
-                }
-                found = false;
-            }
-            if (found) {
-                return m;
-            }
+            found = false;
         }
-        return null;
+        return found;
     }
 
     /**
      * Get methods matching a name from the given class
-     * by using this you are probably making one more iteration than you have to, but it's worth
-     * the reduction in method complexity.
      * @param clazz the haystack to search
      * @param name the needle to find.
-     * @return a list of methods that match the name
+     * @return a list of methods that match the name, which cannot be modified
      */
     public static List<Method> getMethodsByName(Class<?> clazz, String name) {
-        List<Method> methods = new ArrayList<>();
-        for (Method m : clazz.getMethods()) {
-            if (m.getName().equals(name)) {
-                methods.add(m);
-            }
-        }
-
-        return methods;
+        return ClassMetadata.of(clazz).getMethods(name);
     }
 
     /**
@@ -562,11 +549,8 @@ public class Reflect {
      * @return a Constructor instance or null.
      */
     public static Constructor<?> findConstructor(Class<?> clazz, Class<?>[] argumentTypes, Object[] arguments) {
-        for (Constructor<?> c : clazz.getDeclaredConstructors()) {
+        for (Constructor<?> c : ClassMetadata.of(clazz).getConstructors(argumentTypes.length)) {
             Class<?>[] parameterTypes = c.getParameterTypes();
-            if (parameterTypes.length != argumentTypes.length) {
-                continue;
-            }
             boolean found = true;
             for (int i = 0; i < argumentTypes.length; i++) {
                 if (matchArgumentVsParameter(argumentTypes, parameterTypes, arguments, i)) continue;
@@ -610,14 +594,13 @@ public class Reflect {
             return true;
         }
 
-        if (parameterType.isAnnotationPresent(FunctionalInterface.class)) {
-            for (Class<?> iface2 : argumentTypes[i].getInterfaces()) {
-                if (iface2.isAnnotationPresent(FunctionalInterface.class)) {
-                    dynamicProxy(argumentTypes, i, arguments);
-                    return true;
-                }
+        if (ClassMetadata.of(parameterType).isFunctional()) {
+            ClassMetadata argument = ClassMetadata.of(argumentTypes[i]);
+            if (argument.implementsFunctional()) {
+                dynamicProxy(argumentTypes, i, arguments);
+                return true;
             }
-            if (argumentTypes[i].isAnnotationPresent(FunctionalInterface.class)) {
+            if (argument.isFunctional()) {
                 dynamicProxy(parameterTypes, i, arguments);
                 return true;
             }
@@ -625,38 +608,63 @@ public class Reflect {
         return false;
     }
 
-    private static Class<?> getFunctionalInterface(Class<?> cls) {
-        for (Class<?> iface : cls.getInterfaces()) {
-            if (iface.isAnnotationPresent(FunctionalInterface.class)) {
-                return iface;
+    /**
+     * Find a method through the class hierarchy, reusing the outcome of an earlier search at the
+     * same call site when the receiver class and the arguments are the same.
+     *
+     * @param clazz the class on which the method is being called
+     * @param reflectionArguments the arguments of the call
+     * @param callSite the call expression, or null if the search should not be cached
+     * @return a Method instance or null
+     */
+    public static Method findAccessibleMethod(Class<?> clazz, ReflectionArguments reflectionArguments, Node callSite) {
+        Class<?>[] argumentTypes = reflectionArguments.getArgumentTypes();
+        Object[] arguments = reflectionArguments.getArguments();
+        if (callSite == null || argumentTypes == null || arguments.length > Long.SIZE) {
+            return findAccessibleMethod(clazz, reflectionArguments);
+        }
+
+        long nulls = 0;
+        for (int i = 0; i < arguments.length; i++) {
+            if (arguments[i] == null) {
+                nulls |= 1L << i;
             }
         }
-        if (cls.isAnnotationPresent(FunctionalInterface.class)) {
-            return cls;
+        InlineCache.Dispatch dispatch = InlineCache.forReflectiveCalls().get(callSite, clazz,
+                new ReflectiveSignature(reflectionArguments.getMethodName(), Arrays.asList(argumentTypes.clone()), nulls),
+                () -> new InlineCache.Dispatch(findAccessibleMethod(clazz, reflectionArguments), argumentTypes.clone()));
+
+        Method method = dispatch.method();
+        if (method != null && !matches(method, argumentTypes, arguments)) {
+            return findAccessibleMethod(clazz, reflectionArguments);
         }
-        return null;
+        /*
+         * Replaying the match above converted the arguments for this method, the types are then
+         * made to look exactly as the original search left them.
+         */
+        System.arraycopy(dispatch.argumentTypes(), 0, argumentTypes, 0, argumentTypes.length);
+        return method;
     }
 
-    public static Method findAccessibleMethod(Class<?> clazz, ReflectionArguments reflectionArguments) {
-        // First check direct method lookup
-        Method method = Reflect.findMethod(clazz, reflectionArguments);
-        if (method != null) return method;
-
-        // Search interfaces
-        for (Class<?> iface : clazz.getInterfaces()) {
-            method = Reflect.findMethod(iface, reflectionArguments);
-            if (method != null) return method;
+    /**
+     * Everything other than the receiver class that a reflective method search depends on.
+     */
+    private record ReflectiveSignature(String methodName, List<Class<?>> argumentTypes, long nulls) {}
 
-            // Try super-interfaces
-            for (Class<?> superIface : iface.getInterfaces()) {
-                method = findAccessibleMethod(superIface, reflectionArguments);
-                if (method != null) return method;
+    /**
+     * Find a method in the class, then in its interfaces and finally in its super classes.
+     * @param clazz the class on which the method is being called
+     * @param reflectionArguments the arguments of the call
+     * @return a Method instance or null
+     */
+    public static Method findAccessibleMethod(Class<?> clazz, ReflectionArguments reflectionArguments) {
+        for (Class<?> type : ClassMetadata.of(clazz).getSearchOrder()) {
+            Method method = Reflect.findMethod(type, reflectionArguments);
+            if (method != null) {
+                return method;
             }
         }
-
-        // Search superclass if no interface method found
-        Class<?> superclass = clazz.getSuperclass();
-        return superclass != null ? findAccessibleMethod(superclass, reflectionArguments) : null;
+        return null;
     }
 
     public static Method findPublicMethod(Class<?> clazz, String methodName, Class<?>[] paramTypes) {
@@ -0,0 +1,199 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * <p>Calls the compiled methods and constructors that the evaluator finds through reflection.</p>
+ *
+ * <p>{@link Method#invoke(Object, Object...)} checks access and the arguments on every call, and
+ * whenever a method turned out not to be accessible the evaluator would call setAccessible and
+ * search for a public substitute all over again. An invoker is made once for each method or
+ * constructor. It holds a method handle that takes the receiver and an array of arguments, and
+ * it remembers how access was obtained: directly, by making the member accessible, or not at
+ * all, in which case a public method of an interface or super class has to be used instead. Those
+ * substitutes are remembered as well.</p>
+ *
+ * <p>Method handles do not widen primitive arguments and report a bad argument with a different
+ * exception, so a call whose arguments are not exactly of the declared types goes through plain
+ * reflection instead. Exceptions thrown by the method itself are wrapped in an
+ * {@link InvocationTargetException}, as they are by reflection.</p>
+ *
+ * <p>Invokers are kept in a {@link ClassValue} of the declaring class and substitutes in one of
+ * the class of the receiver, so that both go away along with the classes, as the metadata of
+ * {@link ClassMetadata} does.</p>
+ */
+final class ReflectiveInvoker {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+    private static final ClassValue<Map<Executable, ReflectiveInvoker>> INVOKERS = new ClassValue<>() {
+        @Override
+        protected Map<Executable, ReflectiveInvoker> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    /**
+     * The public stand ins for inaccessible methods, keyed by the method and the argument types
+     */
+    private static final ClassValue<Map<List<Object>, Optional<Method>>> SUBSTITUTES = new ClassValue<>() {
+        @Override
+        protected Map<List<Object>, Optional<Method>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Executable target;
+    /**
+     * (Object receiver, Object[] arguments)Object, or null if the target is not accessible
+     */
+    private final MethodHandle handle;
+    /**
+     * The parameter types, with primitives replaced by their wrappers
+     */
+    private final Class<?>[] parameters;
+    private final boolean[] primitive;
+    private final boolean isStatic;
+
+    private ReflectiveInvoker(Executable target, MethodHandle handle) {
+        this.target = target;
+        this.handle = handle;
+        this.isStatic = target instanceof Constructor<?> || Modifier.isStatic(target.getModifiers());
+        this.parameters = target.getParameterTypes();
+        this.primitive = new boolean[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].isPrimitive()) {
+                primitive[i] = true;
+                parameters[i] = MethodType.methodType(parameters[i]).wrap().returnType();
+            }
+        }
+    }
+
+    /**
+     * Find the invoker for a method, making it the first time that the method is called.
+     * A method that cannot be called directly is made accessible if the module system allows it.
+     * @param method the method to call
+     * @return the invoker
+     */
+    static ReflectiveInvoker of(Method method) {
+        return INVOKERS.get(method.getDeclaringClass())
+                .computeIfAbsent(method, m -> new ReflectiveInvoker(m, handleFor((Method) m)));
+    }
+
+    /**
+     * Find the invoker for a constructor. Unlike methods, constructors are never forced open.
+     * @param constructor the constructor to call
+     * @return the invoker
+     */
+    static ReflectiveInvoker of(Constructor<?> constructor) {
+        return INVOKERS.get(constructor.getDeclaringClass())
+                .computeIfAbsent(constructor, c -> new ReflectiveInvoker(c, handleFor((Constructor<?>) c)));
+    }
+
+    /**
+     * @return false if the method is out of reach and a public substitute has to be used instead.
+     */
+    boolean isAccessible() {
+        return handle != null;
+    }
+
+    /**
+     * Call the method, or create a new instance with the constructor.
+     * @param receiver the instance on which the method is called, ignored for static methods
+     *                 and constructors
+     * @param arguments the arguments, which may be null when there are none
+     * @return the value returned by the method, null for void methods, or the new instance
+     * @throws ReflectiveOperationException on the same conditions as reflection would
+     */
+    Object invoke(Object receiver, Object[] arguments) throws ReflectiveOperationException {
+        Object[] args = arguments == null ? NO_ARGUMENTS : arguments;
+        if (handle == null || !accepts(receiver, args)) {
+            return switch (target) {
+                case Method m -> m.invoke(receiver, args);
+                case Constructor<?> c -> c.newInstance(args);
+                default -> throw new IllegalStateException();
+            };
+        }
+        try {
+            return handle.invokeExact(receiver, args);
+        } catch (Throwable t) {
+            throw new InvocationTargetException(t);
+        }
+    }
+
+    /**
+     * Find a public method of an interface or a super class that can stand in for this method.
+     * @param clazz the class of the receiver
+     * @param argumentTypes the argument types that the method was looked up with
+     * @return the substitute or null if there isn't one
+     */
+    Method publicSubstitute(Class<?> clazz, Class<?>[] argumentTypes) {
+        List<Object> key = List.of(target, argumentTypes == null ? List.of() : Arrays.asList(argumentTypes));
+        return SUBSTITUTES.get(clazz).computeIfAbsent(key,
+                k -> Optional.ofNullable(Reflect.findPublicMethod(clazz, target.getName(), argumentTypes))).orElse(null);
+    }
+
+    private boolean accepts(Object receiver, Object[] args) {
+        if (args.length != parameters.length || !(isStatic || target.getDeclaringClass().isInstance(receiver))) {
+            return false;
+        }
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (primitive[i]) {
+                /* an Integer passed for a long has to be widened, which only reflection does */
+                if (arg == null || arg.getClass() != parameters[i]) {
+                    return false;
+                }
+            } else if (arg != null && !parameters[i].isInstance(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @SuppressWarnings("java:S3011")
+    private static MethodHandle handleFor(Method method) {
+        MethodHandle mh = unreflect(method);
+        if (mh == null && method.trySetAccessible()) {
+            mh = unreflect(method);
+        }
+        if (mh == null) {
+            return null;
+        }
+        if (Modifier.isStatic(method.getModifiers())) {
+            mh = MethodHandles.dropArguments(mh, 0, Object.class);
+        }
+        return spread(mh, method.getParameterCount());
+    }
+
+    private static MethodHandle handleFor(Constructor<?> constructor) {
+        try {
+            MethodHandle mh = LOOKUP.unreflectConstructor(constructor).asFixedArity();
+            return spread(MethodHandles.dropArguments(mh, 0, Object.class), constructor.getParameterCount());
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        try {
+            return LOOKUP.unreflect(method).asFixedArity();
+        } catch (IllegalAccessException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle spread(MethodHandle mh, int count) {
+        return mh.asType(MethodType.genericMethodType(count + 1)).asSpreader(Object[].class, count);
+    }
+}
@@ -3,6 +3,7 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.CallableDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -18,6 +19,7 @@ import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.NormalAnnotationExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.IfStmt;
 import com.github.javaparser.ast.stmt.Statement;
@@ -50,9 +52,13 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Extends the basic evaluator to provide support for JPA repositories and their special behavior.
@@ -79,6 +85,17 @@ public class SpringEvaluator extends ControlFlowEvaluator {
      */
     private MethodDeclaration currentMethod;
     private boolean onTest;
+    /**
+     * The state saved at each branch of the current method, so that the other path can be taken
+     * by resuming from the branch. Only used when {@link Settings#BRANCH_SNAPSHOTS} is enabled.
+     */
+    private final Map<IfStmt, BranchSnapshot> snapshots = new IdentityHashMap<>();
+    private boolean resumeFromBranches;
+    /**
+     * The number of invocations of the current method that are in progress. Snapshots are only
+     * taken in the outermost one.
+     */
+    private int depth;
 
     protected SpringEvaluator(EvaluatorFactory.Context context) {
         super(context);
@@ -195,16 +212,23 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
             int safetyCheck = 0;
             while (safetyCheck < 16) {
-                getLocals().clear();
-                setupFields();
-                mockMethodArguments(md);
+                BranchSnapshot snapshot = findSnapshot(md, Branching.peekHighestPriority(md));
+                if (snapshot == null) {
+                    getLocals().clear();
+                    setupFields();
+                    mockMethodArguments(md);
+                }
 
                 currentConditional = Branching.getHighestPriority(md);
                 if ((currentConditional == null || currentConditional.isFullyTravelled()) && oldSize != 0) {
                     break;
                 }
 
-                executeMethod(md);
+                if (snapshot == null) {
+                    executeMethod(md);
+                } else {
+                    resume(md, snapshot);
+                }
                 safetyCheck++;
                 if (currentConditional != null) {
                     currentConditional.transition();
@@ -226,6 +250,174 @@ public class SpringEvaluator extends ControlFlowEvaluator {
         }
     }
 
+    /**
+     * Find the snapshot from which the next path through the method can be explored.
+     *
+     * @param md the method being visited
+     * @param next the conditional whose other path is going to be taken next
+     * @return the snapshot taken when the conditional was last reached or null if the method
+     *      will have to be executed from the start.
+     */
+    private BranchSnapshot findSnapshot(MethodDeclaration md, LineOfCode next) {
+        if (!resumeFromBranches || next == null || next.isFullyTravelled()
+                || !(next.getStatement() instanceof IfStmt ifStmt)) {
+            return null;
+        }
+        BranchSnapshot snapshot = snapshots.get(ifStmt);
+        if (snapshot == null || !isDecidedByParameters(md, ifStmt)) {
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * <p>Can the branch be sent the other way just by changing the parameters at the branch?</p>
+     *
+     * <p>That is the case when its condition refers to parameters and to no other variables, and
+     * those parameters have not been used before the branch is reached. Parameters used by the
+     * conditions of enclosing if statements count as well, because the truth table may give them
+     * new values too. Otherwise, the new values might have changed what happened in front of the
+     * branch, and the method has to be executed again from the start.</p>
+     *
+     * @param md the method being visited
+     * @param branch an if statement in that method
+     * @return true if resuming from the branch gives the same result as executing the method
+     */
+    private boolean isDecidedByParameters(MethodDeclaration md, IfStmt branch) {
+        Set<String> parameters = new HashSet<>();
+        md.getParameters().forEach(p -> parameters.add(p.getNameAsString()));
+
+        Set<String> variables = new HashSet<>(fields.keySet());
+        md.findAll(VariableDeclarator.class).forEach(v -> variables.add(v.getNameAsString()));
+        md.findAll(Parameter.class).forEach(p -> variables.add(p.getNameAsString()));
+        variables.removeAll(parameters);
+
+        Set<String> names = new HashSet<>();
+        for (NameExpr name : branch.getCondition().findAll(NameExpr.class)) {
+            if (variables.contains(name.getNameAsString())) {
+                return false;
+            }
+            if (parameters.contains(name.getNameAsString())) {
+                names.add(name.getNameAsString());
+            }
+        }
+        if (names.isEmpty()) {
+            return false;
+        }
+        for (Expression condition : ConditionVisitor.collectConditionsUpToMethod(branch)) {
+            for (NameExpr name : condition.findAll(NameExpr.class)) {
+                if (parameters.contains(name.getNameAsString())) {
+                    names.add(name.getNameAsString());
+                }
+            }
+        }
+
+        for (Iterator<Node> it = md.getBody().orElseThrow().stream(Node.TreeTraversal.PREORDER).iterator(); it.hasNext(); ) {
+            Node n = it.next();
+            if (n == branch) {
+                return true;
+            }
+            if (n instanceof NameExpr name && names.contains(name.getNameAsString())) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Take the other path through a branch by going back to the state that was saved there.
+     * The preconditions that were in force when the snapshot was taken are applied again along
+     * with those for the current conditional, so that the generated tests set up the arguments
+     * the same way.
+     *
+     * @param md the method being visited
+     * @param snapshot the state saved at the branch of the current conditional
+     * @throws ReflectiveOperationException if a reflective operation fails
+     */
+    private void resume(MethodDeclaration md, BranchSnapshot snapshot) throws ReflectiveOperationException {
+        snapshot.restore(argumentGenerator.getArguments());
+        currentConditional.getPreconditions().addAll(0, snapshot.getPreconditions());
+
+        depth++;
+        try {
+            NodeList<Parameter> parameters = md.getParameters();
+            for (int i = parameters.size() - 1; i >= 0; i--) {
+                setupParameter(md, parameters.get(i));
+            }
+
+            BlockStmt body = md.getBody().orElseThrow();
+            Node current = snapshot.getBranch();
+            executeBlock(List.of(snapshot.getBranch()));
+            while (current != body && !hasReturned(md)) {
+                Node parent = current.getParentNode().orElseThrow();
+                if (parent instanceof BlockStmt block) {
+                    List<Statement> statements = block.getStatements();
+                    int index = 0;
+                    while (statements.get(index) != current) {
+                        index++;
+                    }
+                    executeBlock(statements.subList(index + 1, statements.size()));
+                }
+                current = parent;
+            }
+        } finally {
+            depth--;
+        }
+    }
+
+    private boolean hasReturned(MethodDeclaration md) {
+        return returnFrom != null && returnFrom.findAncestor(MethodDeclaration.class).map(md::equals).orElse(false);
+    }
+
+    /**
+     * @return true if the statement is in the current method, and every statement that encloses
+     *      it is either a block or an if statement. The rest of the method can then be executed
+     *      by working outwards from the statement.
+     */
+    private boolean isResumable(Statement stmt) {
+        Node current = stmt;
+        while (current.getParentNode().orElse(null) instanceof Node parent) {
+            if (parent == currentMethod) {
+                return current instanceof BlockStmt;
+            }
+            if (!(parent instanceof BlockStmt || parent instanceof IfStmt)) {
+                return false;
+            }
+            current = parent;
+        }
+        return false;
+    }
+
+    @Override
+    void ifThenElseBlock(IfStmt ifst) throws Exception {
+        if (resumeFromBranches && depth == 1 && isResumable(ifst)) {
+            LineOfCode l = Branching.get(ifst.hashCode());
+            if (l != null && !l.isFullyTravelled()) {
+                BranchSnapshot snapshot = BranchSnapshot.capture(ifst, this, argumentGenerator.getArguments(),
+                        currentConditional == null ? List.of() : currentConditional.getPreconditions());
+                if (snapshot != null) {
+                    snapshots.put(ifst, snapshot);
+                } else {
+                    /* the state could not be copied, so this branch is reached by starting over */
+                    snapshots.remove(ifst);
+                }
+            }
+        }
+        super.ifThenElseBlock(ifst);
+    }
+
+    @Override
+    public Variable executeMethod(CallableDeclaration<?> cd) throws ReflectiveOperationException {
+        if (cd != currentMethod) {
+            return super.executeMethod(cd);
+        }
+        depth++;
+        try {
+            return super.executeMethod(cd);
+        } finally {
+            depth--;
+        }
+    }
 
     private void beforeVisit(MethodDeclaration md) {
         md.getParentNode().ifPresent(p -> {
@@ -236,6 +428,8 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
         Branching.clear();
         AntikytheraRunTime.reset();
+        snapshots.clear();
+        resumeFromBranches = Settings.getProperty(Settings.BRANCH_SNAPSHOTS, Boolean.class).orElse(false);
 
         md.accept(new ConditionVisitor(), null);
     }
@@ -339,8 +533,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
         if (repository != null) {
             MCEWrapper methodCallWrapper = wrapCallExpression(methodCall);
 
-            Optional<Callable> callable = AbstractCompiler.findCallableDeclaration(
-                    methodCallWrapper, repository.getCompilationUnit().getType(0));
+            Optional<Callable> callable = findCallable(methodCallWrapper, repository.getCompilationUnit().getType(0));
             if (callable.isPresent()) {
                 RepositoryQuery q = repository.get(callable.get());
 
@@ -521,8 +714,9 @@ public class SpringEvaluator extends ControlFlowEvaluator {
     }
 
     @Override
-    void setupField(FieldDeclaration field, VariableDeclarator variableDeclarator) {
-        List<TypeWrapper> wrappers = AbstractCompiler.findTypesInVariable(field);
+    void setupField(FieldPlan.PlannedField planned) {
+        VariableDeclarator variableDeclarator = planned.variable();
+        List<TypeWrapper> wrappers = AbstractCompiler.findTypesInVariable(planned.declaration());
         if (!wrappers.isEmpty()) {
             String resolvedClass = wrappers.getFirst().getFullyQualifiedName();
             Variable v = autoWire(variableDeclarator, wrappers);
@@ -538,7 +732,7 @@ public class SpringEvaluator extends ControlFlowEvaluator {
                 return;
             }
         }
-        super.setupField(field, variableDeclarator);
+        super.setupField(planned);
     }
 
     @Override
@@ -606,12 +800,11 @@ public class SpringEvaluator extends ControlFlowEvaluator {
 
         collectedConditions.add(currentConditional.getConditionalExpression());
         tt.setCondition(BinaryOps.getCombinedCondition(collectedConditions));
-        tt.generateTruthTable();
 
-        List<Map<Expression, Object>> values = tt.findValuesForCondition(state);
+        Optional<Map<Expression, Object>> values = tt.solve(state);
 
-        if (!values.isEmpty()) {
-            Map<Expression, Object> value = values.getFirst();
+        if (values.isPresent()) {
+            Map<Expression, Object> value = values.get();
             for (var entry : value.entrySet()) {
                 if (entry.getKey().isMethodCallExpr()) {
                     setupConditionThroughMethodCalls(currentConditional.getStatement(), entry);
@@ -70,6 +70,22 @@ public class Variable {
         }
     }
 
+    /**
+     * @param value the value for the new variable
+     * @return a new variable with the same type, class, name and initializers as this one, but
+     *      holding the given value. The list of initializers is copied. The type is shared, the
+     *      evaluator never changes the syntax tree node of a variable's type.
+     */
+    Variable withValue(Object value) {
+        Variable v = new Variable((Object) null);
+        v.type = type;
+        v.clazz = clazz;
+        v.value = value;
+        v.name = name;
+        v.initializer = initializer == null ? null : new ArrayList<>(initializer);
+        return v;
+    }
+
     public Type getType() {
         return type;
     }
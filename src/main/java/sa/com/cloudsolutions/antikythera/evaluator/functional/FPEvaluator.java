@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.evaluator.functional;
 
+import com.github.javaparser.ast.DataKey;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.Parameter;
@@ -17,25 +18,64 @@ import com.github.javaparser.ast.type.VoidType;
 import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
 import sa.com.cloudsolutions.antikythera.evaluator.EvaluatorFactory;
 import sa.com.cloudsolutions.antikythera.evaluator.InnerClassEvaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.LocalFrame;
 import sa.com.cloudsolutions.antikythera.evaluator.Variable;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
-import java.util.Map;
 import java.util.Optional;
 
 public abstract class FPEvaluator<T> extends InnerClassEvaluator {
     public static final String OBJECT_TYPE = "Object";
+    private static final DataKey<Template> TEMPLATE = new DataKey<>() {};
     protected MethodDeclaration methodDeclaration;
     Expression expr;
 
+    /**
+     * <p>The method that a lambda is turned into, and the kind of evaluator that runs it.</p>
+     *
+     * <p>Neither depends on anything but the lambda and where it appears, so they are worked out
+     * the first time that the lambda is evaluated and attached to it. A lambda inside a loop or a
+     * stream used to be cloned and turned into a method every time it was reached. Now only the
+     * evaluator is created again, since it holds the enclosure that the lambda captures.</p>
+     *
+     * @param lambda the lambda that the template was made for. Cloned nodes carry the data of the
+     *               original along, so the template is only used if this is the very same node.
+     * @param parent the parent of the lambda, which decides whether a value is returned
+     * @param method the method that holds the body of the lambda
+     * @param interfaceName the functional interface that the evaluator implements
+     * @param type the class of the evaluator
+     */
+    private record Template(LambdaExpr lambda, Node parent, MethodDeclaration method, String interfaceName,
+                            Class<? extends Evaluator> type) {}
+
     protected FPEvaluator(EvaluatorFactory.Context context) {
         super(context);
     }
 
     public static Variable create(LambdaExpr lambda, Evaluator enclosure) {
+        Template template = templateFor(lambda);
+        FPEvaluator<?> fp = (FPEvaluator<?>) EvaluatorFactory.create(template.interfaceName(), template.type());
+        fp.setMethod(template.method());
+        fp.enclosure = enclosure;
+        fp.expr = lambda;
+        Variable v = new Variable(fp);
+        v.setType(fp.getType());
+
+        return v;
+    }
+
+    private static Template templateFor(LambdaExpr lambda) {
+        Node parent = lambda.getParentNode().orElseThrow();
+        if (lambda.containsData(TEMPLATE)) {
+            Template template = lambda.getData(TEMPLATE);
+            if (template.lambda() == lambda && template.parent() == parent) {
+                return template;
+            }
+        }
+
         LambdaExpr lambdaExpr = lambda.clone();
-        lambdaExpr.setParentNode(lambda.getParentNode().orElseThrow());
+        lambdaExpr.setParentNode(parent);
 
         MethodDeclaration md = new MethodDeclaration();
 
@@ -67,35 +107,26 @@ public abstract class FPEvaluator<T> extends InnerClassEvaluator {
             }
         }
 
-        FPEvaluator<?> fp = createEvaluator(md);
-        fp.enclosure = enclosure;
-        fp.expr = lambda;
-        Variable v = new Variable(fp);
-        v.setType(fp.getType());
-
-        return v;
+        Template template = createTemplate(lambda, parent, md);
+        lambda.setData(TEMPLATE, template);
+        return template;
     }
 
-    private static FPEvaluator<?> createEvaluator(MethodDeclaration md) {
+    private static Template createTemplate(LambdaExpr lambda, Node parent, MethodDeclaration md) {
         if (md.getBody().orElseThrow().findFirst(ReturnStmt.class).isPresent()) {
-            FPEvaluator<?> eval = switch (md.getParameters().size()) {
-                case 0 -> EvaluatorFactory.create("java.util.function.Supplier", SupplierEvaluator.class);
-                case 1 -> EvaluatorFactory.create("java.util.function.Function", FunctionEvaluator.class);
-                case 2 -> EvaluatorFactory.create("java.util.function.BiFunction", BiFunctionEvaluator.class);
+            return switch (md.getParameters().size()) {
+                case 0 -> new Template(lambda, parent, md, "java.util.function.Supplier", SupplierEvaluator.class);
+                case 1 -> new Template(lambda, parent, md, "java.util.function.Function", FunctionEvaluator.class);
+                case 2 -> new Template(lambda, parent, md, "java.util.function.BiFunction", BiFunctionEvaluator.class);
                 default -> throw new UnsupportedOperationException("Not supported yet.");
             };
-            eval.setMethod(md);
-            return eval;
         } else {
-            FPEvaluator<?> eval = switch (md.getParameters().size()) {
-                case 0 -> EvaluatorFactory.create("java.lang.Runnable", RunnableEvaluator.class);
-                case 1 -> EvaluatorFactory.create("java.util.function.Consumer", ConsumerEvaluator.class);
-                case 2 -> EvaluatorFactory.create("java.util.function.BiConsumer", BiConsumerEvaluator.class);
+            return switch (md.getParameters().size()) {
+                case 0 -> new Template(lambda, parent, md, "java.lang.Runnable", RunnableEvaluator.class);
+                case 1 -> new Template(lambda, parent, md, "java.util.function.Consumer", ConsumerEvaluator.class);
+                case 2 -> new Template(lambda, parent, md, "java.util.function.BiConsumer", BiConsumerEvaluator.class);
                 default -> throw new UnsupportedOperationException("Not supported yet.");
             };
-
-            eval.setMethod(md);
-            return eval;
         }
     }
 
@@ -150,7 +181,7 @@ public abstract class FPEvaluator<T> extends InnerClassEvaluator {
                 if (v != null) {
                     return v;
                 }
-                for (Map<String, Variable> local : enclosure.getLocals().values()) {
+                for (LocalFrame local : enclosure.getLocals().values()) {
                     v = local.get(name);
                     if (v != null) {
                         return v;
@@ -0,0 +1,239 @@
+package sa.com.cloudsolutions.antikythera.evaluator.functional;
+
+import net.bytebuddy.ByteBuddy;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.description.modifier.FieldManifestation;
+import net.bytebuddy.description.modifier.Visibility;
+import net.bytebuddy.dynamic.loading.ClassLoadingStrategy;
+import net.bytebuddy.dynamic.loading.MultipleParentClassLoader;
+import net.bytebuddy.implementation.FieldAccessor;
+import net.bytebuddy.implementation.Implementation;
+import net.bytebuddy.implementation.MethodCall;
+import net.bytebuddy.implementation.bytecode.assign.Assigner;
+import net.bytebuddy.matcher.ElementMatcher;
+import net.bytebuddy.matcher.ElementMatchers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.evaluator.Variable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * <p>Turns a lambda that is being evaluated into an instance of the functional interface that a
+ * compiled method expects as its argument.</p>
+ *
+ * <p>This used to be done with a {@link Proxy} for every argument, and every call made through the
+ * proxy went through {@link FunctionalInvocationHandler}, which works out what kind of evaluator it
+ * has on each call. Streams call the lambdas passed to map and filter once per element, so that
+ * cost is paid over and over. Instead a small class is generated with Byte Buddy for each
+ * functional interface and each kind of evaluator. Its single abstract method calls the evaluator
+ * directly, boxing and unboxing as needed, and the default methods of the interface are left as
+ * they are. The classes are generated the first time that they are needed and kept for as long as
+ * the interface is loaded.</p>
+ *
+ * <p>If a class cannot be generated, for example because the interface is not public or because
+ * its method takes fewer arguments than the lambda, a proxy is used as before.</p>
+ */
+public final class FunctionalAdapters {
+    private static final Logger logger = LoggerFactory.getLogger(FunctionalAdapters.class);
+    private static final String EVALUATOR = "evaluator";
+
+    private static final ClassValue<Map<Shape, Optional<MethodHandle>>> FACTORIES = new ClassValue<>() {
+        @Override
+        protected Map<Shape, Optional<MethodHandle>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Implemented by every generated adapter so that the evaluator can be found again.
+     */
+    public interface Adapter {
+        FPEvaluator<?> getEvaluator();
+    }
+
+    /**
+     * The kinds of evaluator, in the order in which {@link FunctionalInvocationHandler} checks for them.
+     */
+    private enum Shape {
+        BI_CONSUMER(BiConsumer.class, "accept", 2),
+        FUNCTION(Function.class, "apply", 1),
+        BI_FUNCTION(BiFunction.class, "apply", 2),
+        CONSUMER(Consumer.class, "accept", 1),
+        RUNNABLE(Runnable.class, "run", 0),
+        SUPPLIER(Supplier.class, "get", 0);
+
+        private final Class<?> type;
+        private final String method;
+        private final int arity;
+
+        Shape(Class<?> type, String method, int arity) {
+            this.type = type;
+            this.method = method;
+            this.arity = arity;
+        }
+
+        static Shape of(FPEvaluator<?> evaluator) {
+            for (Shape shape : values()) {
+                if (shape.type.isInstance(evaluator)) {
+                    return shape;
+                }
+            }
+            return null;
+        }
+
+        Implementation call() throws NoSuchMethodException {
+            if (this == SUPPLIER) {
+                /* the value supplied may still be wrapped in a variable */
+                return MethodCall.invoke(FunctionalAdapters.class.getMethod("supply", Supplier.class))
+                        .withField(EVALUATOR)
+                        .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC);
+            }
+            Class<?>[] parameters = new Class<?>[arity];
+            int[] arguments = new int[arity];
+            for (int i = 0; i < arity; i++) {
+                parameters[i] = Object.class;
+                arguments[i] = i;
+            }
+            return MethodCall.invoke(type.getMethod(method, parameters))
+                    .onField(EVALUATOR)
+                    .withArgument(arguments)
+                    .withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC);
+        }
+    }
+
+    private FunctionalAdapters() {}
+
+    /**
+     * Make an instance of a functional interface that calls the given evaluator.
+     * @param functional the functional interface
+     * @param evaluator the evaluator for the lambda
+     * @return an adapter, or a proxy if no adapter could be generated for the interface
+     */
+    public static Object create(Class<?> functional, FPEvaluator<?> evaluator) {
+        Shape shape = Shape.of(evaluator);
+        if (shape != null) {
+            Optional<MethodHandle> factory = FACTORIES.get(functional)
+                    .computeIfAbsent(shape, s -> generate(functional, s));
+            if (factory.isPresent()) {
+                try {
+                    return (Object) factory.get().invokeExact(evaluator);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+        }
+        return Proxy.newProxyInstance(functional.getClassLoader(), new Class<?>[]{functional},
+                new FunctionalInvocationHandler(evaluator));
+    }
+
+    /**
+     * Find the evaluator behind an argument that is about to be passed to a compiled method.
+     * @param argument the argument
+     * @return the evaluator if the argument is an evaluator for a lambda, or an adapter or a proxy
+     *      that wraps one, otherwise null.
+     */
+    public static FPEvaluator<?> evaluatorOf(Object argument) {
+        return switch (argument) {
+            case null -> null;
+            case FPEvaluator<?> evaluator -> evaluator;
+            case Adapter adapter -> adapter.getEvaluator();
+            default -> Proxy.isProxyClass(argument.getClass())
+                    && Proxy.getInvocationHandler(argument) instanceof FunctionalInvocationHandler handler
+                    ? handler.getEvaluator() : null;
+        };
+    }
+
+    /**
+     * Called by the adapters generated for suppliers.
+     * @param supplier the evaluator
+     * @return the value that it supplies, unwrapped
+     */
+    public static Object supply(Supplier<?> supplier) {
+        Object result = supplier.get();
+        if (result instanceof Variable v) {
+            return v.getValue();
+        }
+        return result;
+    }
+
+    private static Optional<MethodHandle> generate(Class<?> functional, Shape shape) {
+        if (!functional.isInterface() || !Modifier.isPublic(functional.getModifiers())
+                || arity(functional) < shape.arity) {
+            return Optional.empty();
+        }
+        try {
+            ElementMatcher<MethodDescription> objectMethods = ElementMatchers.<MethodDescription>isEquals()
+                    .or(ElementMatchers.isHashCode())
+                    .or(ElementMatchers.isToString());
+
+            Class<?> adapter = new ByteBuddy()
+                    .subclass(Object.class)
+                    .implement(functional, Adapter.class)
+                    .defineField(EVALUATOR, shape.type, Visibility.PRIVATE, FieldManifestation.FINAL)
+                    .defineConstructor(Visibility.PUBLIC)
+                    .withParameters(shape.type)
+                    .intercept(MethodCall.invoke(Object.class.getConstructor())
+                            .andThen(FieldAccessor.ofField(EVALUATOR).setsArgumentAt(0)))
+                    .method(ElementMatchers.<MethodDescription>isAbstract()
+                            .and(ElementMatchers.not(ElementMatchers.isDeclaredBy(Adapter.class)))
+                            .and(ElementMatchers.not(objectMethods)))
+                    .intercept(shape.call())
+                    .method(ElementMatchers.<MethodDescription>named("getEvaluator")
+                            .and(ElementMatchers.isDeclaredBy(Adapter.class)))
+                    .intercept(FieldAccessor.ofField(EVALUATOR).withAssigner(Assigner.DEFAULT, Assigner.Typing.DYNAMIC))
+                    .make()
+                    .load(new MultipleParentClassLoader.Builder().append(functional, FunctionalAdapters.class).build(),
+                            ClassLoadingStrategy.Default.WRAPPER)
+                    .getLoaded();
+
+            MethodHandle constructor = MethodHandles.publicLookup()
+                    .findConstructor(adapter, MethodType.methodType(void.class, shape.type));
+            return Optional.of(constructor.asType(MethodType.methodType(Object.class, FPEvaluator.class)));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            logger.debug("Falling back to a proxy for {}: {}", functional.getName(), e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * @return the number of parameters of the single abstract method of the interface, or -1 if
+     *      there is not exactly one.
+     */
+    private static int arity(Class<?> functional) {
+        Method single = null;
+        for (Method m : functional.getMethods()) {
+            if (Modifier.isAbstract(m.getModifiers()) && !isObjectMethod(m)) {
+                if (single != null && !single.getName().equals(m.getName())) {
+                    return -1;
+                }
+                single = m;
+            }
+        }
+        return single == null ? -1 : single.getParameterCount();
+    }
+
+    private static boolean isObjectMethod(Method m) {
+        try {
+            Object.class.getMethod(m.getName(), m.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package sa.com.cloudsolutions.antikythera.evaluator.functional;
 
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -25,16 +26,45 @@ import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 public class FunctionalConverter {
+    private static final DataKey<Conversions> CONVERSIONS = new DataKey<>() {};
 
     private FunctionalConverter() {}
 
+    /**
+     * The lambdas that a method reference has been converted into. The lambda only depends on
+     * where the reference appears and on the class of the outer scope, so it is made once and
+     * reused. That also means the template that {@link FPEvaluator} attaches to it is reused.
+     */
+    private record Conversions(MethodReferenceExpr owner, Node parent, Map<Scope, LambdaExpr> lambdas) {}
+
+    private record Scope(boolean present, Class<?> clazz) {}
+
     /**
      * Converts a MethodReferenceExpr to a LambdaExpr
      */
     public static LambdaExpr convertToLambda(MethodReferenceExpr methodRef, Variable outerScope) {
+        Node parent = methodRef.getParentNode().orElseThrow();
+        Conversions conversions = methodRef.containsData(CONVERSIONS) ? methodRef.getData(CONVERSIONS) : null;
+        if (conversions == null || conversions.owner() != methodRef || conversions.parent() != parent) {
+            /* cloned nodes carry the data of the original along */
+            conversions = new Conversions(methodRef, parent, new HashMap<>());
+            methodRef.setData(CONVERSIONS, conversions);
+        }
+        Scope scope = new Scope(outerScope != null, outerScope == null ? null : outerScope.getClazz());
+        LambdaExpr lambda = conversions.lambdas().get(scope);
+        if (lambda == null) {
+            lambda = convert(methodRef, outerScope);
+            conversions.lambdas().put(scope, lambda);
+        }
+        return lambda;
+    }
+
+    private static LambdaExpr convert(MethodReferenceExpr methodRef, Variable outerScope) {
         NodeList<Parameter> parameters = new NodeList<>();
         parameters.add(new Parameter(new ClassOrInterfaceType().setName("Object"), "arg"));
 
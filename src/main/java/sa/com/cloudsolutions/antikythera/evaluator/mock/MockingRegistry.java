@@ -85,6 +85,29 @@ public class MockingRegistry {
         mockedFields.clear();
     }
 
+    /**
+     * @return a copy of everything that has been registered so far, which can be handed back to
+     *      {@link #restore(Map)} to undo later registrations.
+     */
+    public static Map<String, Map<Callable, MockingCall>> snapshot() {
+        Map<String, Map<Callable, MockingCall>> copy = new HashMap<>();
+        for (Map.Entry<String, Map<Callable, MockingCall>> e : mockedFields.entrySet()) {
+            copy.put(e.getKey(), new HashMap<>(e.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * Go back to the registrations that were in place when the snapshot was taken.
+     * @param snapshot obtained from {@link #snapshot()}. It is not modified.
+     */
+    public static void restore(Map<String, Map<Callable, MockingCall>> snapshot) {
+        mockedFields.clear();
+        for (Map.Entry<String, Map<Callable, MockingCall>> e : snapshot.entrySet()) {
+            mockedFields.put(e.getKey(), new HashMap<>(e.getValue()));
+        }
+    }
+
     /**
      * Creates p 'Mockito.when().then()' style setup.
      * This may or may not translate to a real Mockito call. That depends on the mocking framework
@@ -77,6 +77,7 @@ public class Antikythera {
     }
 
     public static void main(String[] args) throws IOException, XmlPullParserException, EvaluatorException {
+        SolutionCache.clear();
         Antikythera antk = Antikythera.getInstance();
         antk.preProcess();
         antk.generateApiTests();
@@ -87,6 +88,8 @@ public class Antikythera {
         logger.info("Generated {} tests", stats.getTests());
 
         antk.generateUnitTests();
+        logger.info("Solved conditions reused {} times, solved {} times, hit rate {}",
+                SolutionCache.getHits(), SolutionCache.getMisses(), String.format("%.2f", SolutionCache.getHitRate()));
     }
 
     private void copyBaseFiles(String outputPath) throws IOException, XmlPullParserException {
@@ -0,0 +1,260 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.NumericComparator;
+import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A condition of a {@link TruthTable} turned into something that can be evaluated quickly for
+ * each row.</p>
+ *
+ * <p>TruthTable.evaluateCondition walks the expression for every row, finding out what kind of
+ * expression it has at each step and looking up every variable in a map keyed by expressions,
+ * which hashes the expression all over again. Here the walk is done once. Each part of the
+ * condition becomes a small function over an array that holds the value of each variable at a
+ * fixed index, and literals are worked out ahead of time. Evaluating a row does not allocate
+ * anything.</p>
+ *
+ * <p>The results are the same as those of TruthTable.evaluateCondition, except that the right
+ * hand side of && and || is skipped when the left hand side decides the result. An expression
+ * that TruthTable.evaluateCondition does not support leads to an
+ * {@link UnsupportedOperationException} when the condition is compiled.</p>
+ */
+final class CompiledCondition {
+    private final Term root;
+    /*
+     * The constraints, one entry for each constraint expression
+     */
+    private final int[] constrained;
+    private final BinaryExpr.Operator[] operators;
+    private final int[] literals;
+    private final boolean[] varOnLeft;
+    /*
+     * true if a constraint is on something that is not a variable, no row can satisfy it
+     */
+    private final boolean unsatisfiable;
+
+    @FunctionalInterface
+    private interface Term {
+        Object evaluate(Object[] values);
+    }
+
+    private CompiledCondition(Term root, int[] constrained, BinaryExpr.Operator[] operators, int[] literals,
+                              boolean[] varOnLeft, boolean unsatisfiable) {
+        this.root = root;
+        this.constrained = constrained;
+        this.operators = operators;
+        this.literals = literals;
+        this.varOnLeft = varOnLeft;
+        this.unsatisfiable = unsatisfiable;
+    }
+
+    /**
+     * Compile a condition along with the constraints of the truth table.
+     * @param condition the condition
+     * @param variables the index of each variable in the arrays of values
+     * @param constraints the constraints on the variables
+     * @return the compiled condition
+     * @throws UnsupportedOperationException if the condition or a constraint cannot be compiled
+     */
+    static CompiledCondition compile(Expression condition, Map<Expression, Integer> variables,
+                                     Map<Expression, List<Expression>> constraints) {
+        int size = 0;
+        for (List<Expression> list : constraints.values()) {
+            size += list.size();
+        }
+        int[] constrained = new int[size];
+        BinaryExpr.Operator[] operators = new BinaryExpr.Operator[size];
+        int[] literals = new int[size];
+        boolean[] varOnLeft = new boolean[size];
+        boolean unsatisfiable = false;
+
+        int i = 0;
+        for (Map.Entry<Expression, List<Expression>> entry : constraints.entrySet()) {
+            Integer index = variables.get(entry.getKey());
+            unsatisfiable |= index == null;
+            for (Expression e : entry.getValue()) {
+                if (e instanceof BinaryExpr b) {
+                    Expression literal = b.getRight().isIntegerLiteralExpr() ? b.getRight() : b.getLeft();
+                    if (!literal.isIntegerLiteralExpr()) {
+                        throw new UnsupportedOperationException("Unsupported constraint: " + b);
+                    }
+                    literals[i] = Integer.parseInt(literal.asIntegerLiteralExpr().getValue());
+                    operators[i] = b.getOperator();
+                    varOnLeft[i] = b.getLeft().toString().equals(entry.getKey().toString());
+                }
+                constrained[i++] = index == null ? -1 : index;
+            }
+        }
+
+        return new CompiledCondition(new Compiler(variables).compile(condition),
+                constrained, operators, literals, varOnLeft, unsatisfiable || variables.isEmpty());
+    }
+
+    /**
+     * @param values the value of each variable
+     * @return true if the condition is true for these values
+     */
+    boolean test(Object[] values) {
+        return TruthTable.isTrue(root.evaluate(values));
+    }
+
+    /**
+     * The same check as TruthTable.satisfiesConstraints
+     * @param values the value of each variable
+     * @return true if the values satisfy all the constraints
+     */
+    boolean satisfiesConstraints(Object[] values) {
+        if (unsatisfiable) {
+            return false;
+        }
+        for (int i = 0; i < constrained.length; i++) {
+            if (operators[i] != null && values[constrained[i]] instanceof Integer value
+                    && !satisfies(value, operators[i], literals[i], varOnLeft[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean satisfies(int value, BinaryExpr.Operator operator, int literal, boolean varOnLeft) {
+        return switch (operator) {
+            case GREATER -> varOnLeft ? value > literal : value < literal;
+            case GREATER_EQUALS -> varOnLeft ? value >= literal : value <= literal;
+            case LESS -> varOnLeft ? value < literal : value > literal;
+            case LESS_EQUALS -> varOnLeft ? value <= literal : value >= literal;
+            case EQUALS -> value == literal;
+            default -> true;
+        };
+    }
+
+    /**
+     * Turns expressions into terms, following the structure of TruthTable.evaluateCondition.
+     */
+    private record Compiler(Map<Expression, Integer> variables) {
+
+        Term compile(Expression condition) {
+            if (condition.isBinaryExpr()) {
+                return binary(condition.asBinaryExpr());
+            } else if (condition.isUnaryExpr()) {
+                UnaryExpr unaryExpr = condition.asUnaryExpr();
+                if (unaryExpr.getOperator() != UnaryExpr.Operator.LOGICAL_COMPLEMENT) {
+                    throw new UnsupportedOperationException("Unsupported operator: " + unaryExpr.getOperator());
+                }
+                Term inner = compile(unaryExpr.getExpression());
+                return values -> !(Boolean) inner.evaluate(values);
+            } else if (condition.isMethodCallExpr()) {
+                return methodCall(condition.asMethodCallExpr());
+            }
+            return basic(condition);
+        }
+
+        private Term binary(BinaryExpr binaryExpr) {
+            Term left = compile(binaryExpr.getLeft());
+            Term right = compile(binaryExpr.getRight());
+
+            return switch (binaryExpr.getOperator()) {
+                case AND -> values -> (Boolean) left.evaluate(values) && (Boolean) right.evaluate(values);
+                case OR -> values -> (Boolean) left.evaluate(values) || (Boolean) right.evaluate(values);
+                case EQUALS -> values -> same(left.evaluate(values), right.evaluate(values));
+                case NOT_EQUALS -> values -> !same(left.evaluate(values), right.evaluate(values));
+                case LESS -> values -> NumericComparator.compare(left.evaluate(values), right.evaluate(values)) < 0;
+                case GREATER -> values -> NumericComparator.compare(left.evaluate(values), right.evaluate(values)) > 0;
+                case LESS_EQUALS -> values -> NumericComparator.compare(left.evaluate(values), right.evaluate(values)) <= 0;
+                case GREATER_EQUALS -> values -> NumericComparator.compare(left.evaluate(values), right.evaluate(values)) >= 0;
+                default -> throw new UnsupportedOperationException("Unsupported operator: " + binaryExpr.getOperator());
+            };
+        }
+
+        private Term basic(Expression condition) {
+            if (condition.isNameExpr() || condition.isFieldAccessExpr()) {
+                return lookup(condition);
+            } else if (condition.isBooleanLiteralExpr()) {
+                Boolean value = condition.asBooleanLiteralExpr().getValue();
+                return values -> value;
+            } else if (condition.isStringLiteralExpr() || condition.isIntegerLiteralExpr()
+                    || condition.isDoubleLiteralExpr() || condition.isLongLiteralExpr()) {
+                Object value = literal(condition);
+                return values -> value;
+            } else if (condition.isNullLiteralExpr()) {
+                return values -> null;
+            } else if (condition.isEnclosedExpr()) {
+                return compile(condition.asEnclosedExpr().getInner());
+            }
+            throw new UnsupportedOperationException("Unsupported expression: " + condition);
+        }
+
+        private Term methodCall(MethodCallExpr condition) {
+            String methodName = condition.getNameAsString();
+            Expression scope = condition.getScope().orElse(null);
+
+            if (TruthTable.IS_EMPTY.equals(methodName)) {
+                Term target = lookup(scope);
+                return values -> isEmpty(target.evaluate(values));
+            } else if (TruthTable.EQUALS_CALL.equals(methodName)) {
+                Term target = lookup(scope);
+                Expression argument = condition.getArgument(0);
+                if (argument.isLiteralExpr()) {
+                    boolean isNull = argument.isNullLiteralExpr();
+                    Object literal = literal(argument);
+                    return values -> {
+                        Object value = target.evaluate(values);
+                        return value == null ? isNull : value.equals(literal);
+                    };
+                }
+                Term other = lookup(argument);
+                return values -> {
+                    Object value = target.evaluate(values);
+                    Object arg = other.evaluate(values);
+                    return value == null ? arg == null : value.equals(arg);
+                };
+            }
+            return lookup(condition);
+        }
+
+        /**
+         * The value of a variable, or null if the expression is not one of the variables
+         */
+        private Term lookup(Expression e) {
+            Integer index = e == null ? null : variables.get(e);
+            if (index == null) {
+                return values -> null;
+            }
+            int i = index;
+            return values -> values[i];
+        }
+
+        private static Object literal(Expression e) {
+            try {
+                return Evaluator.evaluateLiteral(e).getValue();
+            } catch (EvaluatorException ex) {
+                throw new UnsupportedOperationException("Unsupported literal: " + e);
+            }
+        }
+
+        private static boolean same(Object left, Object right) {
+            return (left == null || right == null) ? left == right : left.equals(right);
+        }
+
+        private static boolean isEmpty(Object value) {
+            if (value == null) {
+                return true;
+            }
+            if (value instanceof Collection<?> collection) {
+                return collection.isEmpty();
+            }
+            if (value instanceof Map<?, ?> map) {
+                return map.isEmpty();
+            }
+            return false;
+        }
+    }
+}
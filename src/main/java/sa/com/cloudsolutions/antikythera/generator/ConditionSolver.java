@@ -0,0 +1,406 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Predicate;
+
+/**
+ * <p>Finds one set of values that makes a condition true or false, without going through every
+ * combination of values the way that the {@link TruthTable} does.</p>
+ *
+ * <p>The condition is taken apart at &&, || and ! and the desired outcome is pushed down to the
+ * comparisons at the bottom. Both sides of an && that has to be true must hold, while only one
+ * side of an && that has to be false needs to be made false, so that is where the solver may have
+ * to try more than one way. Comparisons between integers are kept as bounds on each variable and as
+ * limits on the difference between two variables, which are propagated until they settle, so an
+ * impossible comparison is caught without trying any values. Every other kind of variable has just
+ * the two values of its domain, and a comparison involving them is evaluated with each value until
+ * one of them gives the desired outcome: this covers booleans, null checks, equals and isEmpty.</p>
+ *
+ * <p>The integers are first kept within the domain that the truth table would have used, and the
+ * lowest values that fit are chosen, so the answer tends to be the first one in the table. When
+ * there is no answer within that domain the search is repeated without it.</p>
+ *
+ * <p>A condition that cannot be taken apart this way leads to an {@link UnsupportedOperationException}
+ * so that the caller can fall back to the truth table.</p>
+ */
+class ConditionSolver {
+    /**
+     * The integer variables are numbered from 1, the number 0 stands for a constant zero so that
+     * a bound on a variable is just a difference with zero.
+     */
+    private static final int ZERO = 0;
+
+    private final Map<Expression, Pair<Object, Object>> domains;
+    private final Map<Expression, List<Expression>> constraints;
+    private final BiFunction<Expression, Map<Expression, Object>, Object> evaluator;
+    private final Map<Expression, Integer> numeric = new HashMap<>();
+    private final List<Expression> numericVariables = new ArrayList<>();
+    private Map<Expression, Object> solution;
+
+    /**
+     * x - y <= c
+     */
+    private record Difference(int x, int y, long c) {}
+
+    /**
+     * A side of a comparison between integers: a variable plus a constant. Constants are made of
+     * the zero variable. wide is set for long literals, which are never equal to an Integer.
+     */
+    private record Term(int variable, long offset, boolean wide) {}
+
+    /**
+     * What has been decided so far along one way through the condition.
+     */
+    private static final class State {
+        final Map<Expression, Object> values;
+        final long[] lo;
+        final long[] hi;
+        final List<Difference> differences;
+
+        State(int size) {
+            values = new HashMap<>();
+            lo = new long[size];
+            hi = new long[size];
+            differences = new ArrayList<>();
+        }
+
+        State(State other) {
+            values = new HashMap<>(other.values);
+            lo = other.lo.clone();
+            hi = other.hi.clone();
+            differences = new ArrayList<>(other.differences);
+        }
+    }
+
+    /**
+     * @param domains the variables and their domains, as worked out by the truth table
+     * @param constraints the constraints added to the truth table
+     * @param evaluator evaluates a comparison with the given values
+     */
+    ConditionSolver(Map<Expression, Pair<Object, Object>> domains, Map<Expression, List<Expression>> constraints,
+                    BiFunction<Expression, Map<Expression, Object>, Object> evaluator) {
+        this.domains = domains;
+        this.constraints = constraints;
+        this.evaluator = evaluator;
+        for (Map.Entry<Expression, Pair<Object, Object>> entry : domains.entrySet()) {
+            if (entry.getValue().a instanceof Integer && entry.getValue().b instanceof Integer) {
+                numericVariables.add(entry.getKey());
+                numeric.put(entry.getKey(), numericVariables.size());
+            }
+        }
+    }
+
+    /**
+     * Find values for all the variables that give the condition the desired outcome.
+     * @param condition the condition
+     * @param desiredState true or false
+     * @param accept has the final say on whether a set of values will do
+     * @return the values, or empty if there are none
+     * @throws UnsupportedOperationException if the condition cannot be solved this way
+     */
+    Optional<Map<Expression, Object>> solve(Expression condition, boolean desiredState,
+                                            Predicate<Map<Expression, Object>> accept) {
+        for (Expression variable : constraints.keySet()) {
+            if (!domains.containsKey(variable)) {
+                /* the truth table drops every row that does not have a value for it */
+                return Optional.empty();
+            }
+        }
+
+        solution = null;
+        boolean bounded = true;
+        do {
+            State initial = initialState(bounded);
+            if (initial != null && require(condition, desiredState, initial, s -> complete(s, accept))) {
+                return Optional.of(solution);
+            }
+            bounded = !bounded;
+        } while (!bounded && !numericVariables.isEmpty());
+        return Optional.empty();
+    }
+
+    private State initialState(boolean bounded) {
+        State s = new State(numericVariables.size() + 1);
+        for (int i = 1; i < s.lo.length; i++) {
+            Pair<Object, Object> domain = domains.get(numericVariables.get(i - 1));
+            s.lo[i] = bounded ? (Integer) domain.a : Integer.MIN_VALUE;
+            s.hi[i] = bounded ? (Integer) domain.b : Integer.MAX_VALUE;
+        }
+        for (Map.Entry<Expression, List<Expression>> entry : constraints.entrySet()) {
+            Integer variable = numeric.get(entry.getKey());
+            if (variable == null) {
+                continue;
+            }
+            for (Expression constraint : entry.getValue()) {
+                if (constraint instanceof BinaryExpr b && !constrain(s, entry.getKey(), variable, b)) {
+                    return null;
+                }
+            }
+        }
+        return propagate(s) ? s : null;
+    }
+
+    /**
+     * Apply a constraint the way that TruthTable.satisfiesConstraintForVariable checks it.
+     */
+    private boolean constrain(State s, Expression variable, int index, BinaryExpr constraint) {
+        Expression literal = constraint.getRight().isIntegerLiteralExpr() ? constraint.getRight() : constraint.getLeft();
+        if (!literal.isIntegerLiteralExpr()) {
+            throw new UnsupportedOperationException("Unsupported constraint: " + constraint);
+        }
+        Term v = new Term(index, 0, false);
+        Term c = new Term(ZERO, Integer.parseInt(literal.asIntegerLiteralExpr().getValue()), false);
+        boolean varOnLeft = constraint.getLeft().toString().equals(variable.toString());
+
+        return switch (constraint.getOperator()) {
+            case GREATER, GREATER_EQUALS, LESS, LESS_EQUALS ->
+                    varOnLeft ? limit(s, v, constraint.getOperator(), c) : limit(s, c, constraint.getOperator(), v);
+            case EQUALS -> limit(s, v, BinaryExpr.Operator.EQUALS, c);
+            default -> true;
+        };
+    }
+
+    private boolean require(Expression e, boolean desired, State s, Predicate<State> next) {
+        if (e.isEnclosedExpr()) {
+            return require(e.asEnclosedExpr().getInner(), desired, s, next);
+        }
+        if (e.isUnaryExpr() && e.asUnaryExpr().getOperator() == UnaryExpr.Operator.LOGICAL_COMPLEMENT) {
+            return require(e.asUnaryExpr().getExpression(), !desired, s, next);
+        }
+        if (e.isBinaryExpr()) {
+            BinaryExpr b = e.asBinaryExpr();
+            if (b.getOperator() == BinaryExpr.Operator.AND || b.getOperator() == BinaryExpr.Operator.OR) {
+                if ((b.getOperator() == BinaryExpr.Operator.AND) == desired) {
+                    /* true && true or false || false: both sides have to be decided */
+                    return require(b.getLeft(), desired, s, t -> require(b.getRight(), desired, t, next));
+                }
+                return require(b.getLeft(), desired, s, next) || require(b.getRight(), desired, s, next);
+            }
+        }
+
+        Set<Expression> variables = new LinkedHashSet<>();
+        collectVariables(e, variables);
+        for (Expression variable : variables) {
+            if (numeric.containsKey(variable)) {
+                return compare(e, desired, s, next);
+            }
+        }
+        return assign(e, desired, new ArrayList<>(variables), 0, s, next);
+    }
+
+    /**
+     * Try the two values of each variable in the expression that has not been given a value yet.
+     */
+    private boolean assign(Expression e, boolean desired, List<Expression> variables, int i, State s,
+                           Predicate<State> next) {
+        if (i == variables.size()) {
+            return TruthTable.isTrue(evaluator.apply(e, s.values)) == desired && next.test(s);
+        }
+        Expression variable = variables.get(i);
+        if (s.values.containsKey(variable)) {
+            return assign(e, desired, variables, i + 1, s, next);
+        }
+        Pair<Object, Object> domain = domains.get(variable);
+        for (Object value : Arrays.asList(domain.a, domain.b)) {
+            State t = new State(s);
+            t.values.put(variable, value);
+            if (assign(e, desired, variables, i + 1, t, next)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Turn a comparison between integers into limits on the variables.
+     */
+    private boolean compare(Expression e, boolean desired, State s, Predicate<State> next) {
+        Expression left;
+        Expression right;
+        BinaryExpr.Operator operator;
+        if (e instanceof BinaryExpr b) {
+            left = b.getLeft();
+            right = b.getRight();
+            operator = b.getOperator();
+        } else if (e instanceof MethodCallExpr m && m.getNameAsString().equals(TruthTable.EQUALS_CALL)
+                && m.getScope().isPresent() && m.getArguments().size() == 1) {
+            left = m.getScope().get();
+            right = m.getArgument(0);
+            operator = BinaryExpr.Operator.EQUALS;
+        } else {
+            throw new UnsupportedOperationException("Cannot solve " + e);
+        }
+
+        Term l = term(left);
+        Term r = term(right);
+        operator = desired ? operator : negate(operator);
+        if ((operator == BinaryExpr.Operator.EQUALS || operator == BinaryExpr.Operator.NOT_EQUALS)
+                && (l.wide() || r.wide())) {
+            throw new UnsupportedOperationException("Cannot solve " + e);
+        }
+
+        if (operator == BinaryExpr.Operator.NOT_EQUALS) {
+            return extend(s, l, BinaryExpr.Operator.LESS, r, next)
+                    || extend(s, l, BinaryExpr.Operator.GREATER, r, next);
+        }
+        return extend(s, l, operator, r, next);
+    }
+
+    private boolean extend(State s, Term l, BinaryExpr.Operator operator, Term r, Predicate<State> next) {
+        State t = new State(s);
+        return limit(t, l, operator, r) && propagate(t) && next.test(t);
+    }
+
+    /**
+     * Record l op r as differences. Returns false if it compares constants and does not hold.
+     */
+    private static boolean limit(State s, Term l, BinaryExpr.Operator operator, Term r) {
+        long a = l.offset();
+        long b = r.offset();
+        return switch (operator) {
+            case LESS -> difference(s, l.variable(), r.variable(), b - a - 1);
+            case LESS_EQUALS -> difference(s, l.variable(), r.variable(), b - a);
+            case GREATER -> difference(s, r.variable(), l.variable(), a - b - 1);
+            case GREATER_EQUALS -> difference(s, r.variable(), l.variable(), a - b);
+            case EQUALS -> difference(s, l.variable(), r.variable(), b - a)
+                    && difference(s, r.variable(), l.variable(), a - b);
+            default -> throw new UnsupportedOperationException("Unsupported operator: " + operator);
+        };
+    }
+
+    private static boolean difference(State s, int x, int y, long c) {
+        if (x == y) {
+            return c >= 0;
+        }
+        s.differences.add(new Difference(x, y, c));
+        return true;
+    }
+
+    /**
+     * Tighten the bounds of the variables until they no longer change. This is Bellman-Ford run
+     * both ways, so if they are still changing after one round for each variable the differences
+     * contradict each other.
+     * @return false if there are no values that satisfy all the limits
+     */
+    private static boolean propagate(State s) {
+        for (int round = 0; round <= s.lo.length; round++) {
+            boolean changed = false;
+            for (Difference d : s.differences) {
+                if (s.hi[d.y()] + d.c() < s.hi[d.x()]) {
+                    s.hi[d.x()] = s.hi[d.y()] + d.c();
+                    changed = true;
+                }
+                if (s.lo[d.x()] - d.c() > s.lo[d.y()]) {
+                    s.lo[d.y()] = s.lo[d.x()] - d.c();
+                    changed = true;
+                }
+            }
+            for (int i = 0; i < s.lo.length; i++) {
+                if (s.lo[i] > s.hi[i]) {
+                    return false;
+                }
+            }
+            if (!changed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give a value to every variable that the search did not need to decide. The integers get the
+     * lowest value that is left to them, one at a time, which always works out because the bounds
+     * are as tight as the differences allow.
+     */
+    private boolean complete(State s, Predicate<Map<Expression, Object>> accept) {
+        State t = new State(s);
+        Map<Expression, Object> row = new HashMap<>();
+        for (int i = 1; i < t.lo.length; i++) {
+            long preferred = (Integer) domains.get(numericVariables.get(i - 1)).a;
+            long value = Math.clamp(preferred, t.lo[i], t.hi[i]);
+            t.lo[i] = value;
+            t.hi[i] = value;
+            if (!propagate(t)) {
+                return false;
+            }
+            row.put(numericVariables.get(i - 1), (int) value);
+        }
+        for (Map.Entry<Expression, Pair<Object, Object>> entry : domains.entrySet()) {
+            if (!numeric.containsKey(entry.getKey())) {
+                row.put(entry.getKey(), t.values.containsKey(entry.getKey())
+                        ? t.values.get(entry.getKey()) : entry.getValue().a);
+            }
+        }
+        if (accept.test(row)) {
+            solution = row;
+            return true;
+        }
+        return false;
+    }
+
+    private Term term(Expression e) {
+        Integer variable = numeric.get(e);
+        if (variable != null) {
+            return new Term(variable, 0, false);
+        }
+        if (e.isEnclosedExpr()) {
+            return term(e.asEnclosedExpr().getInner());
+        }
+        if (e.isIntegerLiteralExpr()) {
+            return new Term(ZERO, Integer.parseInt(e.asIntegerLiteralExpr().getValue()), false);
+        }
+        if (e.isLongLiteralExpr()) {
+            String value = e.asLongLiteralExpr().getValue();
+            if (value.endsWith("L") || value.endsWith("l")) {
+                value = value.substring(0, value.length() - 1);
+            }
+            long literal = Long.parseLong(value);
+            if (literal >= Integer.MIN_VALUE && literal <= Integer.MAX_VALUE) {
+                return new Term(ZERO, literal, true);
+            }
+        }
+        throw new UnsupportedOperationException("Cannot solve for " + e);
+    }
+
+    private static BinaryExpr.Operator negate(BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case LESS -> BinaryExpr.Operator.GREATER_EQUALS;
+            case LESS_EQUALS -> BinaryExpr.Operator.GREATER;
+            case GREATER -> BinaryExpr.Operator.LESS_EQUALS;
+            case GREATER_EQUALS -> BinaryExpr.Operator.LESS;
+            case EQUALS -> BinaryExpr.Operator.NOT_EQUALS;
+            case NOT_EQUALS -> BinaryExpr.Operator.EQUALS;
+            default -> throw new UnsupportedOperationException("Unsupported operator: " + operator);
+        };
+    }
+
+    /**
+     * The variables of the truth table that appear in the expression, outermost first.
+     */
+    private void collectVariables(Expression e, Set<Expression> variables) {
+        if (domains.containsKey(e)) {
+            variables.add(e);
+            return;
+        }
+        for (Node child : e.getChildNodes()) {
+            if (child instanceof Expression x) {
+                collectVariables(x, variables);
+            }
+        }
+    }
+}
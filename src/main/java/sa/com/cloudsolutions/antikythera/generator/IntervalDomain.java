@@ -0,0 +1,226 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.utils.Pair;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * <p>Chooses the values that the numeric variables of a {@link TruthTable} take.</p>
+ *
+ * <p>A numeric variable used to get every number between the bounds of its domain, and the
+ * bounds come from the largest literal in the condition. Comparing against 10000 meant ten
+ * thousand values for each variable and a table with the product of those. Yet a comparison
+ * with a literal only changes its outcome at the literal: {@code a > 10000} is the same for
+ * every value up to 10000 and for every value after it. So the values taken are the ones just
+ * inside and just outside each literal that the variable is compared with.</p>
+ *
+ * <p>Variables that are compared with each other form a group. Each variable in a group takes
+ * the values around the literals of the whole group, spread out by the size of the group, so
+ * that {@code a > b && b > c && c > 100} can still be satisfied with 103, 102 and 101. A domain
+ * that is narrow to begin with keeps all of its values, and the ends of a wide domain are kept
+ * too, so that variables compared only with each other behave as they did before.</p>
+ *
+ * <p>The comparisons in the condition can not narrow a domain, the values on either side of
+ * them are needed to make the condition true and false. Constraints on the other hand hold for
+ * every row, so values outside the interval that they allow are dropped. The number of values
+ * depends on the number of comparisons and not on the size of the literals.</p>
+ */
+final class IntervalDomain {
+    /**
+     * Domains with at most this many values keep all of them.
+     */
+    static final int DENSE = 16;
+
+    private final Map<Expression, Pair<Object, Object>> variables;
+    /**
+     * The literals that each numeric variable is compared with
+     */
+    private final Map<Expression, List<Long>> literals = new HashMap<>();
+    /**
+     * Links variables that are compared with each other, the root of a group links to itself.
+     */
+    private final Map<Expression, Expression> groups = new HashMap<>();
+    /**
+     * The lowest and highest value that the constraints allow for each variable
+     */
+    private final Map<Expression, long[]> limits = new HashMap<>();
+
+    IntervalDomain(Map<Expression, Pair<Object, Object>> variables) {
+        this.variables = variables;
+        for (Map.Entry<Expression, Pair<Object, Object>> entry : variables.entrySet()) {
+            if (entry.getValue().a instanceof Integer && entry.getValue().b instanceof Integer) {
+                literals.put(entry.getKey(), new ArrayList<>());
+                groups.put(entry.getKey(), entry.getKey());
+            }
+        }
+    }
+
+    /**
+     * Take note of a sub condition. Comparisons of a numeric variable with a literal or with
+     * another numeric variable, and calls to equals with a literal argument are the ones that
+     * count, everything else is ignored.
+     * @param condition one of the sub conditions of the truth table
+     */
+    void addCondition(Expression condition) {
+        if (condition instanceof BinaryExpr b && isComparison(b.getOperator())) {
+            Expression left = b.getLeft();
+            Expression right = b.getRight();
+            Long value;
+            if (literals.containsKey(left) && literals.containsKey(right)) {
+                groups.put(root(left), root(right));
+            } else if (literals.containsKey(left) && (value = literal(right)) != null) {
+                literals.get(left).add(value);
+            } else if (literals.containsKey(right) && (value = literal(left)) != null) {
+                literals.get(right).add(value);
+            }
+        } else if (condition instanceof MethodCallExpr m && m.getNameAsString().equals(TruthTable.EQUALS_CALL)
+                && m.getArguments().size() == 1) {
+            Expression scope = m.getScope().orElse(null);
+            Long value = literal(m.getArgument(0));
+            if (scope != null && literals.containsKey(scope) && value != null) {
+                literals.get(scope).add(value);
+            }
+        }
+    }
+
+    /**
+     * Take note of a constraint, narrowing the interval of the variable.
+     * @param variable the variable that is constrained
+     * @param constraint a comparison of the variable with an integer literal
+     */
+    void addConstraint(Expression variable, BinaryExpr constraint) {
+        if (!literals.containsKey(variable)) {
+            return;
+        }
+        boolean varOnLeft = constraint.getLeft().toString().equals(variable.toString());
+        Long value = literal(varOnLeft ? constraint.getRight() : constraint.getLeft());
+        if (value == null) {
+            return;
+        }
+        long[] limit = limits.computeIfAbsent(variable, k -> new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE});
+        switch (constraint.getOperator()) {
+            case GREATER -> narrow(limit, varOnLeft ? value + 1 : limit[0], varOnLeft ? limit[1] : value - 1);
+            case GREATER_EQUALS -> narrow(limit, varOnLeft ? value : limit[0], varOnLeft ? limit[1] : value);
+            case LESS -> narrow(limit, varOnLeft ? limit[0] : value + 1, varOnLeft ? value - 1 : limit[1]);
+            case LESS_EQUALS -> narrow(limit, varOnLeft ? limit[0] : value, varOnLeft ? value : limit[1]);
+            case EQUALS -> narrow(limit, value, value);
+            default -> {
+                return;
+            }
+        }
+        literals.get(variable).add(value);
+    }
+
+    /**
+     * @return the values for each numeric variable in ascending order. Variables whose
+     *      constraints can not be met get no values at all.
+     */
+    Map<Expression, Object[]> values() {
+        Map<Expression, List<Expression>> members = new HashMap<>();
+        for (Expression variable : groups.keySet()) {
+            members.computeIfAbsent(root(variable), k -> new ArrayList<>()).add(variable);
+        }
+
+        Map<Expression, Object[]> values = new HashMap<>();
+        for (List<Expression> group : members.values()) {
+            int spread = group.size();
+            TreeSet<Long> around = new TreeSet<>();
+            long lowest = Long.MAX_VALUE;
+            for (Expression variable : group) {
+                for (long literal : literals.get(variable)) {
+                    lowest = Math.min(lowest, literal);
+                    for (long d = -spread; d <= spread; d++) {
+                        around.add(literal + d);
+                    }
+                }
+            }
+
+            for (Expression variable : group) {
+                Pair<Object, Object> domain = variables.get(variable);
+                long min = (Integer) domain.a;
+                long max = (Integer) domain.b;
+                TreeSet<Long> candidates = new TreeSet<>(around);
+                if (max - min < DENSE) {
+                    for (long v = min; v <= max; v++) {
+                        candidates.add(v);
+                    }
+                } else {
+                    candidates.add(min);
+                    candidates.add(max);
+                }
+
+                long[] limit = limits.getOrDefault(variable, new long[] {Integer.MIN_VALUE, Integer.MAX_VALUE});
+                long floor = floor(min, lowest, spread, limits.get(variable));
+                if (limit[0] > limit[1]) {
+                    values.put(variable, new Object[0]);
+                } else {
+                    values.put(variable, candidates.subSet(Math.max(floor, limit[0]), true, limit[1], true)
+                            .stream().map(Long::intValue).toArray());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The values just below a literal are only wanted when the literal sits below the domain.
+     * Otherwise {@code a} in {@code a > b && b > 0} would take -2 while its domain starts at 0,
+     * and the first values found to make the condition false would no longer be the ones that
+     * the domain gave before.
+     * @param min the lowest value of the domain
+     * @param lowest the lowest literal of the group
+     * @param spread how far the values around a literal reach
+     * @param limit the interval allowed by the constraints, may be null
+     * @return the lowest value that the variable may take
+     */
+    private static long floor(long min, long lowest, int spread, long[] limit) {
+        long floor = min;
+        if (lowest < min) {
+            floor = lowest - spread;
+        }
+        if (limit != null && limit[0] < floor) {
+            floor = limit[0];
+        }
+        return floor;
+    }
+
+    private Expression root(Expression variable) {
+        Expression parent = groups.get(variable);
+        while (!parent.equals(variable)) {
+            variable = parent;
+            parent = groups.get(variable);
+        }
+        return variable;
+    }
+
+    private static void narrow(long[] limit, long low, long high) {
+        limit[0] = Math.max(limit[0], low);
+        limit[1] = Math.min(limit[1], high);
+    }
+
+    private static boolean isComparison(BinaryExpr.Operator operator) {
+        return switch (operator) {
+            case LESS, GREATER, LESS_EQUALS, GREATER_EQUALS, EQUALS, NOT_EQUALS -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return the value of an integer or long literal, otherwise null
+     */
+    private static Long literal(Expression e) {
+        if (e.isIntegerLiteralExpr()) {
+            return e.asIntegerLiteralExpr().asNumber().longValue();
+        } else if (e.isLongLiteralExpr()) {
+            return e.asLongLiteralExpr().asNumber().longValue();
+        }
+        return null;
+    }
+}
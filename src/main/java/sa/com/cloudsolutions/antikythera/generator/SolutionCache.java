@@ -0,0 +1,253 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.SimpleName;
+import com.github.javaparser.printer.DefaultPrettyPrinterVisitor;
+import com.github.javaparser.printer.configuration.DefaultPrinterConfiguration;
+import com.github.javaparser.printer.configuration.PrinterConfiguration;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <p>Remembers the values that were found to make a condition true or false.</p>
+ *
+ * <p>The same guard is set up again and again. SpringEvaluator solves the combined condition of
+ * a branch on every pass through a method, and methods that share a guard such as a null check
+ * or an isEmpty check on their parameters solve it once more for each method. The truth table
+ * does not care what the variables and methods in a condition are called, only about the shape
+ * of the condition, its literals and its constraints. So the key of the cache is the condition
+ * and the constraints with every identifier renamed in the order in which it first appears:
+ * {@code user != null && user.getName().isEmpty()} and {@code order != null && order.getId().isEmpty()}
+ * share a key.</p>
+ *
+ * <p>The variables that a solution is given for are remembered by their position in the
+ * condition, so a condition that finds the solution gets its own sub expressions back as the
+ * keys, just like the condition that was solved. Conditions with the same key have the same
+ * shape. A variable that is not part of the condition is kept with its identifiers renamed, and
+ * renamed back for each condition that finds it.</p>
+ *
+ * <p>Identifiers containing equals and isEmpty keep their names, because the truth table
+ * treats them specially.</p>
+ *
+ * <p>Only the most recently used solutions are kept, and the cache is cleared at the start of
+ * each run.</p>
+ */
+public final class SolutionCache {
+    /**
+     * The number of solutions that are kept
+     */
+    static final int CAPACITY = 4096;
+    private static final PrinterConfiguration PRINTER = new DefaultPrinterConfiguration();
+
+    private static final Map<String, Optional<List<Solved>>> solutions = Collections.synchronizedMap(
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Optional<List<Solved>>> eldest) {
+                    return size() > CAPACITY;
+                }
+            });
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The value of one variable of a solution.
+     *
+     * @param position the index of the variable among the expressions of the condition, in the
+     *                 order in which findAll visits them, or -1 if it is not part of the condition
+     * @param renamed the variable with its identifiers renamed
+     * @param value the value of the variable
+     */
+    private record Solved(int position, Expression renamed, Object value) {}
+
+    /**
+     * Prints an expression with the identifiers renamed, adding new names as needed.
+     */
+    private static final class RenamingPrinter extends DefaultPrettyPrinterVisitor {
+        private final Map<String, String> names;
+
+        RenamingPrinter(Map<String, String> names) {
+            super(PRINTER);
+            this.names = names;
+        }
+
+        @Override
+        public void visit(SimpleName n, Void arg) {
+            String identifier = n.getIdentifier();
+            printer.print(isRenamed(identifier)
+                    ? names.computeIfAbsent(identifier, k -> "v" + names.size())
+                    : identifier);
+        }
+    }
+
+    private SolutionCache() {}
+
+    /**
+     * Find the values for a condition in the cache, solving it if it is not there.
+     * @param condition the condition
+     * @param constraints the constraints on the variables of the condition
+     * @param allowNullInputs whether null values are considered
+     * @param desiredState true or false
+     * @param solver finds the values when they are not in the cache
+     * @return the values, with the variables of this condition as the keys
+     */
+    static Optional<Map<Expression, Object>> solve(Expression condition, Map<Expression, List<Expression>> constraints,
+                                                   boolean allowNullInputs, boolean desiredState,
+                                                   Supplier<Optional<Map<Expression, Object>>> solver) {
+        Map<String, String> names = new HashMap<>();
+        String key = key(condition, constraints, allowNullInputs, desiredState, names);
+
+        Optional<List<Solved>> cached = solutions.get(key);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached.map(values -> restore(condition, values, names));
+        }
+
+        misses.incrementAndGet();
+        Optional<Map<Expression, Object>> solved = solver.get();
+        solutions.put(key, solved.map(values -> store(condition, values, names)));
+        return solved;
+    }
+
+    private static List<Solved> store(Expression condition, Map<Expression, Object> values, Map<String, String> names) {
+        Map<Expression, Integer> positions = new IdentityHashMap<>();
+        List<Expression> expressions = condition.findAll(Expression.class);
+        for (int i = 0; i < expressions.size(); i++) {
+            positions.put(expressions.get(i), i);
+        }
+
+        List<Solved> solved = new ArrayList<>();
+        for (Map.Entry<Expression, Object> entry : values.entrySet()) {
+            Integer position = positions.get(entry.getKey());
+            solved.add(new Solved(position == null ? -1 : position,
+                    rename(entry.getKey(), names), copy(entry.getValue())));
+        }
+        return solved;
+    }
+
+    private static Map<Expression, Object> restore(Expression condition, List<Solved> solved, Map<String, String> names) {
+        List<Expression> expressions = null;
+        Map<String, String> original = null;
+        Map<Expression, Object> values = new HashMap<>();
+        for (Solved s : solved) {
+            Expression variable = null;
+            if (s.position() >= 0) {
+                if (expressions == null) {
+                    expressions = condition.findAll(Expression.class);
+                }
+                if (s.position() < expressions.size()
+                        && expressions.get(s.position()).getClass() == s.renamed().getClass()) {
+                    variable = expressions.get(s.position());
+                }
+            }
+            if (variable == null) {
+                if (original == null) {
+                    original = new HashMap<>();
+                    for (Map.Entry<String, String> name : names.entrySet()) {
+                        original.put(name.getValue(), name.getKey());
+                    }
+                }
+                variable = rename(s.renamed(), original);
+            }
+            values.put(variable, copy(s.value()));
+        }
+        return values;
+    }
+
+    /**
+     * Collections are copied, so that a solution that is changed by one caller is not changed
+     * for the next.
+     */
+    private static Object copy(Object value) {
+        return switch (value) {
+            case List<?> list -> new ArrayList<>(list);
+            case Set<?> set -> new HashSet<>(set);
+            case Map<?, ?> map -> new HashMap<>(map);
+            case null, default -> value;
+        };
+    }
+
+    private static String key(Expression condition, Map<Expression, List<Expression>> constraints,
+                              boolean allowNullInputs, boolean desiredState, Map<String, String> names) {
+        StringBuilder key = new StringBuilder();
+        key.append(desiredState).append(' ').append(allowNullInputs).append(' ')
+                .append(canonical(condition, names));
+
+        /* the order of the constraints makes no difference, the names they end up with do */
+        List<String> canonicalConstraints = new ArrayList<>();
+        for (Map.Entry<Expression, List<Expression>> entry : constraints.entrySet()) {
+            String variable = canonical(entry.getKey(), names);
+            for (Expression constraint : entry.getValue()) {
+                canonicalConstraints.add(variable + ':' + canonical(constraint, names));
+            }
+        }
+        canonicalConstraints.sort(null);
+        for (String constraint : canonicalConstraints) {
+            key.append('\n').append(constraint);
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the expression printed with its identifiers renamed, adding new names as needed
+     */
+    private static String canonical(Expression e, Map<String, String> names) {
+        RenamingPrinter printer = new RenamingPrinter(names);
+        e.accept(printer, null);
+        return printer.toString();
+    }
+
+    /**
+     * @return a copy of the expression with the identifiers that are in the map renamed
+     */
+    private static Expression rename(Expression e, Map<String, String> names) {
+        Expression copy = e.clone();
+        for (SimpleName n : copy.findAll(SimpleName.class)) {
+            String name = names.get(n.getIdentifier());
+            if (name != null) {
+                n.setIdentifier(name);
+            }
+        }
+        return copy;
+    }
+
+    private static boolean isRenamed(String identifier) {
+        return !identifier.contains(TruthTable.EQUALS_CALL) && !identifier.equals(TruthTable.IS_EMPTY);
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return the fraction of lookups that were found in the cache, 0 if there have been none.
+     */
+    public static double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    /**
+     * Forget all the solutions and reset the counters.
+     */
+    public static void clear() {
+        solutions.clear();
+        hits.set(0);
+        misses.set(0);
+    }
+}
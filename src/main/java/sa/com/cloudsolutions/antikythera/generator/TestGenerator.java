@@ -57,6 +57,13 @@ public abstract class TestGenerator {
         whenThen.add(expr);
     }
 
+    /**
+     * @return the Mockito.when().then() expressions that will be added to the next test
+     */
+    public static List<Expression> getWhenThen() {
+        return whenThen;
+    }
+
     public static void addImport(ImportDeclaration s) {
         imports.add(s);
     }
@@ -16,6 +16,7 @@ import sa.com.cloudsolutions.antikythera.evaluator.Variable;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -23,6 +24,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * <p>Generate (and print) truth tables for given conditionals</p>
@@ -59,9 +65,34 @@ public class TruthTable {
      */
     private final HashMap<Expression, List<Expression>> constraints;
     /**
-     * The matrix of values for the variables and the result of the condition
+     * The matrix of values for the variables and the result of the condition.
+     * Each row holds the index into the domain of each variable in {@link #variableList},
+     * followed by 1 if the condition is true for that row and 0 if it is false.
      */
-    private List<Map<Expression, Object>> table;
+    private List<int[]> table;
+
+    /**
+     * The variables in the order in which they appear in a row
+     */
+    private Expression[] variableList;
+    /**
+     * The domain of each variable in the variableList
+     */
+    private Pair<Object, Object>[] domains;
+    /**
+     * The number of values in the domain of each variable in the variableList
+     */
+    private int[] widths;
+    /**
+     * The values in the domain of each variable, boxed ahead of time. Numeric variables take the
+     * values chosen by an {@link IntervalDomain}.
+     */
+    private Object[][] domainValues;
+    /**
+     * The condition and the constraints compiled for evaluating rows, or null if the condition
+     * can only be evaluated by {@link #evaluateCondition(Expression, Map)}
+     */
+    private CompiledCondition compiled;
 
     /**
      * Should we consider null values when generating the truth table?
@@ -70,6 +101,11 @@ public class TruthTable {
      */
     boolean allowNullInputs = false;
 
+    /**
+     * Have the variables and their domains been worked out for the current condition?
+     */
+    private boolean collected = false;
+
     public TruthTable() {
         this.variables = new HashMap<>();
         this.conditions = new HashSet<>();
@@ -99,8 +135,20 @@ public class TruthTable {
                 || binaryExpr.getOperator() == BinaryExpr.Operator.GREATER_EQUALS;
     }
 
+    /**
+     * Is the node an operator that takes booleans? Its operands are conditions in their own right
+     * and are not compared with each other, so they do not get a numeric domain.
+     */
+    private static boolean isLogical(Node node) {
+        if (node instanceof BinaryExpr b) {
+            return b.getOperator() == BinaryExpr.Operator.AND || b.getOperator() == BinaryExpr.Operator.OR;
+        }
+        return node instanceof UnaryExpr u && u.getOperator() == UnaryExpr.Operator.LOGICAL_COMPLEMENT;
+    }
+
     public void setAllowNullInputs(boolean allowNullInputs) {
         this.allowNullInputs = allowNullInputs;
+        this.collected = false;
     }
 
     /**
@@ -140,6 +188,52 @@ public class TruthTable {
      * Generates a truth table for the given condition.
      */
     public void generateTruthTable() {
+        collectVariables();
+        generateCombinations();
+    }
+
+    /**
+     * <p>Find one set of values that makes the condition true or false.</p>
+     *
+     * <p>The truth table does not need to be generated for this. The values are worked out from
+     * the condition by a {@link ConditionSolver}, and when there is no such set of values that
+     * is known without trying every combination. Only when the condition is beyond the solver
+     * are the combinations tried, and then only until the first one that matches.</p>
+     *
+     * <p>Conditions that only differ in the names of their variables share their solution through
+     * the {@link SolutionCache}.</p>
+     *
+     * @param desiredState either true or false
+     * @return the values for the variables, or empty if no combination of values gives the
+     *      desired state.
+     */
+    public Optional<Map<Expression, Object>> solve(boolean desiredState) {
+        return SolutionCache.solve(condition, constraints, allowNullInputs, desiredState,
+                () -> findSolution(desiredState));
+    }
+
+    private Optional<Map<Expression, Object>> findSolution(boolean desiredState) {
+        collectVariables();
+        try {
+            return new ConditionSolver(variables, constraints, this::evaluateCondition).solve(condition, desiredState,
+                    row -> satisfiesConstraints(row) && isTrue(evaluateCondition(condition, row)) == desiredState);
+        } catch (UnsupportedOperationException e) {
+            return streamValuesForCondition(desiredState).findFirst();
+        }
+    }
+
+    /**
+     * Find the variables in the condition and the domain of values for each of them.
+     * This is only done once for a given condition and set of constraints.
+     */
+    @SuppressWarnings("unchecked")
+    private void collectVariables() {
+        if (collected) {
+            return;
+        }
+        table = null;
+        conditions.clear();
+        variables.clear();
         this.condition.accept(new ConditionCollector(), conditions);
 
         // If the condition contains actual null literals (not just comparisons with null),
@@ -156,9 +250,38 @@ public class TruthTable {
         // Restore the original setting after domain adjustment
         this.allowNullInputs = oldState;
 
-        Expression[] variableList = variables.keySet().toArray(new Expression[0]);
-        table = new ArrayList<>();
-        generateCombinations(variableList);
+        variableList = variables.keySet().toArray(new Expression[0]);
+        domains = variables.values().toArray(new Pair[0]);
+        widths = new int[variableList.length];
+        domainValues = new Object[variableList.length][];
+        Map<Expression, Object[]> numeric = numericValues();
+        Map<Expression, Integer> index = new HashMap<>();
+        for (int i = 0; i < widths.length; i++) {
+            index.put(variableList[i], i);
+            domainValues[i] = numeric.getOrDefault(variableList[i], new Object[] {domains[i].a, domains[i].b});
+            widths[i] = domainValues[i].length;
+        }
+        try {
+            compiled = CompiledCondition.compile(condition, index, constraints);
+        } catch (UnsupportedOperationException e) {
+            compiled = null;
+        }
+        collected = true;
+    }
+
+    private Map<Expression, Object[]> numericValues() {
+        IntervalDomain domain = new IntervalDomain(variables);
+        for (Expression expr : conditions) {
+            domain.addCondition(expr);
+        }
+        for (Map.Entry<Expression, List<Expression>> constraint : constraints.entrySet()) {
+            for (Expression expr : constraint.getValue()) {
+                if (expr instanceof BinaryExpr binaryExpr) {
+                    domain.addConstraint(constraint.getKey(), binaryExpr);
+                }
+            }
+        }
+        return domain.values();
     }
 
     /**
@@ -202,21 +325,14 @@ public class TruthTable {
 
     /**
      * Creates and fills the truth table.
-     * @param variableList all the variables in the conditional.
      */
-    private void generateCombinations(Expression[] variableList) {
-        Map<Expression, Interval> numericRanges = collectNumericRanges(variableList);
-        int totalCombinations = calculateTotalCombinations(variableList, numericRanges);
+    private void generateCombinations() {
         table = new ArrayList<>();
-
-        for (int i = 0; i < totalCombinations; i++) {
-            Map<Expression, Object> truthValues = generateRowValues(variableList, numericRanges, i);
-            // Only add combinations that satisfy all constraints
-            if (satisfiesConstraints(truthValues)) {
-                Object result = evaluateCondition(condition, truthValues);
-                truthValues.put(RESULT, isTrue(result));
-                table.add(truthValues);
-            }
+        Rows rows = new Rows();
+        while (rows.next()) {
+            int[] row = Arrays.copyOf(rows.indices, rows.indices.length + 1);
+            row[rows.indices.length] = rows.result ? 1 : 0;
+            table.add(row);
         }
     }
 
@@ -265,91 +381,6 @@ public class TruthTable {
         };
     }
 
-    /**
-     * Depending on the number of variables and their domain, the number of possibilities can change.
-     * @param variableList all the variables in the truth table.
-     * @param domain the domain of values for integer literals
-     * @return the total number of combinations that are available to us.
-     */
-    private int calculateTotalCombinations(Expression[] variableList,
-            Map<Expression, Interval> domain) {
-        int totalCombinations = 1;
-        for (Expression v : variableList) {
-            if (domain.containsKey(v)) {
-                totalCombinations *= domain.get(v).width;
-            } else {
-                totalCombinations *= 2;
-            }
-        }
-        return totalCombinations;
-    }
-    /**
-     * <p>Identifies numeric variables from the list and maps them to their upper bounds.</p>
-     *
-     * <p></p>Numeric variables need special treatment and cannot be just treated as [0,1] because
-     * certain inequalities can only be filled by considering a wider domain of numbers</p>
-     *
-     * For example:
-     * - For condition "a > b && b > c" with domain [0,2]:
-     *   Returns map with {a->2, b->2, c->2}
-     * - For condition "a && b" (boolean variables):
-     *   Returns empty map
-     *
-     * @param variableList Array of Expression objects representing variables
-     * @return Map of numeric variables to their upper bounds
-     */
-
-    private Map<Expression, Interval> collectNumericRanges(Expression[] variableList) {
-        Map<Expression, Interval> numericRanges = new HashMap<>();
-        for (Expression v : variableList) {
-            Pair<Object, Object> bounds = variables.get(v);
-            if (bounds.a instanceof Integer min && bounds.b instanceof Integer max) {
-                numericRanges.put(v, new Interval(min, max));
-            }
-        }
-        return numericRanges;
-    }
-
-    /**
-     * <p>Generates values for each variable in a single row of the truth table.</p>
-     *
-     * <p>This method converts a numerical combination into specific values for each variable by:
-     * 1. For numeric variables (with extended domains):
-     *    - Uses modulo arithmetic to select a value within the variable's range
-     *    - Example: For range [0,5], combination 7 with product 2 gives (7/2)%6 = 3
-     * 2. For non-numeric variables (typically boolean or string):
-     *    - Uses binary choice (0 or 1) to select between lower and upper bounds
-     *    - Example: For boolean, combination 3 with product 2 gives (3/2)%2 = 1 -> true</p>
-     *
-     * <p>The 'product' variable maintains the stride length for each variable position, ensuring
-     * all possible combinations are covered systematically.</p>
-     *
-     * @param variableList Array of variables to assign values to
-     * @param domain Map of variables to their maximum values (for numeric variables)
-     * @param combination Current combination number being processed
-     * @return Map of variable expressions to their assigned values
-     */
-    private Map<Expression, Object> generateRowValues(Expression[] variableList,
-                                                      Map<Expression, Interval> domain, int combination) {
-        Map<Expression, Object> truthValues = new HashMap<>();
-        int product = 1;
-
-        for (Expression v : variableList) {
-            if (domain.containsKey(v)) {
-                Interval range = domain.get(v);
-                int value = range.min + (combination / product) % range.width;
-                truthValues.put(v, value);
-                product *= range.width;
-            } else {
-                Pair<Object, Object> bounds = variables.get(v);
-                boolean value = ((combination / product) % 2) == 1;
-                truthValues.put(v, value ? bounds.b : bounds.a);
-                product *= 2;
-            }
-        }
-        return truthValues;
-    }
-
     private void adjustDomain() {
         if (isDefaultDomain()) {
             int maxLiteral = findMaxIntegerLiteral();
@@ -488,6 +519,7 @@ public class TruthTable {
     private void writeTruthTable(PrintStream out) {
         out.println("Truth Table for condition: " + condition);
 
+        List<Map<Expression, Object>> table = getTable();
         if (!table.isEmpty()) {
             Map<Expression, Object> firstRow = table.get(0);
             final String FORMAT = "%-11s";
@@ -532,9 +564,7 @@ public class TruthTable {
         String state = desiredState ? "true" : "false";
         out.println("\nValues to make the condition " + state + " for: " + condition);
 
-        List<Map<Expression, Object>> values = findValuesForCondition(desiredState);
-
-        values.stream().findFirst().ifPresentOrElse(
+        streamValuesForCondition(desiredState).findFirst().ifPresentOrElse(
                 row -> {
                     // Sort the keys alphabetically
                     List<String> sortedKeys = row.keySet().stream()
@@ -554,25 +584,73 @@ public class TruthTable {
     /**
      * Find the values that make the condition true or false.
      * Often there will be more than one combination of values.
+     *
      * @param desiredState either true or false
      * @return a list of maps containing the values that make the condition true or false
      */
     public List<Map<Expression, Object>> findValuesForCondition(boolean desiredState) {
-        List<Map<Expression, Object>> result = new ArrayList<>();
-
-        for (Map<Expression, Object> row : table) {
-            if ((boolean) row.get(RESULT) == desiredState) {
-                Map<Expression, Object> copy = new HashMap<>();
-                for (Map.Entry<Expression, Object> entry : row.entrySet()) {
-                    if (!entry.getKey().equals(RESULT)) {
-                        copy.put(entry.getKey(), entry.getValue());
+        return streamValuesForCondition(desiredState).toList();
+    }
+
+    /**
+     * Find at most limit combinations of values that make the condition true or false.
+     *
+     * @param desiredState either true or false
+     * @param limit the largest number of combinations to return
+     * @return a list of maps containing the values that make the condition true or false
+     */
+    public List<Map<Expression, Object>> findValuesForCondition(boolean desiredState, int limit) {
+        return streamValuesForCondition(desiredState).limit(limit).toList();
+    }
+
+    /**
+     * <p>The values that make the condition true or false, in the same order as the rows of the
+     * truth table.</p>
+     *
+     * <p>If the truth table has been generated its rows are used. Otherwise the combinations are
+     * only tried as the stream is consumed, so that finding the first match does not cost as much
+     * as generating the table.</p>
+     *
+     * @param desiredState either true or false
+     * @return a stream of maps containing the values that make the condition true or false
+     */
+    public Stream<Map<Expression, Object>> streamValuesForCondition(boolean desiredState) {
+        collectVariables();
+        if (table != null) {
+            int wanted = desiredState ? 1 : 0;
+            return table.stream().filter(row -> row[variableList.length] == wanted).map(this::toMap);
+        }
+
+        Rows rows = new Rows();
+        return StreamSupport.stream(new Spliterators.AbstractSpliterator<Map<Expression, Object>>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super Map<Expression, Object>> action) {
+                while (rows.next()) {
+                    if (rows.result == desiredState) {
+                        action.accept(toMap(rows.indices));
+                        return true;
                     }
                 }
-                result.add(copy);
+                return false;
             }
+        }, false);
+    }
+
+    /**
+     * @param indices an index into the domain of each variable
+     * @return the values of the variables
+     */
+    private Map<Expression, Object> toMap(int[] indices) {
+        Map<Expression, Object> values = new HashMap<>();
+        for (int i = 0; i < variableList.length; i++) {
+            values.put(variableList[i], valueAt(i, indices[i]));
         }
+        return values;
+    }
 
-        return result;
+    private Object valueAt(int variable, int index) {
+        return domainValues[variable][index];
     }
 
     /**
@@ -582,7 +660,7 @@ public class TruthTable {
      * @param truthValues The truth values for the variables.
      * @return The result of the evaluation.
      */
-    private Object evaluateCondition(Expression condition, Map<Expression, Object> truthValues) {
+    Object evaluateCondition(Expression condition, Map<Expression, Object> truthValues) {
         if (condition.isBinaryExpr()) {
             return evaluateBinaryExpression(condition.asBinaryExpr(), truthValues);
         } else if (condition.isUnaryExpr()) {
@@ -708,16 +786,31 @@ private Object evaluateBinaryExpression(BinaryExpr binaryExpr, Map<Expression, O
         return truthValues.get(expr);
     }
 
+    /**
+     * @return the rows of the truth table with the result of the condition under {@link #RESULT},
+     *      or null if the table has not been generated.
+     */
     public List<Map<Expression, Object>> getTable() {
-        return table;
+        if (table == null) {
+            return null;
+        }
+        List<Map<Expression, Object>> rows = new ArrayList<>(table.size());
+        for (int[] row : table) {
+            Map<Expression, Object> values = toMap(row);
+            values.put(RESULT, row[variableList.length] == 1);
+            rows.add(values);
+        }
+        return rows;
     }
 
     public void addConstraint(NameExpr name, BinaryExpr constraint) {
         constraints.computeIfAbsent(name, k -> new ArrayList<>()).add(constraint);
+        collected = false;
     }
 
     public void setCondition(Expression condition) {
         this.condition = condition;
+        this.collected = false;
     }
 
     /**
@@ -749,7 +842,11 @@ private Object evaluateBinaryExpression(BinaryExpr binaryExpr, Map<Expression, O
             if (parent instanceof MethodCallExpr mce && mce.getNameAsString().equals(EQUALS_CALL)) {
                 findDomain(n, collector, mce.getArgument(0));
             } else if (parent instanceof BinaryExpr b) {
-                findDomain(n, collector, b.getLeft().equals(n) ? b.getRight() : b.getLeft());
+                if (isLogical(b)) {
+                    collector.put(n, new Pair<>(true, false));
+                } else {
+                    findDomain(n, collector, b.getLeft().equals(n) ? b.getRight() : b.getLeft());
+                }
             } else if (!(parent instanceof FieldAccessExpr || parent instanceof MethodCallExpr)) {
                 collector.put(n, new Pair<>(false, true));
             }
@@ -913,7 +1010,7 @@ private Object evaluateBinaryExpression(BinaryExpr binaryExpr, Map<Expression, O
                 }
             } else if (!m.getNameAsString().equals(EQUALS_CALL)) {
                 Optional<Node> parent = m.getParentNode();
-                if (parent.isPresent() && parent.get() instanceof BinaryExpr b) {
+                if (parent.isPresent() && parent.get() instanceof BinaryExpr b && !isLogical(b)) {
                     if (b.getLeft().equals(m)) {
                         findDomain(m, collector, b.getRight());
                     } else {
@@ -928,7 +1025,7 @@ private Object evaluateBinaryExpression(BinaryExpr binaryExpr, Map<Expression, O
 
         @Override
         public void visit(FieldAccessExpr f, HashMap<Expression, Pair<Object, Object>> collector) {
-            if(isInequalityPresent()) {
+            if(isInequalityPresent() && !f.getParentNode().map(TruthTable::isLogical).orElse(false)) {
                 collector.put(f, new Pair<>(0, 1));
             }
             else {
@@ -979,15 +1076,74 @@ private Object evaluateBinaryExpression(BinaryExpr binaryExpr, Map<Expression, O
         }
     }
 
+    /**
+     * <p>Goes through the combinations of values one row at a time.</p>
+     *
+     * <p>A row is an index into the domain of each variable. Numeric variables have an index for
+     * each value chosen by the {@link IntervalDomain} while the others choose between the lower
+     * and upper bound.
+     * The indices are counted up like the digits of an odometer with the first variable changing
+     * fastest, and only the variable whose index changed is updated in the array of values that
+     * the compiled condition is evaluated against, so a row does not need a map of its own.</p>
+     */
+    private class Rows {
+        final int[] indices = new int[variableList.length];
+        final Object[] values = new Object[variableList.length];
+        boolean result;
+        private boolean started;
+
+        /**
+         * Move to the next row that satisfies the constraints and evaluate the condition for it.
+         * @return false when there are no more rows
+         */
+        boolean next() {
+            while (advance()) {
+                if (compiled != null) {
+                    if (compiled.satisfiesConstraints(values)) {
+                        result = compiled.test(values);
+                        return true;
+                    }
+                } else {
+                    Map<Expression, Object> row = toMap(indices);
+                    if (satisfiesConstraints(row)) {
+                        result = isTrue(evaluateCondition(condition, row));
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private boolean advance() {
+            if (!started) {
+                started = true;
+                for (int i = 0; i < indices.length; i++) {
+                    if (widths[i] <= 0) {
+                        return false;
+                    }
+                    values[i] = valueAt(i, 0);
+                }
+                return true;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                if (++indices[i] < widths[i]) {
+                    values[i] = valueAt(i, indices[i]);
+                    return true;
+                }
+                indices[i] = 0;
+                values[i] = valueAt(i, 0);
+            }
+            return false;
+        }
+    }
+
     private static class Interval {
         final int min;
         final int max;
-        final int width;
 
         Interval(int min, int max) {
             this.min = min;
             this.max = max;
-            this.width = max - min + 1;
         }
     }
 }
@@ -30,15 +30,17 @@ import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.Parameter;
 import com.github.javaparser.ast.expr.AnnotationExpr;
 import com.github.javaparser.symbolsolver.JavaSymbolSolver;
-import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
 import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.net.URL;
@@ -50,11 +52,20 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import sa.com.cloudsolutions.antikythera.depsolver.InterfaceSolver;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+import sa.com.cloudsolutions.antikythera.evaluator.InlineCache;
 import sa.com.cloudsolutions.antikythera.evaluator.Reflect;
 import sa.com.cloudsolutions.antikythera.evaluator.ReflectionArguments;
 import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
@@ -78,28 +89,50 @@ public class AbstractCompiler {
      * amongst all instances of the class. Others like the CompilationUnit property
      * are specific to each instance.
      */
+    private static final Logger logger = LoggerFactory.getLogger(AbstractCompiler.class);
     public static final String SUFFIX = ".java";
 
-    private static JavaParser javaParser;
+    /**
+     * Results of findType for names that are not declared in the compilation unit itself.
+     * The key of the outer map is the package and the imports of the compilation unit, the inner
+     * map is keyed by the class name. Names that could not be resolved are stored as empty.
+     */
+    private static final Map<String, Map<String, Optional<TypeWrapper>>> typeCache = new ConcurrentHashMap<>();
+    /**
+     * The entries of the typeCache that depend on a type, keyed by the simple and the fully
+     * qualified names of the type.
+     */
+    private static final Map<String, Set<TypeCacheEntry>> typeCacheDependents = new ConcurrentHashMap<>();
+    /**
+     * The compilation unit most recently compiled from each relative path. Weakly held, a unit
+     * that has been collected has nothing left in the caches that depends on it.
+     */
+    private static final Map<String, WeakReference<CompilationUnit>> compiledPaths = new ConcurrentHashMap<>();
+
+    private record TypeCacheEntry(String imports, String className) {}
+
+    /**
+     * JavaParser instances are not thread safe, so each thread that compiles source code gets
+     * its own parser. All of them share the same configuration and symbol resolver.
+     */
+    private static final ThreadLocal<JavaParser> javaParser = new ThreadLocal<>();
+    private static ParserConfiguration parserConfiguration;
     protected static JavaSymbolSolver symbolResolver;
-    protected static CombinedTypeSolver combinedTypeSolver;
+    protected static RoutingTypeSolver typeSolver;
     protected static ArrayList<JarTypeSolver> jarSolvers;
     protected static ClassLoader loader;
     protected CompilationUnit cu;
     protected String className;
 
     protected AbstractCompiler() throws IOException {
-        if (combinedTypeSolver == null) {
+        if (typeSolver == null) {
             setupParser();
         }
     }
 
     protected static void setupParser() throws IOException {
-        combinedTypeSolver = new CombinedTypeSolver();
-        combinedTypeSolver.add(new ReflectionTypeSolver());
-        combinedTypeSolver.add(new JavaParserTypeSolver(Settings.getBasePath()));
-        jarSolvers = new ArrayList<>();
-
+        clearTypeCache();
+        AntikytheraRunTime.configureRetention(Settings.getProperty(Settings.RETAINED_UNITS, Integer.class).orElse(0));
         Set<String> jarFiles = new HashSet<>();
         List<URL> urls = new ArrayList<>();
         for (String s : Settings.getJarFiles()) {
@@ -111,23 +144,64 @@ public class AbstractCompiler {
             urls.add(Paths.get(s).toUri().toURL());
         }
 
+        loader = new URLClassLoader(urls.toArray(new URL[0]),
+                loader == null ? AbstractCompiler.class.getClassLoader() : loader);
+        ClassIndex.build(jarFiles);
+
+        /*
+         * The reflection type solver only deals with the java and javax packages. Source folders
+         * and jars are routed by the packages found in them, if those cannot be determined the
+         * solver will be consulted for every name.
+         */
+        typeSolver = new RoutingTypeSolver();
+        typeSolver.add(new ReflectionTypeSolver(), List.of("java", "javax"));
+        addSourceSolver(Settings.getBasePath());
+        jarSolvers = new ArrayList<>();
+
         for (String jarFile : jarFiles) {
             JarTypeSolver jarSolver = new JarTypeSolver(jarFile);
             jarSolvers.add(jarSolver);
-            combinedTypeSolver.add(jarSolver);
+            Optional<Set<String>> packages = ClassIndex.getPackages(jarFile);
+            if (packages.isPresent()) {
+                typeSolver.add(jarSolver, packages.get());
+            } else {
+                typeSolver.add(jarSolver);
+            }
         }
 
-        loader = new URLClassLoader(urls.toArray(new URL[0]),
-                loader == null ? AbstractCompiler.class.getClassLoader() : loader);
         Collection<String> finch = Settings.getPropertyList("finch", String.class);
 
         for (String path : finch) {
-            combinedTypeSolver.add(new JavaParserTypeSolver(path));
+            addSourceSolver(path);
         }
 
-        symbolResolver = new JavaSymbolSolver(combinedTypeSolver);
-        ParserConfiguration parserConfiguration = new ParserConfiguration().setSymbolResolver(symbolResolver);
-        javaParser = new JavaParser(parserConfiguration);
+        symbolResolver = new JavaSymbolSolver(typeSolver);
+        parserConfiguration = new ParserConfiguration().setSymbolResolver(symbolResolver);
+    }
+
+    private static void addSourceSolver(String path) {
+        JavaParserTypeSolver solver = new JavaParserTypeSolver(path);
+        try {
+            typeSolver.add(solver, RoutingTypeSolver.sourcePackages(Paths.get(path)));
+        } catch (IOException | UncheckedIOException e) {
+            logger.debug("Could not list the packages in {}", path);
+            typeSolver.add(solver);
+        }
+    }
+
+    /**
+     * Get the parser for the current thread.
+     * A new parser is created if this thread has not used one before or if the parser
+     * configuration has been replaced by a call to reset()
+     * @return a JavaParser that is safe to use on the calling thread.
+     */
+    private static JavaParser parser() {
+        JavaParser p = javaParser.get();
+        if (p == null || p.getParserConfiguration() != parserConfiguration) {
+            p = new JavaParser(parserConfiguration);
+            javaParser.set(p);
+        }
+        return p;
     }
 
     /**
@@ -160,6 +234,17 @@ public class AbstractCompiler {
     }
 
     public static Class<?> loadClass(String resolvedClass) throws ClassNotFoundException {
+        if (!ClassIndex.mayExist(resolvedClass)) {
+            /*
+             * Classes defined at run time are in no jar, the class loader still has the last word.
+             */
+            Class<?> cls = loader.loadClass(resolvedClass);
+            ClassIndex.register(resolvedClass);
+            return cls;
+        }
+        if (ClassIndex.isDependencyClass(resolvedClass)) {
+            return loader.loadClass(resolvedClass);
+        }
         try {
             return Class.forName(resolvedClass);
         } catch (ClassNotFoundException cnf) {
@@ -250,24 +335,75 @@ public class AbstractCompiler {
             return true;
         }
 
+        cu = parse(relativePath);
+        cache(cu, relativePath);
+        return false;
+    }
+
+    private static CompilationUnit parse(String relativePath) throws FileNotFoundException {
         Path sourcePath = Paths.get(Settings.getBasePath(), relativePath);
 
         File file = sourcePath.toFile();
 
         // Proceed with parsing the controller file
+        if (ParseCache.isEnabled()) {
+            return parseWithCache(relativePath, file);
+        }
         FileInputStream in = new FileInputStream(file);
-        cu = javaParser.parse(in).getResult().orElseThrow(() -> new IllegalStateException("Parse error"));
-        cache(cu);
-        return false;
+        return parser().parse(in).getResult().orElseThrow(() -> new IllegalStateException("Parse error"));
     }
 
-    private void cache(CompilationUnit cu) {
+    /**
+     * Parse a source file again, after the compilation unit that it produced earlier has been
+     * evicted from memory.
+     *
+     * @param relativePath a path name relative to the base path of the application.
+     * @return the new compilation unit
+     * @throws IOException when the source code cannot be read
+     */
+    public static CompilationUnit reload(String relativePath) throws IOException {
+        AbstractCompiler compiler = new AbstractCompiler();
+        compiler.className = pathToClass(relativePath);
+        compiler.cu = parse(relativePath);
+        compiler.cache(compiler.cu, relativePath);
+        return compiler.cu;
+    }
+
+    private static CompilationUnit parseWithCache(String relativePath, File file) throws FileNotFoundException {
+        byte[] source;
+        try {
+            source = Files.readAllBytes(file.toPath());
+        } catch (IOException e) {
+            FileNotFoundException fnf = new FileNotFoundException(file.getPath());
+            fnf.initCause(e);
+            throw fnf;
+        }
+
+        Optional<CompilationUnit> cached = ParseCache.load(relativePath, source);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        CompilationUnit parsed = parser().parse(new ByteArrayInputStream(source)).getResult()
+                .orElseThrow(() -> new IllegalStateException("Parse error"));
+        ParseCache.store(relativePath, source, parsed);
+        return parsed;
+    }
+
+    private void cache(CompilationUnit cu, String relativePath) {
+        CompilationUnitIndex.attach(cu);
+        WeakReference<CompilationUnit> previous = compiledPaths.put(relativePath, new WeakReference<>(cu));
+        CompilationUnit old = previous == null ? null : previous.get();
+        if (old != null && old != cu) {
+            invalidate(old);
+        }
+        /* names that could not be found before may refer to the types of this unit now */
+        invalidateTypes(CompilationUnitIndex.of(cu).getTypeNames(), true);
         for (TypeDeclaration<?> type : cu.getTypes()) {
-            findContainedTypes(type, cu);
+            findContainedTypes(type, cu, relativePath);
         }
     }
 
-    private void findContainedTypes(TypeDeclaration<?> declaration, CompilationUnit cu) {
+    private void findContainedTypes(TypeDeclaration<?> declaration, CompilationUnit cu, String relativePath) {
         for(TypeDeclaration<?> type : declaration.findAll(TypeDeclaration.class)) {
             TypeWrapper typeWrapper = new TypeWrapper(type);
             if(type.isAnnotationPresent("Service")) {
@@ -285,11 +421,10 @@ public class AbstractCompiler {
             }
             type.getFullyQualifiedName().ifPresent(name -> {
                 AntikytheraRunTime.addType(name, typeWrapper);
-                AntikytheraRunTime.addCompilationUnit(name, cu);
-
+                AntikytheraRunTime.addCompilationUnit(name, cu, relativePath);
             });
             if (!type.equals(declaration)) {
-                findContainedTypes(type, cu);
+                findContainedTypes(type, cu, relativePath);
             }
         }
     }
@@ -339,7 +474,7 @@ public class AbstractCompiler {
     }
 
     protected JavaParser getJavaParser() {
-        return javaParser;
+        return parser();
     }
 
     /**
@@ -369,6 +504,10 @@ public class AbstractCompiler {
      * @return An optional of the type declaration
      */
     public static Optional<TypeDeclaration<?>> getMatchingType(CompilationUnit cu, String className) {
+        CompilationUnitIndex index = CompilationUnitIndex.of(cu);
+        if (index != null) {
+            return Optional.ofNullable(index.findType(className));
+        }
         for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
             if (type.getNameAsString().equals(className)
                     || className.equals(type.getFullyQualifiedName().orElse(null))) {
@@ -511,21 +650,124 @@ public class AbstractCompiler {
         return findType(cu, type.asString());
     }
 
+    /**
+     * <p>Finds the type that the class name refers to, from the point of view of the given
+     * compilation unit.</p>
+     *
+     * Apart from types declared in the compilation unit itself, the outcome of this lookup only
+     * depends on the package and the imports of the compilation unit. So it's cached against
+     * those, including the lookups that failed, because the class loader based fallbacks are
+     * expensive when they miss. When a compilation unit is compiled again, or evicted from memory,
+     * the results that depend on its types are discarded. Compiling a new unit only discards the
+     * failed lookups of the names of its types.
+     *
+     * @param cu the compilation unit in which the name was found, may be null
+     * @param className a simple or fully qualified class name
+     * @return a type wrapper or null if the type could not be found.
+     */
     public static TypeWrapper findType(CompilationUnit cu, String className) {
+        if (cu != null) {
+            TypeDeclaration<?> p = getMatchingType(cu, className).orElse(null);
+            if (p != null) {
+                return new TypeWrapper(p);
+            }
+        }
+
+        String imports = CompilationUnitIndex.importKey(cu);
+        Map<String, Optional<TypeWrapper>> cached = typeCache.computeIfAbsent(imports, k -> new ConcurrentHashMap<>());
+        Optional<TypeWrapper> wrapper = cached.get(className);
+        if (wrapper == null) {
+            wrapper = Optional.ofNullable(findExternalType(cu, className));
+            cached.put(className, wrapper);
+
+            TypeCacheEntry entry = new TypeCacheEntry(imports, className);
+            addTypeCacheDependent(className, entry);
+            addTypeCacheDependent(className.substring(className.lastIndexOf('.') + 1), entry);
+            wrapper.map(TypeWrapper::getType).flatMap(TypeDeclaration::getFullyQualifiedName)
+                    .ifPresent(name -> addTypeCacheDependent(name, entry));
+        }
+        return wrapper.orElse(null);
+    }
+
+    private static void addTypeCacheDependent(String name, TypeCacheEntry entry) {
+        typeCacheDependents.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(entry);
+    }
+
+    /**
+     * Discard the results of findType that refer to types with the given names, along with the
+     * import wrappers made from those types.
+     *
+     * @param names simple and fully qualified type names
+     * @param failedOnly only discard the lookups that did not find anything
+     */
+    private static void invalidateTypes(Collection<String> names, boolean failedOnly) {
+        for (String name : names) {
+            Set<TypeCacheEntry> entries = typeCacheDependents.get(name);
+            if (entries == null) {
+                continue;
+            }
+            entries.removeIf(entry -> {
+                Map<String, Optional<TypeWrapper>> cached = typeCache.get(entry.imports());
+                if (cached == null) {
+                    return true;
+                }
+                Optional<TypeWrapper> wrapper = cached.get(entry.className());
+                if (wrapper == null) {
+                    return true;
+                }
+                if (failedOnly && wrapper.isPresent()) {
+                    return false;
+                }
+                cached.remove(entry.className());
+                return true;
+            });
+        }
+        CompilationUnitIndex.invalidateImports(names, failedOnly);
+    }
+
+    /**
+     * <p>Forget everything that was worked out from the given compilation unit.</p>
+     *
+     * <p>This is called when the file that it was compiled from is compiled again and when the
+     * unit is evicted from memory. The results of findType and the import wrappers that refer to
+     * its types are discarded, along with the method dispatch decisions that lead into it.</p>
+     *
+     * @param cu a compilation unit that is no longer current
+     */
+    public static void invalidate(CompilationUnit cu) {
+        CompilationUnitIndex index = CompilationUnitIndex.of(cu);
+        if (index != null) {
+            invalidateTypes(index.getTypeNames(), false);
+        }
+        InlineCache.invalidate(cu);
+    }
+
+    /**
+     * Clears the results of previous calls to findType along with the method dispatch decisions
+     * that were based on them.
+     */
+    public static void clearTypeCache() {
+        typeCache.clear();
+        typeCacheDependents.clear();
+        compiledPaths.clear();
+        CompilationUnitIndex.invalidateImports();
+        InlineCache.invalidate();
+    }
+
+    private static TypeWrapper findExternalType(CompilationUnit cu, String className) {
         /*
          * If the compilation unit is null, this may be part of the java.lang package.
          */
         if (cu == null) {
-            try {
-                Class<?> c = Class.forName("java.lang." + className);
-                return new TypeWrapper(c);
-            } catch (ClassNotFoundException e) {
-                /*
-                 * dirty hack to handle an extreme edge case
-                 */
-                if (className.equals("Optional")) {
-                    return new TypeWrapper(Optional.class);
-                }
+            TypeWrapper wrapper = wrapClass("java.lang." + className);
+            if (wrapper != null) {
+                return wrapper;
+            }
+            /*
+             * dirty hack to handle an extreme edge case
+             */
+            if (className.equals("Optional")) {
+                return new TypeWrapper(Optional.class);
             }
         }
 
@@ -537,10 +779,6 @@ public class AbstractCompiler {
          *    that we have loaded.
          */
         if (cu == null) return null;
-        TypeDeclaration<?> p = getMatchingType(cu, className).orElse(null);
-        if (p != null) {
-            return new TypeWrapper(p);
-        }
         if (AntikytheraRunTime.getTypeDeclaration(className).isPresent()) {
             return new TypeWrapper(AntikytheraRunTime.getTypeDeclaration(className).get());
         }
@@ -550,13 +788,17 @@ public class AbstractCompiler {
             if (imp.getType() != null) {
                 return new TypeWrapper(imp.getType());
             }
-            try {
-                if (imp.getImport().isAsterisk()) {
-                    return new TypeWrapper(Class.forName(imp.getNameAsString() + "." + className));
+            if (imp.getImport().isAsterisk()) {
+                TypeWrapper wrapper = wrapClass(imp.getNameAsString() + "." + className);
+                if (wrapper != null) {
+                    return wrapper;
+                }
+            } else {
+                try {
+                    return new TypeWrapper(AbstractCompiler.loadClass(imp.getNameAsString()));
+                } catch (ClassNotFoundException e) {
+                    // ignorable
                 }
-                return new TypeWrapper(AbstractCompiler.loadClass(imp.getNameAsString()));
-            } catch (ClassNotFoundException e) {
-                // ignorable
             }
         }
 
@@ -571,42 +813,39 @@ public class AbstractCompiler {
             return new TypeWrapper(t.get());
         }
 
-        try {
-            return new TypeWrapper(Class.forName(className));
-        } catch (ClassNotFoundException e) {
-            /*
-             * It's ok to silently ignore this one. It just means that the class cannot be
-             * located in a jar. That maybe because we don't still have a fully qualified name.
-             */
+        /*
+         * The class index tells us whether there is any point in asking the class loader. The
+         * name may already be fully qualified, it may be in the java.lang package or it may
+         * be in the same package as the compilation unit.
+         */
+        TypeWrapper wrapper = wrapClass(className);
+        if (wrapper == null) {
+            wrapper = wrapClass("java.lang." + className);
         }
-
-        try {
-            return new TypeWrapper(Class.forName("java.lang." + className));
-
-        } catch (ClassNotFoundException ex) {
-            /*
-             * Once again ignore the exception. We don't have the class in the lang package
-             */
+        if (wrapper == null) {
+            wrapper = wrapClass(tentativeName);
         }
+        return wrapper;
+    }
 
-        try {
-            return new TypeWrapper(Class.forName(tentativeName));
-        } catch (ClassNotFoundException ex) {
-            /*
-             * Once again ignore the exception. We don't have the class in the lang package.
-             * But there's one last thing that we can do, check if the given name is actually a
-             * fully qualified name!
-             */
-            if (className.contains(".")) {
-                try {
-                    return new TypeWrapper(Class.forName(className));
-                } catch (ClassNotFoundException e) {
-                    return null;
-                }
+    /**
+     * Loads a class without initializing it, unless the class index knows that it does not exist.
+     *
+     * @param className the binary name of the class
+     * @return a type wrapper for the class or null if it cannot be loaded.
+     */
+    private static TypeWrapper wrapClass(String className) {
+        if (ClassIndex.mayExist(className)) {
+            try {
+                return new TypeWrapper(Class.forName(className, false, AbstractCompiler.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                /*
+                 * The index also covers the jars of the application under test, which are not
+                 * visible to this class loader.
+                 */
             }
-
-            return null;
         }
+        return null;
     }
 
     public static List<ImportWrapper> findImport(CompilationUnit cu, Type t) {
@@ -666,38 +905,53 @@ public class AbstractCompiler {
     }
 
     private static ImportWrapper findNonWildcardImport(CompilationUnit cu, String className) {
+        CompilationUnitIndex index = CompilationUnitIndex.of(cu);
+        if (index != null) {
+            return index.findImport(className);
+        }
         for (ImportDeclaration imp : cu.getImports()) {
-            if (imp.getNameAsString().equals(className) && !imp.isAsterisk()) {
-                /*
-                 * Easy one straight-up match involving a fully qualified name as className
-                 */
-                return new ImportWrapper(imp);
-            }
-
-            Name importName = imp.getName();
-            if (className.equals(importName.getIdentifier()) && !imp.isAsterisk()) {
-                /*
-                 * the last part of the import matches the class name
-                 */
-                final ImportWrapper wrapper = new ImportWrapper(imp);
-                if (!imp.isStatic()) {
-                    AntikytheraRunTime.getTypeDeclaration(imp.getNameAsString()).ifPresent(p -> {
-                        wrapper.setExternal(false);
-                        setTypeAndField(className, p, wrapper);
-                    });
-                } else if (importName.getQualifier().isPresent()) {
-                    AntikytheraRunTime.getTypeDeclaration(importName.getQualifier().orElseThrow().toString()).ifPresent(p -> {
-                        wrapper.setExternal(false);
-                        setTypeAndField(className, p, wrapper);
-                    });
-                }
-                return wrapper;
+            if (!imp.isAsterisk() && (imp.getNameAsString().equals(className)
+                    || className.equals(imp.getName().getIdentifier()))) {
+                return createImportWrapper(imp, className);
             }
         }
 
         return null;
     }
 
+    /**
+     * Wraps a non wildcard import that matches the class name.
+     * @param imp an import that is either the fully qualified class name or ends with the class name
+     * @param className the name that we are trying to resolve
+     * @return an import wrapper with the type, field or method that the import refers to filled in.
+     */
+    static ImportWrapper createImportWrapper(ImportDeclaration imp, String className) {
+        if (imp.getNameAsString().equals(className)) {
+            /*
+             * Easy one straight-up match involving a fully qualified name as className
+             */
+            return new ImportWrapper(imp);
+        }
+
+        /*
+         * the last part of the import matches the class name
+         */
+        Name importName = imp.getName();
+        final ImportWrapper wrapper = new ImportWrapper(imp);
+        if (!imp.isStatic()) {
+            AntikytheraRunTime.getTypeDeclaration(imp.getNameAsString()).ifPresent(p -> {
+                wrapper.setExternal(false);
+                setTypeAndField(className, p, wrapper);
+            });
+        } else if (importName.getQualifier().isPresent()) {
+            AntikytheraRunTime.getTypeDeclaration(importName.getQualifier().orElseThrow().toString()).ifPresent(p -> {
+                wrapper.setExternal(false);
+                setTypeAndField(className, p, wrapper);
+            });
+        }
+        return wrapper;
+    }
+
     private static void setTypeAndField(String className, TypeDeclaration<?> p, ImportWrapper wrapper) {
         wrapper.setType(p);
         p.findFirst(FieldDeclaration.class, f -> f.getVariable(0).getNameAsString().equals(className))
@@ -713,6 +967,23 @@ public class AbstractCompiler {
                 String impName = imp.getNameAsString();
 
                 String fullClassName = impName + "." + className;
+                if (ClassIndex.isComplete()) {
+                    /*
+                     * The class index can answer the question without loading the class. The
+                     * same results as the class loader based approach below are produced.
+                     */
+                    ImportWrapper wrapper;
+                    if (ClassIndex.exists(fullClassName)) {
+                        wrapper = new ImportWrapper(imp, true);
+                        if (!ClassIndex.isDependencyClass(fullClassName)) {
+                            wrapper.setSimplified(new ImportDeclaration(fullClassName, imp.isStatic(), false));
+                        }
+                    } else {
+                        wrapper = fakeImport(className, imp, fullClassName, impName);
+                    }
+                    if (wrapper != null) return wrapper;
+                    continue;
+                }
                 try {
                     Class.forName(fullClassName);
                     /*
@@ -917,21 +1188,76 @@ public class AbstractCompiler {
      * Precompile all the java files in the base folder.
      * While doing so we will try to determine what interfaces are implemented by each class.
      *
+     * Parsing happens on a pool of worker threads, the size of which can be controlled with the
+     * parallelism setting. Once every file has been parsed, a second pass links the interfaces
+     * and parent classes so that the outcome does not depend on the order of the files.
+     *
+     * In lazy mode the files are only indexed, see {@link TypeIndex}.
+     *
      * @throws IOException when the files cannot be precompiled.
      */
     public static void preProcess() throws IOException {
-        try (var paths = Files.walk(Paths.get(Settings.getBasePath()))) {
-            List<File> javaFiles = paths
+        Path basePath = Paths.get(Settings.getBasePath());
+        List<String> javaFiles;
+        try (var paths = Files.walk(basePath)) {
+            javaFiles = paths
                     .filter(Files::isRegularFile)
                     .filter(path -> path.toString().endsWith(SUFFIX))
-                    .map(Path::toFile)
+                    .map(path -> basePath.relativize(path).toString())
                     .toList();
+        }
 
-            for (File javaFile : javaFiles) {
-                InterfaceSolver solver = new InterfaceSolver();
-                solver.compile(Paths.get(Settings.getBasePath()).relativize(javaFile.toPath()).toString());
+        if (TypeIndex.isLazy()) {
+            TypeIndex.build(javaFiles);
+            return;
+        }
+
+        for (CompilationUnit compilationUnit : compileAll(javaFiles)) {
+            InterfaceSolver.solve(compilationUnit);
+        }
+        if (ParseCache.isEnabled()) {
+            logger.info("Parse cache hits {} misses {}", ParseCache.getHits(), ParseCache.getMisses());
+        }
+        AntikytheraRunTime.getCompilationUnitStore().ifPresent(store ->
+                logger.info("Compilation units resident {} evicted {} reloaded {}",
+                        store.getResident(), store.getEvictions(), store.getReloads()));
+    }
+
+    private static List<CompilationUnit> compileAll(List<String> relativePaths) throws IOException {
+        if (typeSolver == null) {
+            setupParser();
+        }
+        int threads = Settings.getProperty(Settings.PARALLELISM, Integer.class)
+                .orElse(Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        try {
+            List<Future<CompilationUnit>> futures = new ArrayList<>();
+            for (String relativePath : relativePaths) {
+                futures.add(executor.submit(() -> {
+                    AbstractCompiler compiler = new AbstractCompiler();
+                    compiler.compile(relativePath);
+                    return compiler.getCompilationUnit();
+                }));
             }
 
+            List<CompilationUnit> units = new ArrayList<>();
+            for (Future<CompilationUnit> future : futures) {
+                units.add(future.get());
+            }
+            return units;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while pre processing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
     }
 
@@ -117,6 +117,19 @@ public class Callable {
     public void setFoundInClass(Class<?> foundInClass) {
         this.foundInClass = foundInClass;
     }
+    /**
+     * @param mce another call that matches the same declaration or method
+     * @return a copy of this callable that is associated with the given call
+     */
+    public Callable copyFor(MCEWrapper mce) {
+        Callable c = new Callable();
+        c.callableDeclaration = callableDeclaration;
+        c.method = method;
+        c.foundInClass = foundInClass;
+        c.mce = mce;
+        return c;
+    }
+
     public MCEWrapper getMce() {
         return mce;
     }
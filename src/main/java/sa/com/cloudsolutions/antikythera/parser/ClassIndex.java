@@ -0,0 +1,343 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * <p>Knows which classes can be loaded without having to load them.</p>
+ *
+ * <p>The index is built from the central directory of each jar file, which is nothing more than
+ * the list of entries in the archive. The jars used by the application under test are read every
+ * time the parser is set up. The class path of antikythera itself is read once. Classes that
+ * belong to the JDK are listed one package at a time through the jrt file system, the first
+ * time a name in that package is looked up.</p>
+ *
+ * <p>Class names are binary names, that is inner classes are separated from the enclosing class
+ * with a $ sign, exactly as they would be given to Class.forName.</p>
+ */
+public class ClassIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ClassIndex.class);
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String VERSIONS = "META-INF/versions/";
+
+    /**
+     * The entries of every jar file that has been read, keyed by the path of the jar.
+     */
+    private static final Map<String, List<String>> jarContents = new ConcurrentHashMap<>();
+    /**
+     * Classes on the class path of antikythera, mapped to the jar or folder they are found in.
+     */
+    private static final Map<String, String> applicationClasses = new HashMap<>();
+    /**
+     * Classes in the jar files of the application under test, mapped to the jar.
+     */
+    private static final Map<String, String> dependencyClasses = new ConcurrentHashMap<>();
+    /**
+     * Package names mapped to the simple names of the classes in them. Does not include the JDK.
+     */
+    private static final Map<String, Set<String>> packages = new ConcurrentHashMap<>();
+    /**
+     * Packages of the modules in the boot layer mapped to the name of the module.
+     */
+    private static final Map<String, String> jdkPackages = new HashMap<>();
+    private static final Map<String, Set<String>> jdkClasses = new ConcurrentHashMap<>();
+    /**
+     * Classes that are not in any jar or folder but were found by a class loader anyway. Byte
+     * Buddy defines such classes at run time.
+     */
+    private static final Set<String> definedClasses = ConcurrentHashMap.newKeySet();
+
+    private static boolean applicationIndexed;
+    private static FileSystem jrt;
+    /**
+     * False until an index has been built and whenever any part of it could not be read.
+     * An incomplete index cannot be trusted to say that a class does not exist.
+     */
+    private static volatile boolean complete;
+
+    private ClassIndex() {}
+
+    /**
+     * Adds the given jar files to the index.
+     * Jars from earlier calls are retained, just like the class loaders that were created for
+     * them remain the parents of the new class loader.
+     *
+     * @param jarFiles paths to the jar files used by the application under test
+     */
+    public static synchronized void build(Collection<String> jarFiles) {
+        /*
+         * When antikythera is not loaded by the system class loader, it may be running from a fat
+         * jar or inside a container whose class loader sees more than the class path lists.
+         */
+        boolean ok = indexApplication() && ClassIndex.class.getClassLoader() == ClassLoader.getSystemClassLoader();
+        for (String jar : jarFiles) {
+            try {
+                for (String name : readJar(jar)) {
+                    dependencyClasses.putIfAbsent(name, jar);
+                    addToPackage(name);
+                }
+            } catch (IOException e) {
+                logger.warn("Could not index {}", jar);
+                ok = false;
+            }
+        }
+        complete = ok;
+        logger.debug("Class index holds {} application and {} dependency classes",
+                applicationClasses.size(), dependencyClasses.size());
+    }
+
+    private static boolean indexApplication() {
+        if (applicationIndexed) {
+            return true;
+        }
+        boolean ok = true;
+        for (Module module : ModuleLayer.boot().modules()) {
+            for (String pkg : module.getPackages()) {
+                jdkPackages.put(pkg, module.getName());
+            }
+        }
+
+        List<String> entries = new ArrayList<>(List.of(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < entries.size(); i++) {
+            String entry = entries.get(i);
+            if (entry.isBlank() || !seen.add(entry)) {
+                continue;
+            }
+            Path path = Paths.get(entry);
+            try {
+                if (Files.isDirectory(path)) {
+                    indexFolder(path);
+                } else if (Files.isRegularFile(path)) {
+                    for (String name : readJar(entry)) {
+                        applicationClasses.putIfAbsent(name, entry);
+                        addToPackage(name);
+                    }
+                    entries.addAll(manifestClassPath(path));
+                }
+            } catch (IOException e) {
+                logger.warn("Could not index {}", entry);
+                ok = false;
+            }
+        }
+        applicationIndexed = ok;
+        return ok;
+    }
+
+    private static void indexFolder(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            paths.filter(p -> p.toString().endsWith(CLASS_SUFFIX)).forEach(p -> {
+                String name = toClassName(folder.relativize(p).toString().replace(File.separatorChar, '/'));
+                if (name != null) {
+                    applicationClasses.putIfAbsent(name, folder.toString());
+                    addToPackage(name);
+                }
+            });
+        }
+    }
+
+    /**
+     * Jars such as the one that surefire launches tests with list the real class path in the
+     * manifest.
+     */
+    private static List<String> manifestClassPath(Path jar) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Manifest manifest = jarFile.getManifest();
+            if (manifest != null) {
+                String classPath = manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+                if (classPath != null) {
+                    for (String s : classPath.trim().split("\\s+")) {
+                        try {
+                            URI uri = jar.toUri().resolve(s);
+                            result.add(Paths.get(uri).toString());
+                        } catch (IllegalArgumentException e) {
+                            logger.debug("Ignoring class path entry {}", s);
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads the names of the classes in the jar from its central directory.
+     */
+    private static List<String> readJar(String jar) throws IOException {
+        List<String> names = jarContents.get(jar);
+        if (names == null) {
+            names = new ArrayList<>();
+            try (JarFile jarFile = new JarFile(jar)) {
+                Enumeration<? extends ZipEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    String name = toClassName(entries.nextElement().getName());
+                    if (name != null) {
+                        names.add(name);
+                    }
+                }
+            }
+            jarContents.put(jar, names);
+        }
+        return names;
+    }
+
+    private static String toClassName(String entry) {
+        if (!entry.endsWith(CLASS_SUFFIX)) {
+            return null;
+        }
+        if (entry.startsWith(VERSIONS)) {
+            int slash = entry.indexOf('/', VERSIONS.length());
+            if (slash < 0) {
+                return null;
+            }
+            entry = entry.substring(slash + 1);
+        }
+        String name = entry.substring(0, entry.length() - CLASS_SUFFIX.length()).replace('/', '.');
+        if (name.endsWith("module-info") || name.endsWith("package-info")) {
+            return null;
+        }
+        return name;
+    }
+
+    private static void addToPackage(String className) {
+        int dot = className.lastIndexOf('.');
+        String pkg = dot < 0 ? "" : className.substring(0, dot);
+        packages.computeIfAbsent(pkg, k -> ConcurrentHashMap.newKeySet()).add(className.substring(dot + 1));
+    }
+
+    /**
+     * @return true if the index was built and every jar in it could be read.
+     */
+    public static boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @param className the binary name of a class
+     * @return true if the class is known to exist.
+     */
+    public static boolean exists(String className) {
+        if (applicationClasses.containsKey(className) || dependencyClasses.containsKey(className)
+                || definedClasses.contains(className)) {
+            return true;
+        }
+        int dot = className.lastIndexOf('.');
+        return dot > 0 && getJdkClasses(className.substring(0, dot)).contains(className.substring(dot + 1));
+    }
+
+    /**
+     * @param className the binary name of a class
+     * @return false only if the class definitely does not exist.
+     */
+    public static boolean mayExist(String className) {
+        /*
+         * Array classes are never found in a jar, but they can be loaded.
+         */
+        return !complete || className.startsWith("[") || exists(className);
+    }
+
+    /**
+     * Take note of a class that a class loader was able to load even though the index did not
+     * know about it.
+     * @param className the binary name of the class
+     */
+    public static void register(String className) {
+        definedClasses.add(className);
+    }
+
+    /**
+     * @param className the binary name of a class
+     * @return true if the class can only be loaded with the class loader of the application under test
+     */
+    public static boolean isDependencyClass(String className) {
+        return dependencyClasses.containsKey(className) && !applicationClasses.containsKey(className);
+    }
+
+    /**
+     * @param className the binary name of a class
+     * @return the path to the jar file of the application under test that contains the class.
+     */
+    public static Optional<String> findJar(String className) {
+        return Optional.ofNullable(dependencyClasses.get(className));
+    }
+
+    /**
+     * @param jar the path to a jar file of the application under test
+     * @return the packages of the classes in the jar or empty if the jar has not been indexed.
+     */
+    public static Optional<Set<String>> getPackages(String jar) {
+        List<String> names = jarContents.get(jar);
+        if (names == null) {
+            return Optional.empty();
+        }
+        Set<String> result = new HashSet<>();
+        for (String name : names) {
+            int dot = name.lastIndexOf('.');
+            result.add(dot < 0 ? "" : name.substring(0, dot));
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * @param packageName the name of a package
+     * @return the simple names of the classes in that package
+     */
+    public static Set<String> getClassNames(String packageName) {
+        Set<String> names = packages.get(packageName);
+        if (names != null) {
+            return names;
+        }
+        return getJdkClasses(packageName);
+    }
+
+    private static Set<String> getJdkClasses(String packageName) {
+        String module = jdkPackages.get(packageName);
+        if (module == null) {
+            return Set.of();
+        }
+        return jdkClasses.computeIfAbsent(packageName, k -> listJdkPackage(module, k));
+    }
+
+    private static Set<String> listJdkPackage(String module, String packageName) {
+        Set<String> names = new HashSet<>();
+        try {
+            if (jrt == null) {
+                jrt = FileSystems.getFileSystem(URI.create("jrt:/"));
+            }
+            try (Stream<Path> files = Files.list(jrt.getPath("/modules", module, packageName.replace('.', '/')))) {
+                files.map(p -> p.getFileName().toString())
+                        .filter(f -> f.endsWith(CLASS_SUFFIX))
+                        .forEach(f -> names.add(f.substring(0, f.length() - CLASS_SUFFIX.length())));
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not list {}", packageName);
+            complete = false;
+        }
+        return names;
+    }
+}
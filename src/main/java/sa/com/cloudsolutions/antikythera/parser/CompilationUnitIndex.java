@@ -0,0 +1,189 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithName;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>Lookup tables for the types and the imports of a single compilation unit.</p>
+ *
+ * <p>The tables are built when the compilation unit is compiled and are attached to it as node
+ * data. That saves {@link AbstractCompiler#getMatchingType(CompilationUnit, String)} from having
+ * to walk the whole tree and the import search from having to scan the list of imports.</p>
+ *
+ * <p>Compilation units belonging to the application under test are never modified after they
+ * have been parsed, which is what makes this safe. Compilation units that are created in any
+ * other way do not have an index and will be searched the old way.</p>
+ */
+class CompilationUnitIndex {
+    private static final DataKey<CompilationUnitIndex> KEY = new DataKey<>() {};
+
+    /**
+     * Incremented when every import wrapper has to be made again.
+     */
+    private static final AtomicInteger generation = new AtomicInteger();
+    /**
+     * The indexes holding import wrappers that were made from the type of the given name. Only
+     * weakly held so that they go away with their compilation units.
+     */
+    private static final Map<String, Set<CompilationUnitIndex>> importers = new ConcurrentHashMap<>();
+
+    /**
+     * Types keyed by both their simple names and their fully qualified names. When two types
+     * share the same name, the one that comes first in a depth first traversal wins, just as it
+     * does with CompilationUnit.findAll().
+     */
+    private final Map<String, TypeDeclaration<?>> types = new HashMap<>();
+    /**
+     * Non wildcard imports keyed by both the full name and the last component of the name.
+     */
+    private final Map<String, ImportDeclaration> imports = new HashMap<>();
+    private final Map<String, ImportWrapper> wrappers = new ConcurrentHashMap<>();
+    private int wrapperGeneration;
+    /**
+     * The package and the imports of the compilation unit, which is all that findType results
+     * depend on for names that are not declared in the unit itself.
+     */
+    private final String importKey;
+
+    private CompilationUnitIndex(CompilationUnit cu) {
+        importKey = importKey(cu);
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class)) {
+            types.putIfAbsent(type.getNameAsString(), type);
+            type.getFullyQualifiedName().ifPresent(name -> types.putIfAbsent(name, type));
+        }
+        for (ImportDeclaration imp : cu.getImports()) {
+            if (!imp.isAsterisk()) {
+                imports.putIfAbsent(imp.getNameAsString(), imp);
+                imports.putIfAbsent(imp.getName().getIdentifier(), imp);
+            }
+        }
+    }
+
+    /**
+     * Build the tables for the compilation unit and attach them to it.
+     * @param cu a compilation unit that has just been parsed
+     */
+    static void attach(CompilationUnit cu) {
+        cu.setData(KEY, new CompilationUnitIndex(cu));
+    }
+
+    /**
+     * @param cu a compilation unit
+     * @return the tables for the compilation unit or null if it was never indexed
+     */
+    static CompilationUnitIndex of(CompilationUnit cu) {
+        return cu.containsData(KEY) ? cu.getData(KEY) : null;
+    }
+
+    /**
+     * @param cu a compilation unit, may be null
+     * @return the package and the imports of the compilation unit as a single string
+     */
+    static String importKey(CompilationUnit cu) {
+        if (cu == null) {
+            return "";
+        }
+        CompilationUnitIndex index = of(cu);
+        if (index != null) {
+            return index.importKey;
+        }
+        StringBuilder b = new StringBuilder(cu.getPackageDeclaration().map(NodeWithName::getNameAsString).orElse(""));
+        for (ImportDeclaration imp : cu.getImports()) {
+            b.append(';');
+            if (imp.isStatic()) {
+                b.append("static ");
+            }
+            b.append(imp.getNameAsString());
+            if (imp.isAsterisk()) {
+                b.append(".*");
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Discard every import wrapper.
+     */
+    static void invalidateImports() {
+        generation.incrementAndGet();
+        importers.clear();
+    }
+
+    /**
+     * Discard the import wrappers that were made from types with the given names.
+     * @param names simple and fully qualified names of types
+     * @param unresolvedOnly only discard the wrappers that did not find the type
+     */
+    static void invalidateImports(Collection<String> names, boolean unresolvedOnly) {
+        for (String name : names) {
+            Set<CompilationUnitIndex> indexes = importers.get(name);
+            if (indexes == null) {
+                continue;
+            }
+            synchronized (indexes) {
+                for (CompilationUnitIndex index : indexes) {
+                    index.wrappers.entrySet().removeIf(e -> name.equals(index.dependency(e.getKey()))
+                            && (!unresolvedOnly || e.getValue().getType() == null));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the simple and the fully qualified names of the types declared in the unit
+     */
+    Set<String> getTypeNames() {
+        return types.keySet();
+    }
+
+    TypeDeclaration<?> findType(String name) {
+        return types.get(name);
+    }
+
+    ImportWrapper findImport(String className) {
+        ImportDeclaration imp = imports.get(className);
+        if (imp == null) {
+            return null;
+        }
+        int current = generation.get();
+        if (wrapperGeneration != current) {
+            wrappers.clear();
+            wrapperGeneration = current;
+        }
+        ImportWrapper wrapper = wrappers.get(className);
+        if (wrapper == null) {
+            wrapper = AbstractCompiler.createImportWrapper(imp, className);
+            wrappers.put(className, wrapper);
+            Set<CompilationUnitIndex> indexes = importers.computeIfAbsent(dependency(className),
+                    k -> Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>())));
+            indexes.add(this);
+        }
+        return wrapper;
+    }
+
+    /**
+     * @return the name of the type that the wrapper for the import of the class name is made from
+     */
+    private String dependency(String className) {
+        ImportDeclaration imp = imports.get(className);
+        if (imp == null) {
+            return null;
+        }
+        if (imp.isStatic()) {
+            return imp.getName().getQualifier().map(Object::toString).orElse(imp.getNameAsString());
+        }
+        return imp.getNameAsString();
+    }
+}
@@ -0,0 +1,162 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.JavaParserBuild;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.serialization.JavaParserJsonDeserializer;
+import com.github.javaparser.serialization.JavaParserJsonSerializer;
+import jakarta.json.Json;
+import jakarta.json.JsonReader;
+import jakarta.json.stream.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <p>Persistent cache of parsed compilation units.</p>
+ *
+ * <p>Each entry holds the gzipped JSON form of a compilation unit. The name of the entry is a
+ * hash of the relative path, the hash of the source code and the version of java parser that
+ * produced it. So an entry becomes unreachable as soon as the file is edited or the parser is
+ * upgraded.</p>
+ *
+ * <p>The cache is only used when the parse_cache setting points to a folder. Nothing in that
+ * folder is needed for correctness, so it can be deleted at any time. Unreadable entries are
+ * treated as misses.</p>
+ */
+public class ParseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ParseCache.class);
+    private static final String EXTENSION = ".json.gz";
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private ParseCache() {}
+
+    /**
+     * @return true if the parse_cache setting has been provided.
+     */
+    public static boolean isEnabled() {
+        return getCacheFolder().isPresent();
+    }
+
+    private static Optional<Path> getCacheFolder() {
+        return Settings.getProperty(Settings.PARSE_CACHE, String.class).map(Paths::get);
+    }
+
+    /**
+     * Try to load a previously parsed compilation unit.
+     * @param relativePath the path of the source file relative to the base path
+     * @param source the current content of the source file
+     * @return the compilation unit if there is a usable entry in the cache.
+     */
+    public static Optional<CompilationUnit> load(String relativePath, byte[] source) {
+        Optional<Path> folder = getCacheFolder();
+        if (folder.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Path entry = folder.get().resolve(key(relativePath, source) + EXTENSION);
+        if (Files.isRegularFile(entry)) {
+            try (Reader reader = new InputStreamReader(new GZIPInputStream(Files.newInputStream(entry)), StandardCharsets.UTF_8);
+                 JsonReader json = Json.createReader(reader)) {
+                if (new JavaParserJsonDeserializer().deserializeObject(json) instanceof CompilationUnit cu) {
+                    AbstractCompiler.symbolResolver.inject(cu);
+                    hits.incrementAndGet();
+                    return Optional.of(cu);
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Discarding unreadable parse cache entry {}", entry, e);
+                deleteQuietly(entry);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Save a freshly parsed compilation unit.
+     * The entry is written to a temporary file first and then moved into place so that
+     * concurrent readers will never see a partial entry.
+     *
+     * @param relativePath the path of the source file relative to the base path
+     * @param source the content of the source file that was parsed
+     * @param cu the result of parsing the source
+     */
+    public static void store(String relativePath, byte[] source, CompilationUnit cu) {
+        Optional<Path> folder = getCacheFolder();
+        if (folder.isEmpty()) {
+            return;
+        }
+
+        Path temp = null;
+        try {
+            Files.createDirectories(folder.get());
+            temp = Files.createTempFile(folder.get(), "entry", ".tmp");
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(temp)), StandardCharsets.UTF_8);
+                 JsonGenerator generator = Json.createGenerator(writer)) {
+                new JavaParserJsonSerializer().serialize(cu, generator);
+            }
+            Files.move(temp, folder.get().resolve(key(relativePath, source) + EXTENSION),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not write parse cache entry for {}", relativePath, e);
+            if (temp != null) {
+                deleteQuietly(temp);
+            }
+        }
+    }
+
+    static String key(String relativePath, byte[] source) {
+        try {
+            MessageDigest content = MessageDigest.getInstance("SHA-256");
+            MessageDigest key = MessageDigest.getInstance("SHA-256");
+            key.update(relativePath.getBytes(StandardCharsets.UTF_8));
+            key.update((byte) 0);
+            key.update(content.digest(source));
+            key.update((byte) 0);
+            key.update(JavaParserBuild.PROJECT_VERSION.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(key.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.debug("Could not delete {}", path);
+        }
+    }
+
+    public static long getHits() {
+        return hits.get();
+    }
+
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    public static void resetCounters() {
+        hits.set(0);
+        misses.set(0);
+    }
+}
@@ -0,0 +1,175 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * <p>A type solver that sends each name only to the solvers that can possibly know about it.</p>
+ *
+ * <p>A CombinedTypeSolver asks each of its solvers in turn, which means a class from the last
+ * of several hundred jars is only found after all the others have failed to find it. Here
+ * every solver is registered together with the packages it owns. A name is tried against the
+ * owners of its package, or of its enclosing packages when the name is that of a nested class.
+ * Solvers registered without any packages are asked about every name. The candidates are tried
+ * in the order in which they were added, so the outcome is the same as that of a combined type
+ * solver holding the same solvers.</p>
+ *
+ * <p>Both successful and failed lookups are cached.</p>
+ */
+public class RoutingTypeSolver implements TypeSolver {
+    private TypeSolver parent;
+
+    /**
+     * All the solvers in the order they were added.
+     */
+    private final List<TypeSolver> solvers = new ArrayList<>();
+    /**
+     * Solvers that are consulted regardless of the package.
+     */
+    private final List<TypeSolver> unrouted = new ArrayList<>();
+    /**
+     * Package names, or package prefixes, mapped to the solvers that own them.
+     */
+    private final Map<String, List<TypeSolver>> routes = new HashMap<>();
+    /**
+     * The position of each solver in the list of all solvers.
+     */
+    private final Map<TypeSolver, Integer> order = new IdentityHashMap<>();
+    private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a solver that owns the given packages.
+     * A name matches a package if it is a class in that package or in any sub package.
+     *
+     * @param solver the type solver
+     * @param packages the names of the packages that this solver is responsible for.
+     */
+    public void add(TypeSolver solver, Collection<String> packages) {
+        register(solver);
+        for (String pkg : packages) {
+            routes.computeIfAbsent(pkg, k -> new ArrayList<>()).add(solver);
+        }
+    }
+
+    /**
+     * Adds a solver that will be asked about every name.
+     * @param solver the type solver
+     */
+    public void add(TypeSolver solver) {
+        register(solver);
+        unrouted.add(solver);
+    }
+
+    private void register(TypeSolver solver) {
+        solver.setParent(this);
+        order.put(solver, solvers.size());
+        solvers.add(solver);
+        cache.clear();
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        SymbolReference<ResolvedReferenceTypeDeclaration> ref = cache.get(name);
+        if (ref == null) {
+            ref = route(name);
+            cache.put(name, ref);
+        }
+        return ref;
+    }
+
+    private SymbolReference<ResolvedReferenceTypeDeclaration> route(String name) {
+        SortedMap<Integer, TypeSolver> candidates = new TreeMap<>();
+        for (String prefix : prefixes(name)) {
+            for (TypeSolver solver : routes.getOrDefault(prefix, List.of())) {
+                candidates.put(order.get(solver), solver);
+            }
+        }
+        for (TypeSolver solver : unrouted) {
+            candidates.put(order.get(solver), solver);
+        }
+
+        for (TypeSolver solver : candidates.values()) {
+            SymbolReference<ResolvedReferenceTypeDeclaration> ref = solver.tryToSolveType(name);
+            if (ref.isSolved()) {
+                return ref;
+            }
+        }
+        return SymbolReference.unsolved();
+    }
+
+    /**
+     * The enclosing names from the longest to the shortest. For a.b.C.D these are a.b.C, a.b and
+     * a. A name that is not qualified belongs to the default package, which has an empty name.
+     */
+    static List<String> prefixes(String name) {
+        List<String> result = new ArrayList<>();
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) {
+            result.add("");
+        }
+        while (dot > 0) {
+            name = name.substring(0, dot);
+            result.add(name);
+            dot = name.lastIndexOf('.');
+        }
+        return result;
+    }
+
+    /**
+     * Finds the packages that have java source code in the given folder.
+     *
+     * @param root a folder that contains java sources laid out by package
+     * @return the package names
+     * @throws IOException if the folder cannot be read
+     */
+    public static Set<String> sourcePackages(Path root) throws IOException {
+        Set<String> packages = new HashSet<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.filter(p -> p.toString().endsWith(AbstractCompiler.SUFFIX)).forEach(p -> {
+                Path folder = root.relativize(p).getParent();
+                packages.add(folder == null ? "" : folder.toString().replace(root.getFileSystem().getSeparator(), "."));
+            });
+        }
+        return packages;
+    }
+
+    /**
+     * @return every solver that has been added, in order.
+     */
+    public List<TypeSolver> getSolvers() {
+        return solvers;
+    }
+}
@@ -0,0 +1,282 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.depsolver.InterfaceSolver;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Maps fully qualified class names to the source files that declare them, without parsing.</p>
+ *
+ * <p>In lazy mode the pre-processor only builds this index. Each file gets a quick scan for its
+ * package, its top level type names and the identifiers in the type headers. The compilation
+ * unit is parsed the first time something asks the {@link AntikytheraRunTime} for one of those
+ * types. So startup costs depend on the classes the run actually reaches, not on the size of
+ * the application.</p>
+ *
+ * <p>Implementations of interfaces and subclasses can only be found once the code that declares
+ * them has been parsed. The header identifiers let {@link #loadSubTypes(String)} parse just the
+ * files that could possibly extend or implement a given type.</p>
+ */
+public class TypeIndex {
+    private static final Logger logger = LoggerFactory.getLogger(TypeIndex.class);
+
+    private static final Pattern TOKEN = Pattern.compile("@?[\\p{javaJavaIdentifierStart}][\\p{javaJavaIdentifierPart}]*|[{}().;<>]");
+    private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum", "record", "@interface");
+    private static final Set<String> HEADER_KEYWORDS = Set.of("extends", "implements", "permits", "public",
+            "protected", "private", "abstract", "final", "static", "sealed", "non", "strictfp");
+
+    /**
+     * Fully qualified names of the types that are yet to be compiled and the files they are in.
+     */
+    private static final Map<String, String> pending = new ConcurrentHashMap<>();
+    /**
+     * The names of the pending types in each file.
+     */
+    private static final Map<String, List<String>> typesInFile = new ConcurrentHashMap<>();
+    /**
+     * Identifiers found in the type headers of each pending file.
+     */
+    private static final Map<String, Set<String>> supertypes = new ConcurrentHashMap<>();
+    /**
+     * The number of files being compiled, only changed while holding the lock.
+     */
+    private static volatile int compiling;
+
+    private TypeIndex() {}
+
+    /**
+     * @return true if the pre-processor was asked to defer compilation.
+     */
+    public static boolean isLazy() {
+        return Settings.getProperty(Settings.LAZY_COMPILATION, Boolean.class).orElse(false);
+    }
+
+    /**
+     * Scan the given source files and record the types that they declare.
+     * @param relativePaths the paths of the java files relative to the base path
+     * @throws IOException if any of the files cannot be read
+     */
+    public static void build(List<String> relativePaths) throws IOException {
+        for (String relativePath : relativePaths) {
+            index(relativePath, Files.readString(Paths.get(Settings.getBasePath(), relativePath)));
+        }
+        logger.debug("Indexed {} types in {} files", pending.size(), typesInFile.size());
+    }
+
+    static void index(String relativePath, String source) {
+        Matcher matcher = TOKEN.matcher(stripCommentsAndLiterals(source));
+        String packageName = "";
+        List<String> names = new ArrayList<>();
+        Set<String> header = new HashSet<>();
+
+        int braces = 0;
+        int parens = 0;
+        String previous = "";
+        boolean expectName = false;
+        boolean inHeader = false;
+
+        while (matcher.find()) {
+            String token = matcher.group();
+            switch (token) {
+                case "{" -> {
+                    braces++;
+                    inHeader = false;
+                }
+                case "}" -> braces--;
+                case "(" -> parens++;
+                case ")" -> parens--;
+                default -> {
+                    if (braces == 0 && parens == 0) {
+                        if (previous.equals("package")) {
+                            packageName = qualifiedName(matcher, token);
+                        } else if (expectName) {
+                            names.add(token);
+                            expectName = false;
+                            inHeader = true;
+                        } else if (TYPE_KEYWORDS.contains(token) && !previous.equals(".")) {
+                            expectName = true;
+                        } else if (inHeader && !HEADER_KEYWORDS.contains(token) && Character.isJavaIdentifierStart(token.charAt(0))) {
+                            header.add(token);
+                        }
+                    }
+                }
+            }
+            previous = token;
+        }
+
+        List<String> fqns = new ArrayList<>();
+        for (String name : names) {
+            String fqn = packageName.isEmpty() ? name : packageName + "." + name;
+            fqns.add(fqn);
+            pending.put(fqn, relativePath);
+        }
+        typesInFile.put(relativePath, fqns);
+        supertypes.put(relativePath, header);
+    }
+
+    private static String qualifiedName(Matcher matcher, String first) {
+        StringBuilder b = new StringBuilder(first);
+        while (matcher.find() && !matcher.group().equals(";")) {
+            b.append(matcher.group());
+        }
+        return b.toString();
+    }
+
+    /**
+     * Remove comments, string literals and character literals so that the tokenizer does not
+     * mistake their content for code.
+     */
+    static String stripCommentsAndLiterals(String source) {
+        StringBuilder b = new StringBuilder(source.length());
+        int i = 0;
+        int n = source.length();
+        while (i < n) {
+            char c = source.charAt(i);
+            if (c == '/' && i + 1 < n && source.charAt(i + 1) == '/') {
+                while (i < n && source.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < n && source.charAt(i + 1) == '*') {
+                int end = source.indexOf("*/", i + 2);
+                i = end < 0 ? n : end + 2;
+                b.append(' ');
+            } else if (source.startsWith("\"\"\"", i)) {
+                int end = source.indexOf("\"\"\"", i + 3);
+                i = end < 0 ? n : end + 3;
+                b.append(' ');
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < n && source.charAt(i) != c && source.charAt(i) != '\n') {
+                    i += source.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+                b.append(' ');
+            } else {
+                b.append(c);
+                i++;
+            }
+        }
+        return b.toString();
+    }
+
+    /**
+     * Compile the source file that declares the given type, if it has not been compiled already.
+     * Nested types are found by looking for the type that encloses them.
+     *
+     * @param className a fully qualified class name
+     */
+    public static void load(String className) {
+        if (pending.isEmpty() || (findPending(className) == null && compiling == 0)) {
+            /*
+             * Most of the names that the runtime misses on are library classes, which never
+             * need the lock. A compilation in progress has already taken its names out of the
+             * index, so the caller has to wait for it to finish.
+             */
+            return;
+        }
+        synchronized (TypeIndex.class) {
+            String path = findPending(className);
+            if (path != null) {
+                compile(path);
+            }
+        }
+    }
+
+    /**
+     * @return the file that declares the type or one of the types that enclose it, if that file
+     *      has not been compiled yet
+     */
+    private static String findPending(String className) {
+        String name = className;
+        while (true) {
+            String path = pending.get(name);
+            if (path != null) {
+                return path;
+            }
+            int dot = name.lastIndexOf('.');
+            if (dot < 0) {
+                return null;
+            }
+            name = name.substring(0, dot);
+        }
+    }
+
+    /**
+     * Compile every source file that might declare a class extending or implementing the given
+     * type, directly or through intermediate types.
+     *
+     * @param className the fully qualified name of a class or an interface
+     */
+    public static void loadSubTypes(String className) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (TypeIndex.class) {
+            Set<String> names = new HashSet<>();
+            names.add(className.substring(className.lastIndexOf('.') + 1));
+            boolean found = true;
+            while (found) {
+                found = false;
+                for (Map.Entry<String, Set<String>> entry : List.copyOf(supertypes.entrySet())) {
+                    if (typesInFile.containsKey(entry.getKey()) && entry.getValue().stream().anyMatch(names::contains)) {
+                        for (String fqn : compile(entry.getKey())) {
+                            names.add(fqn.substring(fqn.lastIndexOf('.') + 1));
+                        }
+                        found = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<String> compile(String relativePath) {
+        List<String> fqns = typesInFile.remove(relativePath);
+        supertypes.remove(relativePath);
+        if (fqns == null) {
+            return List.of();
+        }
+        /*
+         * Remove the entries before compiling, because the compiler will go back to the runtime
+         * to check whether the class has already been resolved.
+         */
+        compiling++;
+        fqns.forEach(pending::remove);
+        try {
+            AbstractCompiler compiler = new AbstractCompiler();
+            compiler.compile(relativePath);
+            InterfaceSolver.solve(compiler.getCompilationUnit());
+        } catch (IOException e) {
+            logger.warn("Could not compile {}", relativePath, e);
+        } finally {
+            compiling--;
+        }
+        return fqns;
+    }
+
+    /**
+     * @return true if the type has been indexed but not compiled yet.
+     */
+    public static boolean isPending(String className) {
+        return pending.containsKey(className);
+    }
+
+    public static void clear() {
+        pending.clear();
+        typesInFile.clear();
+        supertypes.clear();
+    }
+}
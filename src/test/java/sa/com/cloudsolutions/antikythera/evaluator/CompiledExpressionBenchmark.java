@@ -0,0 +1,79 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating the same expression over and over with the interpreter and with the
+ * compiled execution engine, the way a loop body or a method that is visited repeatedly does.
+ *
+ * Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *     -Dexec.args=CompiledExpressionBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompiledExpressionBenchmark {
+    private static final String SOURCE = """
+            class Bench {
+                int f(int a, int b) {
+                    return (a * 3 + b) % 7 > 2 ? a - b * (a + 1) : (b + 4) / (a + 1);
+                }
+            }
+            """;
+
+    Evaluator interpreter;
+    Evaluator compiled;
+    Expression expr;
+
+    @Setup
+    public void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        CompilationUnit cu = StaticJavaParser.parse(SOURCE);
+        expr = cu.findFirst(ReturnStmt.class).flatMap(ReturnStmt::getExpression).orElseThrow();
+
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+        interpreter = EvaluatorFactory.create("", Evaluator.class);
+        Settings.setProperty(Settings.EXECUTION_ENGINE, Settings.COMPILED_ENGINE);
+        compiled = EvaluatorFactory.create("", Evaluator.class);
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+
+        for (Evaluator eval : new Evaluator[] {interpreter, compiled}) {
+            eval.setLocal(expr, "a", new Variable(5));
+            eval.setLocal(expr, "b", new Variable(9));
+        }
+    }
+
+    @Benchmark
+    public Variable interpreted() throws ReflectiveOperationException {
+        return interpreter.evaluateExpression(expr);
+    }
+
+    @Benchmark
+    public Variable compiled() throws ReflectiveOperationException {
+        return compiled.evaluateExpression(expr);
+    }
+}
@@ -22,6 +22,7 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 
 class TestAKBuddy extends TestHelper {
@@ -122,4 +123,16 @@ class TestAKBuddy extends TestHelper {
         assertNull(instance.executeBatch());
         assertDoesNotThrow(instance::close);
     }
+
+    @Test
+    void dynamicClassesCanBeLoadedByName() throws ReflectiveOperationException {
+        evaluator = EvaluatorFactory.create(SAMPLE_CLASS, Evaluator.class);
+        Class<?> fromSource = AKBuddy.createDynamicClass(new MethodInterceptor(evaluator));
+        assertSame(fromSource, AbstractCompiler.loadClass(SAMPLE_CLASS));
+
+        Class<?> fromByteCode = AKBuddy.createDynamicClass(new MethodInterceptor(Statement.class));
+        for (int i = 0; i < 2; i++) {
+            assertSame(fromByteCode, AbstractCompiler.loadClass(fromByteCode.getName()));
+        }
+    }
 }
@@ -6,6 +6,8 @@ import com.github.javaparser.ast.expr.StringLiteralExpr;
 import org.junit.jupiter.api.Test;
 import sa.com.cloudsolutions.antikythera.exception.EvaluatorException;
 
+import java.math.BigDecimal;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class TestBinaryOps {
@@ -73,6 +75,50 @@ class TestBinaryOps {
         assertEquals(1, BinaryOps.binaryOps(BinaryExpr.Operator.DIVIDE, expr, expr, five, three).getValue());
     }
 
+    @Test
+    void testJavaPromotion() {
+        var expr = new IntegerLiteralExpr();
+        long big = (1L << 53) + 1;
+
+        assertEquals(big + 2, BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable(big), new Variable(2)).getValue());
+        assertEquals(-3, BinaryOps.binaryOps(BinaryExpr.Operator.DIVIDE, expr, expr,
+                new Variable(-7), new Variable(2)).getValue());
+        assertEquals(2.5, BinaryOps.binaryOps(BinaryExpr.Operator.DIVIDE, expr, expr,
+                new Variable(5), new Variable(2.0)).getValue());
+        assertEquals(1.5f, BinaryOps.binaryOps(BinaryExpr.Operator.DIVIDE, expr, expr,
+                new Variable(3), new Variable(2f)).getValue());
+        assertEquals(Integer.MIN_VALUE, BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable(Integer.MAX_VALUE), new Variable(1)).getValue());
+        assertEquals(2, BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable((short) 1), new Variable((byte) 1)).getValue());
+        assertEquals(98, BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable('a'), new Variable(1)).getValue());
+        assertEquals(new BigDecimal("0.3"), BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable(new BigDecimal("0.1")), new Variable(new BigDecimal("0.2"))).getValue());
+        assertEquals("anull", BinaryOps.binaryOps(BinaryExpr.Operator.PLUS, expr, expr,
+                new Variable("a"), new Variable(null)).getValue());
+
+        assertThrows(ArithmeticException.class, () -> BinaryOps.binaryOps(BinaryExpr.Operator.DIVIDE,
+                expr, expr, new Variable(1), new Variable(0)));
+    }
+
+    @Test
+    void testExactComparisons() {
+        var expr = new IntegerLiteralExpr();
+        long big = (1L << 53) + 1;
+
+        assertTrue((Boolean) BinaryOps.binaryOps(BinaryExpr.Operator.GREATER, expr, expr,
+                new Variable(big), new Variable(big - 1)).getValue());
+        assertFalse((Boolean) BinaryOps.checkEquality(new Variable(big), new Variable(big - 1)).getValue());
+        assertTrue((Boolean) BinaryOps.checkEquality(new Variable(0.0), new Variable(-0.0)).getValue());
+        assertFalse((Boolean) BinaryOps.binaryOps(BinaryExpr.Operator.LESS, expr, expr,
+                new Variable(Double.NaN), new Variable(1)).getValue());
+        assertTrue((Boolean) BinaryOps.binaryOps(BinaryExpr.Operator.LESS, expr, expr,
+                new Variable(new BigDecimal("2")), new Variable(new BigDecimal("2.5"))).getValue());
+        assertTrue((Boolean) BinaryOps.checkEquality(new Variable('a'), new Variable(97)).getValue());
+    }
+
     @Test
     void testInvalidComparisons() {
         var number = new Variable(5);
@@ -0,0 +1,330 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.mock.MockingRegistry;
+import sa.com.cloudsolutions.antikythera.generator.MethodResponse;
+import sa.com.cloudsolutions.antikythera.generator.TestGenerator;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestBranchSnapshot extends TestHelper {
+    private static final String SEQUENTIAL = """
+            public class Sequential {
+                public void run(int a, int b) {
+                    System.out.print("Start!");
+                    if (a > 0) {
+                        System.out.print("A!");
+                    }
+                    if (b > 0) {
+                        System.out.print("B!");
+                    }
+                }
+            }
+            """;
+
+    private static final String BUILDER = """
+            public class Builder {
+                public void run(int a, int b) {
+                    StringBuilder sb = new StringBuilder();
+                    sb.append("Start!");
+                    if (a > 0) {
+                        sb.append("A!");
+                    }
+                    if (b > 0) {
+                        sb.append("B!");
+                    }
+                    System.out.print(sb.toString() + "|");
+                }
+            }
+            """;
+
+    private static final String STUBBED = """
+            public class Lookup {
+                @Autowired
+                private Repo repo;
+
+                public String run(int a) {
+                    System.out.print("Start!");
+                    String found = repo.find();
+                    if (a > 0) {
+                        return "A";
+                    }
+                    return "B";
+                }
+            }
+
+            interface Repo {
+                String find();
+            }
+            """;
+
+    private Statement statement;
+    private IfStmt branch;
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @BeforeEach
+    void each() {
+        MethodDeclaration md = StaticJavaParser.parse(SEQUENTIAL).findFirst(MethodDeclaration.class).orElseThrow();
+        BlockStmt body = md.getBody().orElseThrow();
+        statement = body.getStatement(0);
+        branch = body.getStatement(1).asIfStmt();
+        evaluator = EvaluatorFactory.create("", Evaluator.class);
+    }
+
+    @AfterEach
+    void resetSnapshots() {
+        Settings.setProperty(Settings.BRANCH_SNAPSHOTS, null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void restoreUndoesLaterChanges() {
+        Variable a = new Variable(1);
+        evaluator.setLocal(statement, "a", a);
+        evaluator.setLocal(statement, "list", new Variable(new ArrayList<>(List.of("x"))));
+        evaluator.setField("f", new Variable("before"));
+        AntikytheraRunTime.push(new Variable(7));
+        Map<String, Variable> arguments = new HashMap<>();
+        arguments.put("a", a);
+
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, arguments, List.of());
+
+        for (int i = 0; i < 2; i++) {
+            evaluator.getLocal(statement, "a").setValue(5);
+            ((List<Object>) evaluator.getLocal(statement, "list").getValue()).add("y");
+            evaluator.setField("f", new Variable("after"));
+            evaluator.setField("g", new Variable("new"));
+            AntikytheraRunTime.pop();
+            arguments.put("b", new Variable(2));
+
+            snapshot.restore(arguments);
+
+            Variable restored = evaluator.getLocal(statement, "a");
+            assertEquals(1, restored.getValue());
+            assertNotSame(a, restored);
+            assertSame(restored, arguments.get("a"));
+            assertFalse(arguments.containsKey("b"));
+            assertEquals(List.of("x"), evaluator.getLocal(statement, "list").getValue());
+            assertEquals("before", evaluator.getField("f").getValue());
+            assertNull(evaluator.getField("g"));
+            assertEquals(7, AntikytheraRunTime.pop().getValue());
+            assertTrue(AntikytheraRunTime.isEmptyStack());
+            AntikytheraRunTime.push(new Variable(7));
+        }
+    }
+
+    @Test
+    void fieldsOfReachableEvaluatorsAreRestored() {
+        Evaluator dto = EvaluatorFactory.create("", Evaluator.class);
+        dto.setField("name", new Variable("x"));
+        evaluator.setLocal(statement, "dto", new Variable(dto));
+
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of());
+        dto.setField("name", new Variable("y"));
+        snapshot.restore(new HashMap<>());
+
+        assertSame(dto, evaluator.getLocal(statement, "dto").getValue());
+        assertEquals("x", dto.getField("name").getValue());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void copyableCollectionsAreRestored() {
+        TreeMap<String, Object> map = new TreeMap<>(Map.of("k", "v"));
+        evaluator.setLocal(statement, "map", new Variable(map));
+        evaluator.setLocal(statement, "deque", new Variable(new ArrayDeque<>(List.of(1))));
+        evaluator.setLocal(statement, "fixed", new Variable(List.of(new ArrayList<>(List.of("x")))));
+
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of());
+        assertNotNull(snapshot);
+        map.put("k", "w");
+        ((ArrayDeque<Object>) evaluator.getLocal(statement, "deque").getValue()).push(2);
+        ((List<List<Object>>) evaluator.getLocal(statement, "fixed").getValue()).getFirst().add("y");
+        snapshot.restore(new HashMap<>());
+
+        assertEquals("v", ((Map<String, Object>) evaluator.getLocal(statement, "map").getValue()).get("k"));
+        assertEquals(List.of(1), new ArrayList<>((ArrayDeque<Object>) evaluator.getLocal(statement, "deque").getValue()));
+        assertEquals(List.of(List.of("x")), evaluator.getLocal(statement, "fixed").getValue());
+    }
+
+    @Test
+    void mutableObjectsPreventSnapshots() {
+        StringBuilder sb = new StringBuilder("before");
+        evaluator.setLocal(statement, "sb", new Variable(sb));
+        assertNull(BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of()));
+
+        evaluator.getLocals().clear();
+        evaluator.setField("when", new Variable(new Date()));
+        assertNull(BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of()));
+    }
+
+    @Test
+    void mutableObjectsAreBuiltAgain() throws ReflectiveOperationException {
+        String output = visit("Builder", BUILDER, true);
+        Set<String> paths = Set.of("Start!|", "Start!A!|", "Start!B!|", "Start!A!B!|");
+        Matcher m = Pattern.compile("Start![AB!]*\\|").matcher(output);
+        while (m.find()) {
+            assertTrue(paths.contains(m.group()), m.group());
+        }
+        assertTrue(output.contains("A!"));
+        assertTrue(output.contains("B!"));
+    }
+
+    @Test
+    void laterMocksAreDropped() {
+        MockingRegistry.markAsMocked("Before");
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of());
+        MockingRegistry.markAsMocked("After");
+        snapshot.restore(new HashMap<>());
+
+        assertTrue(MockingRegistry.isMockTarget("Before"));
+        assertFalse(MockingRegistry.isMockTarget("After"));
+    }
+
+    @Test
+    void stubsInFrontOfTheBranchAreKept() {
+        TestGenerator.getWhenThen().clear();
+        MockingRegistry.buildMockitoWhen("find", "java.lang.String", "repo");
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of());
+        String stub = TestGenerator.getWhenThen().getFirst().toString();
+
+        TestGenerator.getWhenThen().clear();
+        MockingRegistry.buildMockitoWhen("other", "java.lang.String", "repo");
+        snapshot.restore(new HashMap<>());
+
+        assertEquals(1, TestGenerator.getWhenThen().size());
+        assertEquals(stub, TestGenerator.getWhenThen().getFirst().toString());
+        TestGenerator.getWhenThen().clear();
+    }
+
+    @Test
+    void generatedTestsHaveTheStubsOfTheRepository() throws ReflectiveOperationException {
+        Settings.setProperty(Settings.BRANCH_SNAPSHOTS, true);
+        MockingRegistry.reset();
+        MockingRegistry.markAsMocked("Repo");
+        TestGenerator.getWhenThen().clear();
+        CompilationUnit cu = StaticJavaParser.parse(STUBBED);
+        AntikytheraRunTime.addCompilationUnit("Lookup", cu);
+        AntikytheraRunTime.addCompilationUnit("Repo", cu);
+
+        List<String> stubs = new ArrayList<>();
+        TestGenerator recorder = new TestGenerator(cu) {
+            @Override
+            public void createTests(MethodDeclaration md, MethodResponse response) {
+                stubs.add(getWhenThen().toString());
+                getWhenThen().clear();
+            }
+
+            @Override
+            public void setCommonPath(String commonPath) {
+                /* not a controller */
+            }
+
+            @Override
+            public void addBeforeClass() {
+                /* nothing to set up */
+            }
+        };
+
+        SpringEvaluator eval = EvaluatorFactory.create("Lookup", SpringEvaluator.class);
+        DummyArgumentGenerator argumentGenerator = new DummyArgumentGenerator();
+        eval.setArgumentGenerator(argumentGenerator);
+        recorder.setArgumentGenerator(argumentGenerator);
+        eval.setOnTest(true);
+        eval.addGenerator(recorder);
+
+        outContent.reset();
+        System.setOut(new PrintStream(outContent));
+        try {
+            eval.visit(cu.findFirst(MethodDeclaration.class).orElseThrow());
+        } finally {
+            System.setOut(standardOut);
+            MockingRegistry.reset();
+        }
+
+        assertEquals(1, outContent.toString().split("Start!", -1).length - 1);
+        assertEquals(2, stubs.size());
+        for (String stub : stubs) {
+            assertTrue(stub.contains("find()"), stub);
+            assertTrue(stub.contains("thenReturn"), stub);
+        }
+    }
+
+    @Test
+    void duplicatePreconditionsAreDropped() {
+        Precondition p = new Precondition(StaticJavaParser.parseExpression("a = 1"));
+        Precondition q = new Precondition(StaticJavaParser.parseExpression("a = 1"));
+        BranchSnapshot snapshot = BranchSnapshot.capture(branch, evaluator, new HashMap<>(), List.of(p, q));
+        assertEquals(1, snapshot.getPreconditions().size());
+    }
+
+    @Test
+    void sequentialBranchesResume() throws ReflectiveOperationException {
+        String withSnapshots = visitSequential(true);
+        String withoutSnapshots = visitSequential(false);
+
+        assertEquals(1, withSnapshots.split("Start!", -1).length - 1);
+        assertTrue(withoutSnapshots.split("Start!", -1).length - 1 > 1);
+        for (String path : List.of("A!", "B!")) {
+            assertTrue(withSnapshots.contains(path));
+            assertTrue(withoutSnapshots.contains(path));
+        }
+    }
+
+    private String visitSequential(boolean snapshots) throws ReflectiveOperationException {
+        return visit("Sequential", SEQUENTIAL, snapshots);
+    }
+
+    private String visit(String className, String source, boolean snapshots) throws ReflectiveOperationException {
+        Settings.setProperty(Settings.BRANCH_SNAPSHOTS, snapshots);
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        AntikytheraRunTime.addCompilationUnit(className, cu);
+        SpringEvaluator eval = EvaluatorFactory.create(className, SpringEvaluator.class);
+        eval.setArgumentGenerator(new DummyArgumentGenerator());
+
+        outContent.reset();
+        System.setOut(new PrintStream(outContent));
+        try {
+            eval.visit(cu.findFirst(MethodDeclaration.class).orElseThrow());
+        } finally {
+            System.setOut(standardOut);
+        }
+        return outContent.toString();
+    }
+}
@@ -0,0 +1,70 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestClassMetadata {
+
+    @Test
+    void methodsAreGroupedByNameAndArity() {
+        ClassMetadata metadata = ClassMetadata.of(String.class);
+        assertSame(metadata, ClassMetadata.of(String.class));
+
+        List<Method> valueOf = metadata.getMethods("valueOf");
+        assertEquals(Reflect.getMethodsByName(String.class, "valueOf"), valueOf);
+        assertTrue(valueOf.size() > 3);
+        assertThrows(UnsupportedOperationException.class, valueOf::clear);
+
+        List<Method> three = metadata.getMethods("valueOf", 3);
+        assertFalse(three.isEmpty());
+        assertTrue(three.stream().allMatch(m -> m.getParameterCount() == 3));
+        assertTrue(metadata.getMethods("valueOf", 7).isEmpty());
+        assertTrue(metadata.getMethods("nothing", 1).isEmpty());
+    }
+
+    @Test
+    void constructorsAreGroupedByArity() {
+        List<Constructor<?>> constructors = ClassMetadata.of(ArrayList.class).getConstructors(1);
+        assertEquals(2, constructors.size());
+        assertTrue(ClassMetadata.of(ArrayList.class).getConstructors(5).isEmpty());
+    }
+
+    @Test
+    void superTypesAreSearchedInOrder() {
+        List<Class<?>> order = ClassMetadata.of(ArrayList.class).getSearchOrder();
+        assertEquals(ArrayList.class, order.getFirst());
+        assertTrue(order.indexOf(List.class) < order.indexOf(AbstractList.class));
+        assertTrue(order.indexOf(Collection.class) < order.indexOf(AbstractList.class));
+        assertEquals(Object.class, order.getLast());
+        assertEquals(order.size(), order.stream().distinct().count());
+    }
+
+    @Test
+    void functionalInterfaces() {
+        ClassMetadata function = ClassMetadata.of(Function.class);
+        assertTrue(function.isFunctional());
+        assertFalse(function.implementsFunctional());
+        assertSame(Function.class, function.getFunctionalInterface());
+
+        ClassMetadata operator = ClassMetadata.of(UnaryOperator.class);
+        assertTrue(operator.implementsFunctional());
+        assertSame(Function.class, operator.getFunctionalInterface());
+
+        assertNull(ClassMetadata.of(String.class).getFunctionalInterface());
+    }
+}
@@ -0,0 +1,83 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestCompilationUnitStore {
+    private static final String STATIC = "sa.com.cloudsolutions.antikythera.evaluator.Static";
+    private static final String PERSON = "sa.com.cloudsolutions.antikythera.evaluator.IPerson";
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+        AntikytheraRunTime.resetAll();
+        AntikytheraRunTime.configureRetention(1);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        AntikytheraRunTime.resetAll();
+        AntikytheraRunTime.configureRetention(0);
+    }
+
+    @Test
+    void keepsOnlyTheMostRecentUnits() throws IOException {
+        CompilationUnitStore store = AntikytheraRunTime.getCompilationUnitStore().orElseThrow();
+
+        AbstractCompiler.reload("sa/com/cloudsolutions/antikythera/evaluator/Static.java");
+        assertEquals(0, store.getEvictions());
+        AbstractCompiler.reload("sa/com/cloudsolutions/antikythera/evaluator/IPerson.java");
+        assertEquals(1, store.getEvictions());
+        assertEquals(1, store.getResident());
+
+        CompilationUnit cu = AntikytheraRunTime.getCompilationUnit(STATIC);
+        assertNotNull(cu);
+        assertTrue(AbstractCompiler.getMatchingType(cu, STATIC).isPresent());
+        assertTrue(AntikytheraRunTime.isInterface(PERSON));
+        assertFalse(AntikytheraRunTime.isInterface(STATIC));
+        assertEquals(0, store.getReloads());
+    }
+
+    @Test
+    void evictedUnitsCanBeCollected() throws IOException, InterruptedException {
+        AntikytheraRunTime.configureRetention(0);
+        AntikytheraRunTime.configureRetention(1);
+        try {
+            CompilationUnitStore store = AntikytheraRunTime.getCompilationUnitStore().orElseThrow();
+            WeakReference<CompilationUnit> evicted = loadAndEvict();
+            assertEquals(1, store.getEvictions());
+
+            store.release(STATIC);
+            for (int i = 0; i < 50 && evicted.get() != null; i++) {
+                System.gc();
+                Thread.sleep(10);
+            }
+            assertNull(evicted.get());
+        } finally {
+            AntikytheraRunTime.configureRetention(0);
+            AntikytheraRunTime.configureRetention(1);
+        }
+    }
+
+    /**
+     * Loads a unit, caches types that were found through it and then pushes it out.
+     */
+    private static WeakReference<CompilationUnit> loadAndEvict() throws IOException {
+        CompilationUnit cu = AbstractCompiler.reload("sa/com/cloudsolutions/antikythera/evaluator/Static.java");
+        assertNotNull(AbstractCompiler.findType(cu, "Static"));
+        assertNotNull(AbstractCompiler.findType(cu, STATIC));
+        AbstractCompiler.reload("sa/com/cloudsolutions/antikythera/evaluator/IPerson.java");
+        return new WeakReference<>(cu);
+    }
+}
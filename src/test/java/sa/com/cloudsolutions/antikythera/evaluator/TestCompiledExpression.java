@@ -0,0 +1,94 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TestCompiledExpression {
+
+    @BeforeAll
+    static void setup() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @AfterAll
+    static void resetEngine() {
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+    }
+
+    private static Evaluator create(String engine) {
+        Settings.setProperty(Settings.EXECUTION_ENGINE, engine);
+        return EvaluatorFactory.create("", Evaluator.class);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"1 + 2 * 3", "(10 - 4) / 2", "\"a\" + 1 + 2", "3 > 2 ? 'y' : 'n'",
+            "true && (1 == 2 || 2 == 2)", "(long) 5L", "10 % 3 == 1", "null"})
+    void sameResultAsInterpreter(String code) throws ReflectiveOperationException {
+        Variable interpreted = create(null).evaluateExpression(StaticJavaParser.parseExpression(code));
+        Expression expr = StaticJavaParser.parseExpression(code);
+        Evaluator eval = create(Settings.COMPILED_ENGINE);
+
+        for (int i = 0; i < 2; i++) {
+            Variable compiled = eval.evaluateExpression(expr);
+            assertEquals(interpreted.getValue(), compiled.getValue());
+            assertEquals(interpreted.getClazz(), compiled.getClazz());
+            assertEquals(interpreted.getType(), compiled.getType());
+        }
+    }
+
+    @Test
+    void literalsAreNotParsedAgain() throws ReflectiveOperationException {
+        Expression expr = StaticJavaParser.parseExpression("42");
+        Evaluator eval = create(Settings.COMPILED_ENGINE);
+        Variable first = eval.evaluateExpression(expr);
+        Variable second = eval.evaluateExpression(expr);
+        assertNotSame(first, second);
+        assertSame(first.getValue(), second.getValue());
+        assertSame(first.getType(), second.getType());
+    }
+
+    @Test
+    void childrenFoldedLaterAreLookedUp() throws ReflectiveOperationException {
+        CompilationUnit cu = StaticJavaParser.parse("class A { static final int K = 4; int f(int x) { return x + K; } }");
+        Expression expr = cu.findFirst(ReturnStmt.class).flatMap(ReturnStmt::getExpression).orElseThrow();
+        Evaluator eval = create(Settings.COMPILED_ENGINE);
+        eval.setLocal(expr, "x", new Variable(1));
+        eval.setLocal(expr, "K", new Variable(4));
+        assertEquals(5, eval.evaluateExpression(expr).getValue());
+
+        /* K is no longer a local, only the folded value can tell what it is */
+        ConstantFolder.fold(cu);
+        eval.getLocals().clear();
+        eval.setLocal(expr, "x", new Variable(2));
+        assertEquals(6, eval.evaluateExpression(expr).getValue());
+    }
+
+    @Test
+    void recompilesReplacedChildren() throws ReflectiveOperationException {
+        Expression expr = StaticJavaParser.parseExpression("1 + 2");
+        Evaluator eval = create(Settings.COMPILED_ENGINE);
+        assertEquals(3, eval.evaluateExpression(expr).getValue());
+        CompiledExpression compiled = CompiledExpression.of(expr);
+
+        expr.asBinaryExpr().setRight(StaticJavaParser.parseExpression("5"));
+        assertEquals(6, eval.evaluateExpression(expr).getValue());
+        assertSame(compiled, CompiledExpression.of(expr));
+    }
+}
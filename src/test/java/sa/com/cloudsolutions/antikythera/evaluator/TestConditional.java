@@ -4,6 +4,7 @@ import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ConstructorDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -264,3 +265,18 @@ class TestConditionalWithOptional extends TestHelper {
     }
 }
 
+/**
+ * Runs every test of {@link TestConditional} again with the compiled execution engine.
+ */
+class TestConditionalCompiled extends TestConditional {
+    @BeforeAll
+    static void setup() throws IOException {
+        TestConditional.setup();
+        Settings.setProperty(Settings.EXECUTION_ENGINE, Settings.COMPILED_ENGINE);
+    }
+
+    @AfterAll
+    static void resetEngine() {
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+    }
+}
@@ -0,0 +1,135 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class TestConstantFolder {
+    private static final String CONSTANTS = """
+            public class Constants {
+                static final int MAX = 10;
+                static final String NAME = "a" + MAX;
+                static final long WIDE = 10;
+                static final int BROKEN = 1 / 0;
+                static int counter = 5;
+
+                int twice() {
+                    return MAX * 2 > 15 ? MAX * 2 : 0;
+                }
+
+                long wide() {
+                    return WIDE;
+                }
+
+                int shadow(int NAME) {
+                    return NAME + counter;
+                }
+            }
+            """;
+
+    private CompilationUnit cu;
+
+    @BeforeEach
+    void each() {
+        cu = StaticJavaParser.parse(CONSTANTS);
+        ConstantFolder.fold(cu);
+    }
+
+    private Expression initializer(String name) {
+        return cu.findFirst(VariableDeclarator.class, v -> v.getNameAsString().equals(name))
+                .orElseThrow().getInitializer().orElseThrow();
+    }
+
+    private Expression returned(String method) {
+        return cu.findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(method))
+                .orElseThrow().findFirst(ReturnStmt.class).orElseThrow().getExpression().orElseThrow();
+    }
+
+    @Test
+    void foldsConstants() {
+        assertEquals("a10", ConstantFolder.lookup(initializer("NAME")).getValue());
+        assertEquals(20, ConstantFolder.lookup(returned("twice")).getValue());
+        assertEquals(10, ConstantFolder.lookup(initializer("WIDE")).getValue());
+    }
+
+    @Test
+    void leavesTheRestAlone() {
+        assertNull(ConstantFolder.lookup(initializer("BROKEN")));
+        BinaryExpr shadow = returned("shadow").asBinaryExpr();
+        assertNull(ConstantFolder.lookup(shadow));
+        assertNull(ConstantFolder.lookup(shadow.getLeft()));
+        assertNull(ConstantFolder.lookup(shadow.getRight()));
+
+        /* the initializer is an int but the field is a long */
+        assertNull(ConstantFolder.lookup(returned("wide")));
+    }
+
+    @Test
+    void copiesAreHandedOut() {
+        Expression expr = initializer("MAX");
+        Variable first = ConstantFolder.lookup(expr);
+        first.setValue(11);
+        assertEquals(10, ConstantFolder.lookup(expr).getValue());
+        assertNotSame(first, ConstantFolder.lookup(expr));
+        assertSame(first.getType(), ConstantFolder.lookup(expr).getType());
+    }
+
+    @Test
+    void replacedPartsAreNoticed() {
+        BinaryExpr name = initializer("NAME").asBinaryExpr();
+        name.setRight(new IntegerLiteralExpr("1"));
+        assertNull(ConstantFolder.lookup(name));
+
+        initializer("MAX").replace(new NameExpr("counter"));
+        assertNull(ConstantFolder.lookup(returned("twice")));
+    }
+
+    @Test
+    void changesFurtherDownAreNoticed() {
+        Expression twice = returned("twice");
+        assertEquals(20, ConstantFolder.lookup(twice).getValue());
+        initializer("MAX").asIntegerLiteralExpr().setValue("5");
+        assertNull(ConstantFolder.lookup(twice));
+        assertNull(ConstantFolder.lookup(initializer("NAME")));
+        assertNull(ConstantFolder.lookup(initializer("MAX")));
+    }
+
+    @Test
+    void renamedNamesAreNoticed() {
+        Expression twice = returned("twice");
+        twice.findFirst(NameExpr.class).orElseThrow().getName().setIdentifier("counter");
+        assertNull(ConstantFolder.lookup(twice));
+    }
+
+    @Test
+    void fieldsThatAreNoLongerFinalAreNoticed() {
+        cu.findFirst(FieldDeclaration.class).orElseThrow().removeModifier(Modifier.Keyword.FINAL);
+        assertNull(ConstantFolder.lookup(returned("twice")));
+        assertNull(ConstantFolder.lookup(initializer("NAME")));
+        assertEquals(10, ConstantFolder.lookup(initializer("MAX")).getValue());
+    }
+
+    @Test
+    void clonesAreFoldedAgain() {
+        CompilationUnit copy = cu.clone();
+        ConstantFolder.fold(copy);
+        Expression expr = copy.findFirst(MethodDeclaration.class).orElseThrow()
+                .findFirst(ReturnStmt.class).orElseThrow().getExpression().orElseThrow();
+        assertEquals(20, ConstantFolder.lookup(expr).getValue());
+    }
+}
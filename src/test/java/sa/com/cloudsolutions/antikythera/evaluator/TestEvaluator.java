@@ -2,11 +2,14 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
 import sa.com.cloudsolutions.antikythera.exception.AntikytheraException;
 import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.DoubleLiteralExpr;
 import com.github.javaparser.ast.expr.Expression;
@@ -15,6 +18,7 @@ import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
 import org.junit.jupiter.api.Test;
 import sa.com.cloudsolutions.antikythera.finch.Finch;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
@@ -28,7 +32,9 @@ import java.util.Map;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestEvaluator extends TestHelper {
@@ -164,6 +170,61 @@ class TestEvaluator extends TestHelper {
 
         assertEquals(1, evaluator.getFieldInitializers().size());
     }
+
+    @Test
+    void identicalBlocksHaveSeparateLocals() {
+        CompilationUnit cu = StaticJavaParser.parse("""
+                class TestClass {
+                    void run() {
+                        { int a = 1; }
+                        { int a = 1; }
+                    }
+                }
+                """);
+        MethodDeclaration md = cu.findFirst(MethodDeclaration.class).orElseThrow();
+        BlockStmt first = md.getBody().orElseThrow().getStatement(0).asBlockStmt();
+        BlockStmt second = md.getBody().orElseThrow().getStatement(1).asBlockStmt();
+        assertEquals(first, second);
+
+        Evaluator eval = EvaluatorFactory.create("", Evaluator.class);
+        eval.setLocal(first.findFirst(VariableDeclarator.class).orElseThrow(), "a", new Variable(1));
+
+        assertEquals(1, eval.getLocal(first.getStatement(0), "a").getValue());
+        assertNull(eval.getLocal(second.getStatement(0), "a"));
+        assertNull(eval.getLocal(md, "a"));
+    }
+
+    @Test
+    void namesAreResolvedToSlots() {
+        CompilationUnit cu = StaticJavaParser.parse("""
+                class TestClass {
+                    void run(int p) {
+                        int a = p;
+                        if (p > 0) {
+                            a = a + b;
+                        }
+                    }
+                }
+                """);
+        MethodDeclaration md = cu.findFirst(MethodDeclaration.class).orElseThrow();
+        BlockStmt body = md.getBody().orElseThrow();
+        BinaryExpr sum = md.findFirst(BinaryExpr.class, b -> b.getOperator() == BinaryExpr.Operator.PLUS).orElseThrow();
+        NameExpr a = sum.getLeft().asNameExpr();
+        NameExpr b = sum.getRight().asNameExpr();
+
+        Evaluator eval = EvaluatorFactory.create("", Evaluator.class);
+        eval.setLocal(body, "p", new Variable(3));
+        eval.setLocal(md.findFirst(VariableDeclarator.class).orElseThrow(), "a", new Variable(4));
+
+        assertSame(body, BlockScope.resolved(a, "a").block());
+        assertEquals(4, eval.getLocal(a, "a").getValue());
+        assertNull(BlockScope.resolved(a.clone(), "a"));
+
+        assertNull(BlockScope.resolved(b, "b").block());
+        assertNull(eval.getLocal(b, "b"));
+        eval.setLocal(sum, "b", new Variable(5));
+        assertEquals(5, eval.getLocal(b, "b").getValue());
+    }
 }
 
 class TestEvaluatorWithFinches extends TestHelper {
@@ -201,4 +262,46 @@ class TestEvaluatorWithFinches extends TestHelper {
         assertNotNull(v);
     }
 
+    @Test
+    void testFieldsOfNewEvaluatorsAreFresh() {
+        String cls = """
+                import java.util.ArrayList;
+                import java.util.List;
+
+                class Row {
+                    int count = 1;
+                    String name;
+                    List<String> names = new ArrayList<>();
+                }
+                """;
+        CompilationUnit cu = StaticJavaParser.parse(cls);
+        AntikytheraRunTime.addCompilationUnit("Row", cu);
+
+        Evaluator first = EvaluatorFactory.create("Row", Evaluator.class);
+        first.getField("count").setValue(5);
+        first.getField("name").setValue("changed");
+
+        for (int i = 0; i < 2; i++) {
+            Evaluator next = EvaluatorFactory.create("Row", Evaluator.class);
+            assertEquals(1, next.getField("count").getValue());
+            assertNull(next.getField("name").getValue());
+            assertNotSame(first.getField("names").getValue(), next.getField("names").getValue());
+        }
+    }
+}
+
+/**
+ * Runs every test of {@link TestEvaluator} again with the compiled execution engine.
+ */
+class TestEvaluatorCompiled extends TestEvaluator {
+    @BeforeAll
+    static void setup() throws IOException {
+        TestEvaluator.setup();
+        Settings.setProperty(Settings.EXECUTION_ENGINE, Settings.COMPILED_ENGINE);
+    }
+
+    @AfterAll
+    static void resetEngine() {
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+    }
 }
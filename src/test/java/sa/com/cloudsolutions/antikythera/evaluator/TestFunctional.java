@@ -1,7 +1,11 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,14 +13,26 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.CsvSource;
 import org.junit.jupiter.params.provider.ValueSource;
 import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FPEvaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalAdapters;
+import sa.com.cloudsolutions.antikythera.evaluator.functional.FunctionalConverter;
 import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.lang.reflect.Proxy;
+import java.util.Comparator;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TestFunctional extends TestHelper{
 
@@ -68,4 +84,57 @@ class TestFunctional extends TestHelper{
         assertNull(v.getValue());
         assertEquals("{25=A, 30=B}\n", outContent.toString());
     }
+
+    private FPEvaluator<?> lambda(String code) {
+        LambdaExpr lambda = StaticJavaParser.parseExpression("list.stream().map(" + code + ")")
+                .findFirst(LambdaExpr.class).orElseThrow();
+        return (FPEvaluator<?>) FPEvaluator.create(lambda, evaluator).getValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testAdapters() {
+        FPEvaluator<?> twice = lambda("x -> x * 2");
+        Function<Object, Object> f = (Function<Object, Object>) FunctionalAdapters.create(Function.class, twice);
+        assertInstanceOf(FunctionalAdapters.Adapter.class, f);
+        assertEquals(6, f.apply(3));
+        assertSame(twice, FunctionalAdapters.evaluatorOf(f));
+        assertSame(f.getClass(), FunctionalAdapters.create(Function.class, lambda("y -> y")).getClass());
+
+        Predicate<Object> big = (Predicate<Object>) FunctionalAdapters.create(Predicate.class, lambda("x -> x > 1"));
+        assertTrue(big.test(2));
+        assertTrue(big.negate().test(1));
+
+        Comparator<Object> reverse = (Comparator<Object>) FunctionalAdapters.create(Comparator.class, lambda("(a, b) -> b - a"));
+        assertTrue(reverse.compare(1, 2) > 0);
+
+        /* Function.apply takes one argument where the lambda needs two */
+        Object proxy = FunctionalAdapters.create(Function.class, lambda("(a, b) -> a + b"));
+        assertTrue(Proxy.isProxyClass(proxy.getClass()));
+        assertFalse(proxy instanceof FunctionalAdapters.Adapter);
+        assertInstanceOf(FPEvaluator.class, FunctionalAdapters.evaluatorOf(proxy));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testLambdasAreConvertedOnce() {
+        MethodCallExpr call = StaticJavaParser.parseExpression("list.stream().map(x -> x + 1)").asMethodCallExpr();
+        LambdaExpr lambda = call.getArgument(0).asLambdaExpr();
+        int children = call.getChildNodes().size();
+
+        FPEvaluator<?> first = (FPEvaluator<?>) FPEvaluator.create(lambda, evaluator).getValue();
+        FPEvaluator<?> second = (FPEvaluator<?>) FPEvaluator.create(lambda, evaluator).getValue();
+        assertNotSame(first, second);
+        assertEquals(3, ((Function<Object, Object>) second).apply(2));
+        assertEquals(children + 1, call.getChildNodes().size());
+
+        MethodCallExpr forEach = StaticJavaParser.parseExpression("list.forEach(System.out::println)").asMethodCallExpr();
+        MethodReferenceExpr reference = forEach.getArgument(0).asMethodReferenceExpr();
+        LambdaExpr converted = FunctionalConverter.convertToLambda(reference, null);
+        assertSame(converted, FunctionalConverter.convertToLambda(reference, null));
+
+        /* the clone carries the data of the original along but gets a lambda of its own */
+        MethodReferenceExpr copy = forEach.clone().getArgument(0).asMethodReferenceExpr();
+        assertNotSame(converted, FunctionalConverter.convertToLambda(copy, null));
+    }
 }
@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.evaluator;
 
+import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import org.junit.jupiter.api.BeforeAll;
@@ -16,7 +17,9 @@ import java.io.PrintStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 class TestInheritance extends TestHelper {
 
@@ -42,6 +45,43 @@ class TestInheritance extends TestHelper {
         assertNull(evaluator.fields.get("name").getValue());
     }
 
+    @Test
+    void testFieldPlan() {
+        CompilationUnit cu = evaluator.getCompilationUnit();
+        FieldPlan plan = FieldPlan.of(cu, evaluator.getClassName(), cu.getType(0));
+        assertSame(plan, FieldPlan.of(cu, evaluator.getClassName(), cu.getType(0)));
+
+        CompilationUnit copy = cu.clone();
+        assertNotSame(plan, FieldPlan.of(copy, evaluator.getClassName(), copy.getType(0)));
+
+        evaluator.fields.clear();
+        evaluator.setupFields();
+        assertEquals(6, evaluator.fields.size());
+        assertEquals(0, evaluator.fields.get("id").getValue());
+        assertNull(evaluator.fields.get("name").getValue());
+    }
+
+    @Test
+    void testFieldPlanFollowsParent() {
+        CompilationUnit cu = evaluator.getCompilationUnit();
+        FieldPlan plan = FieldPlan.of(cu, evaluator.getClassName(), cu.getType(0));
+        assertEquals(2, plan.lineage().size());
+        FieldPlan parent = plan.lineage().get(1);
+        int fields = plan.getFields().size();
+
+        String parentName = "sa.com.cloudsolutions.antikythera.evaluator.Person";
+        CompilationUnit parentCu = AntikytheraRunTime.getCompilationUnit(parentName);
+        try {
+            AntikytheraRunTime.addCompilationUnit(parentName, parentCu.clone());
+            assertSame(plan, FieldPlan.of(cu, evaluator.getClassName(), cu.getType(0)));
+            assertNotSame(parent, plan.lineage().get(1));
+            assertEquals(fields, plan.getFields().size());
+        } finally {
+            AntikytheraRunTime.addCompilationUnit(parentName, parentCu);
+        }
+        assertSame(parent, plan.lineage().get(1));
+    }
+
     @Test
     void testGetterSetterAnnotation() throws ReflectiveOperationException {
         evaluator.getCompilationUnit().getType(0).addAnnotation("Getter");
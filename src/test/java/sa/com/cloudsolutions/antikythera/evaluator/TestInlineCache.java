@@ -0,0 +1,138 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TestInlineCache {
+    public static class Overloads {
+        public String pick(int i) {
+            return "int";
+        }
+
+        public String pick(String s) {
+            return "String";
+        }
+
+        public String pick(Runnable r) {
+            return "Runnable";
+        }
+    }
+
+    private final InlineCache<InlineCache.Dispatch> cache = InlineCache.forReflectiveCalls();
+    private final AtomicInteger searches = new AtomicInteger();
+
+    @BeforeEach
+    void each() {
+        cache.resetCounters();
+        searches.set(0);
+    }
+
+    private InlineCache.Dispatch search() {
+        searches.incrementAndGet();
+        return new InlineCache.Dispatch(null, new Class<?>[0]);
+    }
+
+    @Test
+    void monomorphicSite() {
+        MethodCallExpr call = new MethodCallExpr("run");
+        for (int i = 0; i < 10; i++) {
+            cache.get(call, String.class, List.of(Integer.class), this::search);
+        }
+        assertEquals(1, searches.get());
+        assertEquals(9, cache.getHits());
+        assertEquals(0.9, cache.getHitRate(), 0.001);
+
+        cache.get(call, String.class, List.of(Long.class), this::search);
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void identicalCallsAreSeparateSites() {
+        cache.get(new MethodCallExpr("run"), String.class, null, this::search);
+        cache.get(new MethodCallExpr("run"), String.class, null, this::search);
+        assertEquals(2, searches.get());
+    }
+
+    @Test
+    void megamorphicSite() {
+        MethodCallExpr call = new MethodCallExpr("run");
+        List<Class<?>> receivers = List.of(String.class, Integer.class, Long.class, Double.class, Float.class);
+        for (int i = 0; i < 2; i++) {
+            for (Class<?> receiver : receivers) {
+                cache.get(call, receiver, null, this::search);
+            }
+        }
+        assertEquals(receivers.size() + 1, searches.get());
+        assertEquals(InlineCache.POLYMORPHIC_LIMIT, cache.getHits());
+    }
+
+    @Test
+    void invalidate() {
+        MethodCallExpr call = new MethodCallExpr("run");
+        cache.get(call, String.class, null, this::search);
+        InlineCache.invalidate();
+        cache.get(call, String.class, null, this::search);
+        assertEquals(2, searches.get());
+    }
+
+    /**
+     * Look up pick at the call site, and check the outcome against a search that is not cached,
+     * including the argument types that the search leaves behind.
+     */
+    private static Method pick(MethodCallExpr call, Object argument, Class<?> type) {
+        ReflectionArguments search = new ReflectionArguments("pick", new Object[] {argument}, new Class<?>[] {type});
+        Method expected = Reflect.findAccessibleMethod(Overloads.class, search);
+
+        ReflectionArguments cached = new ReflectionArguments("pick", new Object[] {argument}, new Class<?>[] {type});
+        Method method = Reflect.findAccessibleMethod(Overloads.class, cached, call);
+        assertEquals(expected, method);
+        assertArrayEquals(search.getArgumentTypes(), cached.getArgumentTypes());
+        return method;
+    }
+
+    @Test
+    void primitiveAndBoxedArgumentsAtTheSameSite() throws NoSuchMethodException {
+        MethodCallExpr call = new MethodCallExpr("pick");
+        Method primitive = Overloads.class.getMethod("pick", int.class);
+
+        assertEquals(primitive, pick(call, 1, int.class));
+        assertEquals(primitive, pick(call, 2, Integer.class));
+        assertEquals(primitive, pick(call, 3, int.class));
+        assertEquals(primitive, pick(call, 4, Integer.class));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void nullAndNonNullArgumentsAtTheSameSite() throws NoSuchMethodException {
+        MethodCallExpr call = new MethodCallExpr("pick");
+        Method string = Overloads.class.getMethod("pick", String.class);
+
+        pick(call, null, null);
+        assertEquals(string, pick(call, "a", String.class));
+        pick(call, null, null);
+        assertEquals(string, pick(call, "b", String.class));
+        assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    void lambdaArgumentsAtTheSameSite() throws NoSuchMethodException {
+        MethodCallExpr call = new MethodCallExpr("pick");
+        Method runnable = Overloads.class.getMethod("pick", Runnable.class);
+        Runnable first = () -> {};
+        Runnable second = () -> searches.incrementAndGet();
+
+        assertEquals(runnable, pick(call, first, first.getClass()));
+        assertEquals(Overloads.class.getMethod("pick", int.class), pick(call, 1, int.class));
+        assertEquals(runnable, pick(call, second, second.getClass()));
+        assertEquals(runnable, pick(call, first, first.getClass()));
+        assertEquals(1, cache.getHits());
+    }
+}
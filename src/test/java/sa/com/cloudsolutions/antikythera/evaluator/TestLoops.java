@@ -2,6 +2,7 @@ package sa.com.cloudsolutions.antikythera.evaluator;
 
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -50,3 +51,19 @@ public class TestLoops extends  TestHelper {
         assertEquals("0\n1\n2\n3\n4\n5\n6\n7\n8\n9\n", outContent.toString());
     }
 }
+
+/**
+ * Runs every test of {@link TestLoops} again with the compiled execution engine.
+ */
+class TestLoopsCompiled extends TestLoops {
+    @BeforeAll
+    static void setup() throws IOException {
+        TestLoops.setup();
+        Settings.setProperty(Settings.EXECUTION_ENGINE, Settings.COMPILED_ENGINE);
+    }
+
+    @AfterAll
+    static void resetEngine() {
+        Settings.setProperty(Settings.EXECUTION_ENGINE, null);
+    }
+}
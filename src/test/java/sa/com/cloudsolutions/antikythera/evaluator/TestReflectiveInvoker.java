@@ -0,0 +1,69 @@
+package sa.com.cloudsolutions.antikythera.evaluator;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TestReflectiveInvoker {
+
+    @Test
+    void invokesMethods() throws ReflectiveOperationException {
+        ReflectiveInvoker invoker = ReflectiveInvoker.of(String.class.getMethod("substring", int.class, int.class));
+        assertTrue(invoker.isAccessible());
+        assertEquals("ell", invoker.invoke("hello", new Object[] {1, 4}));
+        assertSame(invoker, ReflectiveInvoker.of(String.class.getMethod("substring", int.class, int.class)));
+
+        List<String> list = new ArrayList<>();
+        assertNull(ReflectiveInvoker.of(List.class.getMethod("clear")).invoke(list, null));
+        assertEquals(true, ReflectiveInvoker.of(List.class.getMethod("add", Object.class)).invoke(list, new Object[] {"a"}));
+        assertEquals(List.of("a"), list);
+    }
+
+    @Test
+    void invokesStaticMethodsAndConstructors() throws ReflectiveOperationException {
+        assertEquals(42, ReflectiveInvoker.of(Integer.class.getMethod("parseInt", String.class))
+                .invoke(null, new Object[] {"42"}));
+        assertEquals("x", ReflectiveInvoker.of(StringBuilder.class.getConstructor(String.class))
+                .invoke(null, new Object[] {"x"}).toString());
+    }
+
+    @Test
+    void argumentsAreWidened() throws ReflectiveOperationException {
+        ReflectiveInvoker invoker = ReflectiveInvoker.of(Math.class.getMethod("max", long.class, long.class));
+        assertEquals(5L, invoker.invoke(null, new Object[] {5, 3L}));
+        assertThrows(IllegalArgumentException.class, () -> invoker.invoke(null, new Object[] {"5", 3L}));
+    }
+
+    @Test
+    void exceptionsAreWrapped() throws ReflectiveOperationException {
+        ReflectiveInvoker invoker = ReflectiveInvoker.of(Integer.class.getMethod("parseInt", String.class));
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> invoker.invoke(null, new Object[] {"x"}));
+        assertInstanceOf(NumberFormatException.class, e.getCause());
+    }
+
+    @Test
+    void inaccessibleMethodsUseAPublicSubstitute() throws ReflectiveOperationException {
+        Collection<String> list = Collections.unmodifiableCollection(new ArrayList<>(List.of("a", "b")));
+        Method size = list.getClass().getMethod("size");
+        ReflectiveInvoker invoker = ReflectiveInvoker.of(size);
+        assertFalse(invoker.isAccessible());
+
+        Method substitute = invoker.publicSubstitute(list.getClass(), new Class<?>[0]);
+        assertSame(substitute, invoker.publicSubstitute(list.getClass(), new Class<?>[0]));
+        assertEquals(2, ReflectiveInvoker.of(substitute).invoke(list, null));
+    }
+}
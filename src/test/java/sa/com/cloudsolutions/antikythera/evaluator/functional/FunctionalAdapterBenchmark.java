@@ -0,0 +1,88 @@
+package sa.com.cloudsolutions.antikythera.evaluator.functional;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.Evaluator;
+import sa.com.cloudsolutions.antikythera.evaluator.EvaluatorFactory;
+import sa.com.cloudsolutions.antikythera.parser.AbstractCompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Compares a stream pipeline whose lambdas are evaluated through the generated adapters of
+ * {@link FunctionalAdapters} with the same pipeline going through {@link Proxy} instances.
+ *
+ * Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *     -Dexec.args=FunctionalAdapterBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionalAdapterBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    List<Integer> numbers;
+    FPEvaluator<?> mapper;
+    FPEvaluator<?> filter;
+
+    @Setup
+    public void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator.yml"));
+        AbstractCompiler.reset();
+        Evaluator enclosure = EvaluatorFactory.create("", Evaluator.class);
+        mapper = lambda("x -> x * 2", enclosure);
+        filter = lambda("x -> x % 3 == 0", enclosure);
+        numbers = IntStream.range(0, size).boxed().toList();
+    }
+
+    private static FPEvaluator<?> lambda(String code, Evaluator enclosure) {
+        LambdaExpr lambda = StaticJavaParser.parseExpression("numbers.stream().map(" + code + ")")
+                .findFirst(LambdaExpr.class).orElseThrow();
+        return (FPEvaluator<?>) FPEvaluator.create(lambda, enclosure).getValue();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Object> adapters() {
+        Function<Object, Object> map = (Function<Object, Object>) FunctionalAdapters.create(Function.class, mapper);
+        Predicate<Object> test = (Predicate<Object>) FunctionalAdapters.create(Predicate.class, filter);
+        return numbers.stream().map(map).filter(test).toList();
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Object> proxies() {
+        Function<Object, Object> map = (Function<Object, Object>) Proxy.newProxyInstance(Function.class.getClassLoader(),
+                new Class<?>[]{Function.class}, new FunctionalInvocationHandler(mapper));
+        Predicate<Object> test = (Predicate<Object>) Proxy.newProxyInstance(Predicate.class.getClassLoader(),
+                new Class<?>[]{Predicate.class}, new FunctionalInvocationHandler(filter));
+        return numbers.stream().map(map).filter(test).toList();
+    }
+}
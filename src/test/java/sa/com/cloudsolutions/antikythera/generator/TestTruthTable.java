@@ -1,5 +1,6 @@
 package sa.com.cloudsolutions.antikythera.generator;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
@@ -13,8 +14,12 @@ import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -26,6 +31,7 @@ class TestTruthTable {
     void setUp() {
         System.setOut(new PrintStream(outContent));
         AntikytheraRunTime.reset();
+        SolutionCache.clear();
     }
 
     @AfterEach
@@ -361,6 +367,25 @@ class TestTruthTable {
         assertFalse(v.isEmpty());
     }
 
+    @Test
+    void testValuesStayInsideTheDomain() {
+        TruthTable tt = new TruthTable("x > 0");
+        tt.generateTruthTable();
+
+        List<Map<Expression, Object>> v = tt.findValuesForCondition(false);
+        assertEquals(-1, v.getFirst().get(new NameExpr("x")));
+        assertEquals(1, tt.findValuesForCondition(true).getFirst().get(new NameExpr("x")));
+
+        tt = new TruthTable("a > b && b > 0");
+        tt.generateTruthTable();
+        v = tt.findValuesForCondition(false);
+        assertEquals(0, v.getFirst().get(new NameExpr("a")));
+        assertEquals(-1, v.getFirst().get(new NameExpr("b")));
+        for (Map<Expression, Object> row : v) {
+            assertTrue((int) row.get(new NameExpr("a")) >= 0);
+        }
+    }
+
     @Test
     void testLongLiteralExpression() {
         // Test with a long literal in a greater than comparison
@@ -543,4 +568,220 @@ class TestTruthTable {
             assertTrue(bValue >= (int) row.get(new NameExpr("c")), "b should be greater than or equal to c");
         }
     }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a > b && c == d", "a != null && b != null", "a && b || !c", "a > b && b > c",
+            "a < 0", "person.getName() != null", "a > 5 && a.equals(7)", "!list.isEmpty() && a > 3"})
+    void testSolveMatchesTable(String condition) {
+        for (boolean state : new boolean[] {true, false}) {
+            TruthTable tt = new TruthTable(condition);
+            tt.generateTruthTable();
+            List<Map<Expression, Object>> v = tt.findValuesForCondition(state);
+
+            Optional<Map<Expression, Object>> solved = new TruthTable(condition).solve(state);
+            assertTrue(solved.isPresent());
+            assertEquals(v.getFirst(), solved.get());
+        }
+    }
+
+    @Test
+    void testSolveWideCondition() {
+        String condition = IntStream.range(0, 40).mapToObj(i -> "v" + i).collect(Collectors.joining(" && "));
+        TruthTable tt = new TruthTable(condition);
+
+        Map<Expression, Object> v = tt.solve(true).orElseThrow();
+        assertEquals(40, v.size());
+        assertTrue(v.values().stream().allMatch(Boolean.TRUE::equals));
+
+        v = tt.solve(false).orElseThrow();
+        assertTrue(v.containsValue(false));
+        assertNull(tt.getTable());
+    }
+
+    @Test
+    void testSolveMixedGuard() {
+        TruthTable tt = new TruthTable("a > 100 && b < 50 && c && d != null");
+        Map<Expression, Object> v = tt.solve(true).orElseThrow();
+        assertTrue((int) v.get(new NameExpr("a")) > 100);
+        assertTrue((int) v.get(new NameExpr("b")) < 50);
+        assertEquals(true, v.get(new NameExpr("c")));
+        assertNotNull(v.get(new NameExpr("d")));
+
+        assertTrue(tt.solve(false).isPresent());
+    }
+
+    @Test
+    void testSolveImpossible() {
+        assertTrue(new TruthTable("a > b && b > a").solve(true).isEmpty());
+        assertTrue(new TruthTable("x && !x").solve(true).isEmpty());
+        assertTrue(new TruthTable("a == null && a != null").solve(true).isEmpty());
+    }
+
+    @Test
+    void testSolveWithConstraints() {
+        TruthTable tt = new TruthTable("a > b && b > c");
+        tt.addConstraint(new NameExpr("a"),
+                new BinaryExpr(new NameExpr("a"), new IntegerLiteralExpr("5"), BinaryExpr.Operator.GREATER));
+
+        Map<Expression, Object> v = tt.solve(true).orElseThrow();
+        int a = (int) v.get(new NameExpr("a"));
+        int b = (int) v.get(new NameExpr("b"));
+        assertTrue(a > 5);
+        assertTrue(a > b && b > (int) v.get(new NameExpr("c")));
+    }
+
+    @Test
+    void testLazyValuesMatchTable() {
+        TruthTable tt = new TruthTable("a > b && c == d");
+        List<Map<Expression, Object>> lazy = tt.findValuesForCondition(false);
+        assertNull(tt.getTable());
+        assertEquals(232, lazy.size());
+
+        tt.generateTruthTable();
+        assertEquals(lazy, tt.findValuesForCondition(false));
+        assertEquals(lazy.subList(0, 3), tt.findValuesForCondition(false, 3));
+        assertEquals(256, tt.getTable().size());
+    }
+
+    @Test
+    void testLazyValuesStopEarly() {
+        String condition = IntStream.range(0, 30).mapToObj(i -> "v" + i).collect(Collectors.joining(" || "));
+        TruthTable tt = new TruthTable(condition);
+
+        List<Map<Expression, Object>> v = tt.findValuesForCondition(true, 3);
+        assertEquals(3, v.size());
+        assertTrue(v.stream().allMatch(row -> row.containsValue(true)));
+        assertEquals(v.getFirst(), tt.streamValuesForCondition(true).findFirst().orElseThrow());
+        assertNull(tt.getTable());
+    }
+
+    @Test
+    void testSolutionsSharedAcrossRenamedConditions() {
+        Map<Expression, Object> first = new TruthTable("user != null && !user.getName().isEmpty() && age > 18")
+                .solve(true).orElseThrow();
+        assertEquals(0, SolutionCache.getHits());
+        assertEquals(1, SolutionCache.getMisses());
+
+        Map<Expression, Object> second = new TruthTable("order != null && !order.getId().isEmpty() && count > 18")
+                .solve(true).orElseThrow();
+        assertEquals(1, SolutionCache.getHits());
+        assertEquals(0.5, SolutionCache.getHitRate());
+
+        assertEquals(first.get(new NameExpr("user")), second.get(new NameExpr("order")));
+        assertEquals(first.get(new NameExpr("age")), second.get(new NameExpr("count")));
+        assertFalse(second.containsKey(new NameExpr("user")));
+        assertTrue((int) second.get(new NameExpr("count")) > 18);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testCachedSolutionsUseTheirOwnCondition() {
+        Expression names = StaticJavaParser.parseExpression("!names.isEmpty()");
+        List<Object> solved = (List<Object>) new TruthTable(names).solve(false).orElseThrow().get(new NameExpr("names"));
+        solved.add("changed");
+
+        Expression items = StaticJavaParser.parseExpression("!items.isEmpty()");
+        Map<Expression, Object> values = new TruthTable(items).solve(false).orElseThrow();
+        assertEquals(1, SolutionCache.getHits());
+        Expression key = values.keySet().iterator().next();
+        assertTrue(items.findAll(Expression.class).stream().anyMatch(e -> e == key));
+
+        List<Object> cached = (List<Object>) values.get(key);
+        assertTrue(cached.isEmpty());
+        cached.add("changed");
+        assertTrue(((List<?>) new TruthTable("!things.isEmpty()").solve(false).orElseThrow()
+                .get(new NameExpr("things"))).isEmpty());
+    }
+
+    @Test
+    void testSolutionsKeptApart() {
+        new TruthTable("a > b").solve(true);
+        new TruthTable("x > y").solve(false);
+        new TruthTable("x > 1").solve(true);
+
+        TruthTable constrained = new TruthTable("x > y");
+        constrained.addConstraint(new NameExpr("x"),
+                new BinaryExpr(new NameExpr("x"), new IntegerLiteralExpr("5"), BinaryExpr.Operator.GREATER));
+        assertTrue((int) constrained.solve(true).orElseThrow().get(new NameExpr("x")) > 5);
+
+        assertEquals(0, SolutionCache.getHits());
+        assertEquals(4, SolutionCache.getMisses());
+    }
+
+    @Test
+    void testLargeLiteralsGiveFewRows() {
+        TruthTable tt = new TruthTable("a > 10000 && a < 20000");
+        tt.generateTruthTable();
+        assertTrue(tt.getTable().size() <= 10);
+
+        List<Map<Expression, Object>> v = tt.findValuesForCondition(true);
+        assertFalse(v.isEmpty());
+        for (Map<Expression, Object> row : v) {
+            int a = (int) row.get(new NameExpr("a"));
+            assertTrue(a > 10000 && a < 20000);
+        }
+        assertFalse(tt.findValuesForCondition(false).isEmpty());
+    }
+
+    @Test
+    void testBoundariesSharedByComparedVariables() {
+        TruthTable tt = new TruthTable("a > b && b > c && c <= 5000");
+        tt.generateTruthTable();
+        assertTrue(tt.getTable().size() < 1000);
+
+        List<Map<Expression, Object>> v = tt.findValuesForCondition(true);
+        assertFalse(v.isEmpty());
+        assertTrue(v.stream().anyMatch(row -> (int) row.get(new NameExpr("c")) == 5000));
+    }
+
+    @Test
+    void testConstraintsNarrowTheInterval() {
+        TruthTable tt = new TruthTable("a > b");
+        tt.addConstraint(new NameExpr("a"),
+                new BinaryExpr(new NameExpr("a"), new IntegerLiteralExpr("9990"), BinaryExpr.Operator.GREATER_EQUALS));
+        tt.addConstraint(new NameExpr("a"),
+                new BinaryExpr(new NameExpr("a"), new IntegerLiteralExpr("10000"), BinaryExpr.Operator.LESS_EQUALS));
+        tt.generateTruthTable();
+
+        List<Map<Expression, Object>> rows = tt.getTable();
+        assertFalse(rows.isEmpty());
+        assertTrue(rows.size() < 200);
+        for (Map<Expression, Object> row : rows) {
+            int a = (int) row.get(new NameExpr("a"));
+            assertTrue(a >= 9990 && a <= 10000);
+        }
+        assertFalse(tt.findValuesForCondition(true).isEmpty());
+    }
+
+    @Test
+    void testContradictoryConstraints() {
+        TruthTable tt = new TruthTable("x > y");
+        tt.addConstraint(new NameExpr("x"),
+                new BinaryExpr(new NameExpr("x"), new IntegerLiteralExpr("10"), BinaryExpr.Operator.GREATER));
+        tt.addConstraint(new NameExpr("x"),
+                new BinaryExpr(new NameExpr("x"), new IntegerLiteralExpr("5"), BinaryExpr.Operator.LESS));
+
+        assertTrue(tt.solve(true).isEmpty());
+        assertTrue(tt.solve(false).isEmpty());
+        tt.generateTruthTable();
+        assertTrue(tt.getTable().isEmpty());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"a > b && c == d", "a == null || b == null", "a && b || !c", "a.equals(b)",
+            "a.equals(\"b\")", "a > 5 || a.equals(7)", "!list.isEmpty() && a > 3", "person.age > 18", "a > 2.5"})
+    void testCompiledRowsMatchEvaluation(String condition) {
+        Expression expr = StaticJavaParser.parseExpression(condition);
+        TruthTable tt = new TruthTable(expr);
+        tt.generateTruthTable();
+
+        List<Map<Expression, Object>> rows = tt.getTable();
+        assertFalse(rows.isEmpty());
+        for (Map<Expression, Object> row : rows) {
+            Map<Expression, Object> values = new HashMap<>(row);
+            values.remove(TruthTable.RESULT);
+            assertEquals(row.get(TruthTable.RESULT),
+                    TruthTable.isTrue(tt.evaluateCondition(expr, values)), row.toString());
+        }
+    }
 }
@@ -0,0 +1,135 @@
+package sa.com.cloudsolutions.antikythera.generator;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.NameExpr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares evaluating the rows of a truth table by walking the condition with
+ * TruthTable.evaluateCondition against evaluating them with a {@link CompiledCondition}.
+ *
+ * The condition mixes booleans, numeric comparisons, null checks and isEmpty calls, two to a
+ * group, for example (v0 || n1 > 1) && (s2 != null || !l3.isEmpty()) for four variables.
+ *
+ * Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *     -Dexec.args=TruthTableBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TruthTableBenchmark {
+    private static final int ROWS = 1024;
+
+    @Param({"8", "12", "16", "20"})
+    int variables;
+
+    TruthTable table;
+    Expression condition;
+    CompiledCondition compiled;
+    List<Map<Expression, Object>> maps;
+    List<Object[]> arrays;
+
+    @Setup
+    public void setUp() {
+        StringJoiner groups = new StringJoiner(" && ");
+        Expression[] names = new Expression[variables];
+        for (int i = 0; i < variables; i += 2) {
+            groups.add("(" + clause(i, names) + " || " + clause(i + 1, names) + ")");
+        }
+        condition = StaticJavaParser.parseExpression(groups.toString());
+        table = new TruthTable(condition);
+
+        Map<Expression, Integer> index = new HashMap<>();
+        for (int i = 0; i < variables; i++) {
+            index.put(names[i], i);
+        }
+        compiled = CompiledCondition.compile(condition, index, Map.of());
+
+        Random random = new Random(42);
+        maps = new ArrayList<>();
+        arrays = new ArrayList<>();
+        for (int r = 0; r < ROWS; r++) {
+            Object[] values = new Object[variables];
+            Map<Expression, Object> map = new HashMap<>();
+            for (int i = 0; i < variables; i++) {
+                values[i] = switch (i % 4) {
+                    case 0 -> random.nextBoolean();
+                    case 1 -> random.nextInt(2 * variables);
+                    case 2 -> random.nextBoolean() ? "T" : null;
+                    default -> random.nextBoolean() ? List.of() : List.of(1);
+                };
+                map.put(names[i], values[i]);
+            }
+            arrays.add(values);
+            maps.add(map);
+        }
+    }
+
+    private static String clause(int i, Expression[] names) {
+        return switch (i % 4) {
+            case 0 -> {
+                names[i] = new NameExpr("v" + i);
+                yield "v" + i;
+            }
+            case 1 -> {
+                names[i] = new NameExpr("n" + i);
+                yield "n" + i + " > " + i;
+            }
+            case 2 -> {
+                names[i] = new NameExpr("s" + i);
+                yield "s" + i + " != null";
+            }
+            default -> {
+                names[i] = new NameExpr("l" + i);
+                yield "!l" + i + ".isEmpty()";
+            }
+        };
+    }
+
+    @Benchmark
+    public int interpreted() {
+        int count = 0;
+        for (Map<Expression, Object> row : maps) {
+            if (TruthTable.isTrue(table.evaluateCondition(condition, row))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int compiled() {
+        int count = 0;
+        for (Object[] row : arrays) {
+            if (compiled.test(row)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
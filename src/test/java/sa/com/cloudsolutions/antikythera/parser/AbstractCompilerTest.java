@@ -13,9 +13,17 @@ import java.io.File;
 import java.io.IOException;
 
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import sa.com.cloudsolutions.antikythera.generator.TypeWrapper;
 import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
 
 import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -60,6 +68,57 @@ class AbstractCompilerTest {
         assertSame(first, second);
     }
 
+    @Test
+    void preProcessLinksInterfacesWithSingleThread() throws IOException {
+        Settings.setProperty(Settings.PARALLELISM, 1);
+        try {
+            AbstractCompiler.preProcess();
+            assertTrue(AntikytheraRunTime.findImplementations("sa.com.cloudsolutions.antikythera.evaluator.IPerson")
+                    .contains("sa.com.cloudsolutions.antikythera.evaluator.Contact"));
+        } finally {
+            Settings.setProperty(Settings.PARALLELISM, null);
+        }
+    }
+
+    @Test
+    void preProcessWithSeveralThreadsMatchesSingleThread() throws IOException {
+        try {
+            Settings.setProperty(Settings.PARALLELISM, 1);
+            Map<String, String> sequential = preProcessAndDescribe();
+            Settings.setProperty(Settings.PARALLELISM, 4);
+            Map<String, String> parallel = preProcessAndDescribe();
+
+            assertFalse(sequential.isEmpty());
+            assertEquals(sequential, parallel);
+        } finally {
+            Settings.setProperty(Settings.PARALLELISM, null);
+        }
+    }
+
+    /**
+     * Pre process the test project from scratch and describe what was found for each class: if
+     * it was compiled, if it is an interface or a service, its implementations and its sub classes.
+     */
+    private static Map<String, String> preProcessAndDescribe() throws IOException {
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler.reset();
+        AbstractCompiler.preProcess();
+
+        Path base = Paths.get(Settings.getBasePath());
+        Map<String, String> description = new TreeMap<>();
+        try (var paths = Files.walk(base)) {
+            for (Path path : paths.filter(p -> p.toString().endsWith(".java")).toList()) {
+                String className = AbstractCompiler.pathToClass(base.relativize(path).toString());
+                description.put(className, (AntikytheraRunTime.getCompilationUnit(className) != null) + " "
+                        + AntikytheraRunTime.isInterface(className) + " "
+                        + AntikytheraRunTime.isServiceClass(className) + " "
+                        + new TreeSet<>(AntikytheraRunTime.findImplementations(className)) + " "
+                        + new TreeSet<>(AntikytheraRunTime.findSubClasses(className)));
+            }
+        }
+        return description;
+    }
+
     @Test
     void testGetPublicClass() {
         CompilationUnit outer = AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Nesting");
@@ -109,4 +168,62 @@ class AbstractCompilerTest {
         assertEquals("java.lang.Integer", result);
 
     }
+
+    @Test
+    void findTypeIsCachedPerImportSet() {
+        CompilationUnit cu = StaticJavaParser.parse("package a.b;\nimport java.util.List;\nclass A {}\n");
+        CompilationUnit other = StaticJavaParser.parse("package a.b;\nimport java.util.List;\nclass B {}\n");
+
+        TypeWrapper list = AbstractCompiler.findType(cu, "List");
+        assertNotNull(list);
+        assertEquals(List.class, list.getClazz());
+        assertSame(list, AbstractCompiler.findType(other, "List"));
+
+        assertNull(AbstractCompiler.findType(cu, "DoesNotExist"));
+        assertNull(AbstractCompiler.findType(other, "DoesNotExist"));
+
+        assertEquals("B", AbstractCompiler.findType(other, "B").getType().getNameAsString());
+        assertNull(AbstractCompiler.findType(cu, "B"));
+    }
+
+    @Test
+    void compiledUnitsHaveLookupTables() {
+        CompilationUnit cu = AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Nesting");
+        assertNotNull(CompilationUnitIndex.of(cu));
+        assertTrue(AbstractCompiler.getMatchingType(cu, "Inner").isPresent());
+        assertTrue(AbstractCompiler.getMatchingType(cu, "sa.com.cloudsolutions.antikythera.evaluator.Nesting.Inner").isPresent());
+        assertTrue(AbstractCompiler.getMatchingType(cu, "Missing").isEmpty());
+
+        CompilationUnit parsed = StaticJavaParser.parse("import java.util.Map;\nclass A { class B {} }\n");
+        assertNull(CompilationUnitIndex.of(parsed));
+        assertTrue(AbstractCompiler.getMatchingType(parsed, "B").isPresent());
+        assertNotNull(AbstractCompiler.findImport(parsed, "Map"));
+    }
+
+    @Test
+    void compilingAgainOnlyDiscardsDependentTypes() throws IOException {
+        String path = "sa/com/cloudsolutions/antikythera/evaluator/Static.java";
+        CompilationUnit cu = StaticJavaParser.parse("""
+                package a.b;
+                import java.util.List;
+                import sa.com.cloudsolutions.antikythera.evaluator.Static;
+                class A {}
+                """);
+
+        TypeWrapper list = AbstractCompiler.findType(cu, "List");
+        TypeWrapper before = AbstractCompiler.findType(cu, "Static");
+        assertNotNull(before);
+        assertNotNull(before.getType());
+
+        CompilationUnit again = AbstractCompiler.reload(path);
+        assertSame(list, AbstractCompiler.findType(cu, "List"));
+        TypeWrapper after = AbstractCompiler.findType(cu, "Static");
+        assertNotNull(after);
+        assertNotNull(after.getType());
+        assertSame(again, after.getType().findCompilationUnit().orElseThrow());
+
+        AbstractCompiler.reload("sa/com/cloudsolutions/antikythera/evaluator/IPerson.java");
+        assertSame(list, AbstractCompiler.findType(cu, "List"));
+        assertSame(after, AbstractCompiler.findType(cu, "Static"));
+    }
 }
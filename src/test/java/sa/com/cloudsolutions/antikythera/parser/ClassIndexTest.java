@@ -0,0 +1,38 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassIndexTest {
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @Test
+    void knowsJdkAndClassPath() {
+        assertTrue(ClassIndex.isComplete());
+        assertTrue(ClassIndex.exists("java.lang.String"));
+        assertTrue(ClassIndex.exists("java.util.Map$Entry"));
+        assertTrue(ClassIndex.exists("org.junit.jupiter.api.Test"));
+        assertTrue(ClassIndex.exists(ClassIndexTest.class.getName()));
+        assertFalse(ClassIndex.isDependencyClass("java.lang.String"));
+        assertTrue(ClassIndex.getClassNames("java.util").contains("ArrayList"));
+    }
+
+    @Test
+    void missingClassesAreRuledOut() {
+        assertFalse(ClassIndex.mayExist("java.lang.Person"));
+        assertFalse(ClassIndex.mayExist("com.example.DoesNotExist"));
+        assertTrue(ClassIndex.mayExist("[Ljava.lang.String;"));
+        assertThrows(ClassNotFoundException.class, () -> AbstractCompiler.loadClass("java.lang.Person"));
+    }
+}
@@ -0,0 +1,87 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares type and import lookups on a large compilation unit with and without the lookup
+ * tables of {@link CompilationUnitIndex}.
+ *
+ * Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *     -Dexec.args=LookupTableBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupTableBenchmark {
+
+    @Param({"50", "500"})
+    int size;
+
+    CompilationUnit plain;
+    CompilationUnit indexed;
+    String lastType;
+    String lastImport;
+
+    @Setup
+    public void setUp() {
+        StringBuilder b = new StringBuilder("package sa.com.cloudsolutions.bench;\n");
+        for (int i = 0; i < size; i++) {
+            b.append("import sa.com.cloudsolutions.dep").append(i).append(".Imported").append(i).append(";\n");
+        }
+        b.append("public class Large {\n");
+        for (int i = 0; i < size; i++) {
+            b.append("    static class Nested").append(i).append(" {\n")
+                    .append("        int field").append(i).append(";\n")
+                    .append("        int method").append(i).append("(int a) { if (a > 0) { return a * 2; } return a; }\n")
+                    .append("    }\n");
+        }
+        b.append("}\n");
+
+        plain = StaticJavaParser.parse(b.toString());
+        indexed = StaticJavaParser.parse(b.toString());
+        CompilationUnitIndex.attach(indexed);
+        lastType = "Nested" + (size - 1);
+        lastImport = "Imported" + (size - 1);
+    }
+
+    @Benchmark
+    public Optional<?> matchingTypeByTraversal() {
+        return AbstractCompiler.getMatchingType(plain, lastType);
+    }
+
+    @Benchmark
+    public Optional<?> matchingTypeByTable() {
+        return AbstractCompiler.getMatchingType(indexed, lastType);
+    }
+
+    @Benchmark
+    public ImportWrapper importByScan() {
+        return AbstractCompiler.findImport(plain, lastImport);
+    }
+
+    @Benchmark
+    public ImportWrapper importByTable() {
+        return AbstractCompiler.findImport(indexed, lastImport);
+    }
+}
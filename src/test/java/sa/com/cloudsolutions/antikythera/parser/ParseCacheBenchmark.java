@@ -0,0 +1,89 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares reading a compilation unit back from the {@link ParseCache} with parsing the source
+ * again. The files are sources of this project, a large one and a small one, so that the
+ * sizes are those of real application code.
+ *
+ * Run with
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=org.openjdk.jmh.Main \
+ *     -Dexec.args=ParseCacheBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseCacheBenchmark {
+
+    @Param({"evaluator/Evaluator.java", "parser/ParseCache.java"})
+    String file;
+
+    Path cacheFolder;
+    JavaParser parser;
+    String relativePath;
+    byte[] source;
+
+    @Setup
+    public void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+        parser = new JavaParser(new ParserConfiguration().setSymbolResolver(AbstractCompiler.symbolResolver));
+
+        relativePath = "sa/com/cloudsolutions/antikythera/" + file;
+        source = Files.readAllBytes(Path.of("src/main/java", relativePath));
+
+        cacheFolder = Files.createTempDirectory("parse-cache");
+        Settings.setProperty(Settings.PARSE_CACHE, cacheFolder.toString());
+        ParseCache.store(relativePath, source, parse());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Settings.setProperty(Settings.PARSE_CACHE, null);
+        try (Stream<Path> paths = Files.walk(cacheFolder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return parser.parse(new ByteArrayInputStream(source)).getResult().orElseThrow();
+    }
+
+    @Benchmark
+    public CompilationUnit loadFromCache() {
+        return ParseCache.load(relativePath, source).orElseThrow();
+    }
+}
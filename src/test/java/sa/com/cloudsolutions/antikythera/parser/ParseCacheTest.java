@@ -0,0 +1,78 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ParseCacheTest {
+
+    @TempDir
+    Path cacheFolder;
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Settings.setProperty(Settings.PARSE_CACHE, null);
+        ParseCache.resetCounters();
+    }
+
+    @Test
+    void keyChangesWithContent() {
+        byte[] a = "class A {}".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "class A { }".getBytes(StandardCharsets.UTF_8);
+        assertEquals(ParseCache.key("A.java", a), ParseCache.key("A.java", a));
+        assertNotEquals(ParseCache.key("A.java", a), ParseCache.key("A.java", b));
+        assertNotEquals(ParseCache.key("A.java", a), ParseCache.key("B.java", a));
+    }
+
+    @Test
+    void secondRunIsServedFromCache() throws IOException {
+        Settings.setProperty(Settings.PARSE_CACHE, cacheFolder.toString());
+        String path = "sa/com/cloudsolutions/antikythera/evaluator/Person.java";
+
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler first = new AbstractCompiler();
+        first.compile(path);
+        assertEquals(0, ParseCache.getHits());
+        assertEquals(1, ParseCache.getMisses());
+
+        AntikytheraRunTime.resetAll();
+        AbstractCompiler second = new AbstractCompiler();
+        second.compile(path);
+        assertEquals(1, ParseCache.getHits());
+
+        CompilationUnit cu = second.getCompilationUnit();
+        assertEquals(first.getCompilationUnit().toString(), cu.toString());
+        assertNotNull(AntikytheraRunTime.getTypeDeclaration("sa.com.cloudsolutions.antikythera.evaluator.Person").orElse(null));
+    }
+
+    @Test
+    void corruptEntryIsAMiss() throws IOException {
+        Settings.setProperty(Settings.PARSE_CACHE, cacheFolder.toString());
+        byte[] source = "class A {}".getBytes(StandardCharsets.UTF_8);
+        Files.write(cacheFolder.resolve(ParseCache.key("A.java", source) + ".json.gz"), new byte[] {1, 2, 3});
+
+        assertTrue(ParseCache.load("A.java", source).isEmpty());
+        assertEquals(1, ParseCache.getMisses());
+        try (var files = Files.list(cacheFolder)) {
+            assertEquals(0, files.count());
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class RoutingTypeSolverTest {
+
+    static class FakeSolver implements TypeSolver {
+        private TypeSolver parent;
+        private final Set<String> known;
+        final List<String> asked = new ArrayList<>();
+
+        FakeSolver(String... known) {
+            this.known = Set.of(known);
+        }
+
+        @Override
+        public TypeSolver getParent() {
+            return parent;
+        }
+
+        @Override
+        public void setParent(TypeSolver parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            asked.add(name);
+            if (known.contains(name)) {
+                return SymbolReference.solved(mock(ResolvedReferenceTypeDeclaration.class));
+            }
+            return SymbolReference.unsolved();
+        }
+    }
+
+    @Test
+    void onlyOwnersAreAsked() {
+        FakeSolver first = new FakeSolver("com.example.a.A");
+        FakeSolver second = new FakeSolver("com.example.b.B", "com.example.b.B.Inner");
+        RoutingTypeSolver solver = new RoutingTypeSolver();
+        solver.add(first, List.of("com.example.a"));
+        solver.add(second, List.of("com.example.b"));
+
+        assertTrue(solver.tryToSolveType("com.example.b.B").isSolved());
+        assertTrue(solver.tryToSolveType("com.example.b.B.Inner").isSolved());
+        assertFalse(solver.tryToSolveType("org.other.C").isSolved());
+        assertTrue(first.asked.isEmpty());
+        assertSame(solver, second.getParent());
+    }
+
+    @Test
+    void resultsAreCached() {
+        FakeSolver owner = new FakeSolver("com.example.a.A");
+        FakeSolver everything = new FakeSolver();
+        RoutingTypeSolver solver = new RoutingTypeSolver();
+        solver.add(owner, List.of("com.example.a"));
+        solver.add(everything);
+
+        solver.tryToSolveType("com.example.a.A");
+        solver.tryToSolveType("com.example.a.A");
+        solver.tryToSolveType("com.example.a.Missing");
+        solver.tryToSolveType("com.example.a.Missing");
+
+        assertEquals(List.of("com.example.a.A", "com.example.a.Missing"), owner.asked);
+        assertEquals(List.of("com.example.a.Missing"), everything.asked);
+    }
+
+    @Test
+    void testPrefixes() {
+        assertEquals(List.of("a.b.C", "a.b", "a"), RoutingTypeSolver.prefixes("a.b.C.D"));
+        assertEquals(List.of(""), RoutingTypeSolver.prefixes("D"));
+    }
+}
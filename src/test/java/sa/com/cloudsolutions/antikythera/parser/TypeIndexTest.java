@@ -0,0 +1,75 @@
+package sa.com.cloudsolutions.antikythera.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import sa.com.cloudsolutions.antikythera.configuration.Settings;
+import sa.com.cloudsolutions.antikythera.evaluator.AntikytheraRunTime;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TypeIndexTest {
+
+    @BeforeAll
+    static void setUp() throws IOException {
+        Settings.loadConfigMap(new File("src/test/resources/generator-field-tests.yml"));
+        AbstractCompiler.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        TypeIndex.clear();
+    }
+
+    @Test
+    void indexesTopLevelTypesOnly() {
+        String source = """
+                package com.example.demo;
+
+                import java.util.List;
+
+                // class NotAType {}
+                @SomeAnnotation(value = Other.class, name = "class Fake")
+                public class Demo extends Base implements Runnable {
+                    class Inner {}
+                    public void run() { }
+                }
+
+                enum Colour { RED }
+                """;
+        TypeIndex.index("com/example/demo/Demo.java", source);
+
+        assertTrue(TypeIndex.isPending("com.example.demo.Demo"));
+        assertTrue(TypeIndex.isPending("com.example.demo.Colour"));
+        assertFalse(TypeIndex.isPending("com.example.demo.Inner"));
+        assertFalse(TypeIndex.isPending("com.example.demo.NotAType"));
+        assertFalse(TypeIndex.isPending("com.example.demo.Fake"));
+        assertFalse(TypeIndex.isPending("com.example.demo.Other"));
+    }
+
+    @Test
+    void compilesOnFirstAccess() {
+        AntikytheraRunTime.resetAll();
+        String path = "sa/com/cloudsolutions/antikythera/evaluator/Contact.java";
+        TypeIndex.index(path, "package sa.com.cloudsolutions.antikythera.evaluator;\n" +
+                "public class Contact implements IPerson { }");
+
+        assertTrue(TypeIndex.isPending("sa.com.cloudsolutions.antikythera.evaluator.Contact"));
+        assertTrue(AntikytheraRunTime.findImplementations("sa.com.cloudsolutions.antikythera.evaluator.IPerson")
+                .contains("sa.com.cloudsolutions.antikythera.evaluator.Contact"));
+        assertFalse(TypeIndex.isPending("sa.com.cloudsolutions.antikythera.evaluator.Contact"));
+        assertNotNull(AntikytheraRunTime.getCompilationUnit("sa.com.cloudsolutions.antikythera.evaluator.Contact"));
+    }
+
+    @Test
+    void resetClearsTheIndex() {
+        TypeIndex.index("com/example/demo/Demo.java", "package com.example.demo;\npublic class Demo { }");
+        assertTrue(TypeIndex.isPending("com.example.demo.Demo"));
+        AntikytheraRunTime.resetAll();
+        assertFalse(TypeIndex.isPending("com.example.demo.Demo"));
+        assertNull(AntikytheraRunTime.getCompilationUnit("com.example.demo.Demo"));
+    }
+}